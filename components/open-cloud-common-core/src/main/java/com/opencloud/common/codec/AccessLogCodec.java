@@ -0,0 +1,384 @@
+package com.opencloud.common.codec;
+
+import com.alibaba.fastjson.JSONObject;
+import com.opencloud.common.model.AccessLogRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 访问日志二进制编解码
+ * <p>
+ * 一条消息为一批日志,格式:
+ * <pre>
+ * 'O' 'L' | version(1字节) | 条数(varint) | 记录...
+ * 记录: 字段掩码(varint) | 按字段顺序写入掩码中存在的字段
+ * </pre>
+ * 整数使用varint,响应时间写入与请求时间的差值.
+ * 字符串按批共享字符串表:0表示null,1表示新字符串(长度+UTF-8),n(n>=2)引用表中第n-2个字符串,
+ * 不超过64个字符的新字符串加入表中,最多4096个,请求头名称、服务名、方法等重复内容只写一次.
+ * <p>
+ * 字段只能在新版本中追加,解码器保留旧版本的解码逻辑,遇到更高版本直接拒绝,
+ * 因此升级时需要先发布消费端,再发布网关.
+ *
+ * @author liuyadu
+ */
+public final class AccessLogCodec {
+
+    /**
+     * 消息类型
+     */
+    public static final String CONTENT_TYPE = "application/x-open-access-log";
+
+    /**
+     * 当前版本
+     */
+    public static final byte VERSION = 1;
+
+    private static final byte MAGIC_0 = 'O';
+    private static final byte MAGIC_1 = 'L';
+
+    private static final int F_REQUEST_TIME = 1;
+    private static final int F_RESPONSE_TIME = 1 << 1;
+    private static final int F_PATH = 1 << 2;
+    private static final int F_METHOD = 1 << 3;
+    private static final int F_IP = 1 << 4;
+    private static final int F_HTTP_STATUS = 1 << 5;
+    private static final int F_SERVICE_ID = 1 << 6;
+    private static final int F_USER_AGENT = 1 << 7;
+    private static final int F_HEADERS = 1 << 8;
+    private static final int F_PARAMS = 1 << 9;
+    private static final int F_AUTHENTICATION = 1 << 10;
+    private static final int F_ERROR = 1 << 11;
+    private static final int F_RESPONSE_SIZE = 1 << 12;
+    private static final int F_RESPONSE_BODY = 1 << 13;
+
+    private static final int MAX_TABLE_STRING_LENGTH = 64;
+    private static final int MAX_TABLE_SIZE = 4096;
+
+    private AccessLogCodec() {
+    }
+
+    /**
+     * 是否为编码后的消息
+     *
+     * @param bytes
+     * @return
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length >= 3 && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1;
+    }
+
+    /**
+     * 批量编码
+     *
+     * @param records
+     * @return
+     */
+    public static byte[] encode(List<AccessLogRecord> records) {
+        Writer writer = new Writer(128 * Math.max(1, records.size()));
+        writer.writeByte(MAGIC_0);
+        writer.writeByte(MAGIC_1);
+        writer.writeByte(VERSION);
+        writer.writeVarLong(records.size());
+        for (AccessLogRecord record : records) {
+            writeRecord(writer, record);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 批量解码
+     *
+     * @param bytes
+     * @return
+     * @throws IllegalArgumentException 格式错误或版本不支持
+     */
+    public static List<AccessLogRecord> decode(byte[] bytes) {
+        if (!isEncoded(bytes)) {
+            throw new IllegalArgumentException("not an access log message");
+        }
+        int version = bytes[2] & 0xFF;
+        if (version > VERSION) {
+            throw new IllegalArgumentException("unsupported access log version:" + version);
+        }
+        Reader reader = new Reader(bytes, 3);
+        // 每条记录至少包含1字节掩码
+        int count = reader.readCount(1);
+        List<AccessLogRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(readRecord(reader));
+        }
+        return records;
+    }
+
+    private static void writeRecord(Writer writer, AccessLogRecord record) {
+        int mask = 0;
+        mask |= record.getRequestTime() != null ? F_REQUEST_TIME : 0;
+        mask |= record.getResponseTime() != null ? F_RESPONSE_TIME : 0;
+        mask |= record.getPath() != null ? F_PATH : 0;
+        mask |= record.getMethod() != null ? F_METHOD : 0;
+        mask |= record.getIp() != null ? F_IP : 0;
+        mask |= record.getHttpStatus() != null ? F_HTTP_STATUS : 0;
+        mask |= record.getServiceId() != null ? F_SERVICE_ID : 0;
+        mask |= record.getUserAgent() != null ? F_USER_AGENT : 0;
+        mask |= record.getHeaders() != null ? F_HEADERS : 0;
+        mask |= record.getParams() != null ? F_PARAMS : 0;
+        mask |= record.getAuthentication() != null ? F_AUTHENTICATION : 0;
+        mask |= record.getError() != null ? F_ERROR : 0;
+        mask |= record.getResponseSize() != null ? F_RESPONSE_SIZE : 0;
+        mask |= record.getResponseBody() != null ? F_RESPONSE_BODY : 0;
+        writer.writeVarLong(mask);
+        long requestTime = 0;
+        if (record.getRequestTime() != null) {
+            requestTime = record.getRequestTime().getTime();
+            writer.writeVarLong(requestTime);
+        }
+        if (record.getResponseTime() != null) {
+            writer.writeZigZag(record.getResponseTime().getTime() - requestTime);
+        }
+        if (record.getPath() != null) {
+            writer.writeString(record.getPath());
+        }
+        if (record.getMethod() != null) {
+            writer.writeString(record.getMethod());
+        }
+        if (record.getIp() != null) {
+            writer.writeString(record.getIp());
+        }
+        if (record.getHttpStatus() != null) {
+            writer.writeVarLong(record.getHttpStatus());
+        }
+        if (record.getServiceId() != null) {
+            writer.writeString(record.getServiceId());
+        }
+        if (record.getUserAgent() != null) {
+            writer.writeString(record.getUserAgent());
+        }
+        if (record.getHeaders() != null) {
+            writer.writeMap(record.getHeaders());
+        }
+        if (record.getParams() != null) {
+            writer.writeMap(record.getParams());
+        }
+        if (record.getAuthentication() != null) {
+            writer.writeString(record.getAuthentication());
+        }
+        if (record.getError() != null) {
+            writer.writeString(record.getError());
+        }
+        if (record.getResponseSize() != null) {
+            writer.writeVarLong(record.getResponseSize());
+        }
+        if (record.getResponseBody() != null) {
+            writer.writeString(record.getResponseBody());
+        }
+    }
+
+    private static AccessLogRecord readRecord(Reader reader) {
+        AccessLogRecord record = new AccessLogRecord();
+        int mask = (int) reader.readVarLong();
+        long requestTime = 0;
+        if ((mask & F_REQUEST_TIME) != 0) {
+            requestTime = reader.readVarLong();
+            record.setRequestTime(new Date(requestTime));
+        }
+        if ((mask & F_RESPONSE_TIME) != 0) {
+            record.setResponseTime(new Date(requestTime + reader.readZigZag()));
+        }
+        if ((mask & F_PATH) != 0) {
+            record.setPath(reader.readString());
+        }
+        if ((mask & F_METHOD) != 0) {
+            record.setMethod(reader.readString());
+        }
+        if ((mask & F_IP) != 0) {
+            record.setIp(reader.readString());
+        }
+        if ((mask & F_HTTP_STATUS) != 0) {
+            record.setHttpStatus((int) reader.readVarLong());
+        }
+        if ((mask & F_SERVICE_ID) != 0) {
+            record.setServiceId(reader.readString());
+        }
+        if ((mask & F_USER_AGENT) != 0) {
+            record.setUserAgent(reader.readString());
+        }
+        if ((mask & F_HEADERS) != 0) {
+            record.setHeaders(reader.readMap());
+        }
+        if ((mask & F_PARAMS) != 0) {
+            record.setParams(reader.readMap());
+        }
+        if ((mask & F_AUTHENTICATION) != 0) {
+            record.setAuthentication(reader.readString());
+        }
+        if ((mask & F_ERROR) != 0) {
+            record.setError(reader.readString());
+        }
+        if ((mask & F_RESPONSE_SIZE) != 0) {
+            record.setResponseSize(reader.readVarLong());
+        }
+        if ((mask & F_RESPONSE_BODY) != 0) {
+            record.setResponseBody(reader.readString());
+        }
+        return record;
+    }
+
+    private static boolean tableable(String value) {
+        return value.length() <= MAX_TABLE_STRING_LENGTH;
+    }
+
+    private static final class Writer {
+        private byte[] buf;
+        private int pos;
+        private final Map<String, Integer> table = new HashMap<>();
+
+        private Writer(int initialCapacity) {
+            this.buf = new byte[initialCapacity];
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+            }
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        private void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            Integer index = table.get(value);
+            if (index != null) {
+                writeVarLong(index + 2L);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(1);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+            if (tableable(value) && table.size() < MAX_TABLE_SIZE) {
+                table.put(value, table.size());
+            }
+        }
+
+        private void writeMap(Map<String, ?> map) {
+            writeVarLong(map.size());
+            for (Map.Entry<String, ?> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                writeString(entry.getKey());
+                if (value == null || value instanceof String) {
+                    writeString((String) value);
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    writeString(value.toString());
+                } else {
+                    writeString(JSONObject.toJSONString(value));
+                }
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+        private final List<String> table = new ArrayList<>();
+
+        private Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= buf.length) {
+                    throw new IllegalArgumentException("truncated access log message");
+                }
+                byte b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+
+        /**
+         * 读取条数,按剩余字节数校验,避免按错误的条数分配内存
+         *
+         * @param minBytes 每项至少占用的字节数
+         * @return
+         */
+        private int readCount(int minBytes) {
+            long count = readVarLong();
+            if (count < 0 || count > (long) (buf.length - pos) / minBytes) {
+                throw new IllegalArgumentException("invalid access log count:" + count);
+            }
+            return (int) count;
+        }
+
+        private long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private String readString() {
+            long code = readVarLong();
+            if (code == 0) {
+                return null;
+            }
+            if (code >= 2) {
+                long index = code - 2;
+                if (index >= table.size()) {
+                    throw new IllegalArgumentException("invalid string reference:" + index);
+                }
+                return table.get((int) index);
+            }
+            long length = readVarLong();
+            if (length < 0 || length > buf.length - pos) {
+                throw new IllegalArgumentException("truncated access log message");
+            }
+            String value = new String(buf, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            if (tableable(value) && table.size() < MAX_TABLE_SIZE) {
+                table.add(value);
+            }
+            return value;
+        }
+
+        private Map<String, String> readMap() {
+            // 每项至少包含键值各1字节
+            int size = readCount(2);
+            Map<String, String> map = new LinkedHashMap<>(Math.max(16, size * 2));
+            for (int i = 0; i < size; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.opencloud.common.matcher;
+
+import com.opencloud.common.security.OpenAuthority;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.*;
+
+/**
+ * 权限标识字典
+ * 刷新时将权限标识映射为连续整数,资源所需权限与用户已有权限均以位图表示,鉴权只需按位与.
+ *
+ * @author liuyadu
+ */
+public class AuthorityDictionary {
+
+    /**
+     * 未匹配到资源时要求的默认权限
+     */
+    public static final String AUTHORITIES_REQUIRED = "AUTHORITIES_REQUIRED";
+
+    public static final AuthorityDictionary EMPTY = build(Collections.emptyMap());
+
+    private final Map<String, Integer> ids;
+
+    private final BitSet authoritiesRequired;
+
+    private AuthorityDictionary(Map<String, Integer> ids) {
+        this.ids = ids;
+        this.authoritiesRequired = new BitSet();
+        this.authoritiesRequired.set(ids.get(AUTHORITIES_REQUIRED));
+    }
+
+    /**
+     * 构建字典
+     *
+     * @param configAttributes
+     * @return
+     */
+    public static AuthorityDictionary build(Map<String, Collection<ConfigAttribute>> configAttributes) {
+        Map<String, Integer> ids = new HashMap<>();
+        ids.put(AUTHORITIES_REQUIRED, 0);
+        for (Collection<ConfigAttribute> attributes : configAttributes.values()) {
+            for (ConfigAttribute attribute : attributes) {
+                if (attribute.getAttribute() != null) {
+                    ids.putIfAbsent(attribute.getAttribute(), ids.size());
+                }
+            }
+        }
+        return new AuthorityDictionary(ids);
+    }
+
+    /**
+     * 资源所需权限位图
+     *
+     * @param attributes
+     * @return
+     */
+    public BitSet toBitSet(Collection<ConfigAttribute> attributes) {
+        BitSet bits = new BitSet(ids.size());
+        for (ConfigAttribute attribute : attributes) {
+            Integer id = ids.get(attribute.getAttribute());
+            if (id != null) {
+                bits.set(id);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 未匹配到资源时的默认权限位图,只读
+     *
+     * @return
+     */
+    public BitSet getAuthoritiesRequired() {
+        return authoritiesRequired;
+    }
+
+    /**
+     * 用户已有权限位图
+     * 字典中不存在的权限不会被任何资源要求,直接忽略
+     *
+     * @param authorities
+     * @return
+     */
+    public GrantedBits toGrantedBits(Collection<? extends GrantedAuthority> authorities) {
+        BitSet granted = new BitSet(ids.size());
+        BitSet expired = new BitSet(ids.size());
+        long now = System.currentTimeMillis();
+        for (GrantedAuthority authority : authorities) {
+            Integer id = ids.get(authority.getAuthority());
+            if (id == null) {
+                continue;
+            }
+            granted.set(id);
+            if (authority instanceof OpenAuthority) {
+                Date expireTime = ((OpenAuthority) authority).getExpireTime();
+                if (expireTime != null && now > expireTime.getTime()) {
+                    expired.set(id);
+                }
+            }
+        }
+        return new GrantedBits(granted, expired);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * 用户已有权限位图
+     */
+    public static final class GrantedBits {
+        private final BitSet granted;
+        private final BitSet expired;
+
+        private GrantedBits(BitSet granted, BitSet expired) {
+            this.granted = granted;
+            this.expired = expired;
+        }
+
+        /**
+         * 是否拥有所需权限之一
+         *
+         * @param required
+         * @return
+         */
+        public boolean intersects(BitSet required) {
+            return granted.intersects(required);
+        }
+
+        /**
+         * 命中的权限中是否有已过期的
+         *
+         * @param required
+         * @return
+         */
+        public boolean intersectsExpired(BitSet required) {
+            return expired.intersects(required);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.opencloud.common.matcher;
+
+import com.opencloud.common.utils.StringUtils;
+import org.springframework.security.access.ConfigAttribute;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 权限资源路径索引
+ * 每次刷新时随资源快照编译一次,请求时按路径段查找,避免逐条AntPathMatcher扫描
+ * 不依赖具体的资源模型,由调用方提供资源路径和是否需要认证.
+ *
+ * @param <R> 权限资源
+ * @author liuyadu
+ */
+public class AuthorityIndex<R> {
+
+    /**
+     * 全部匹配,鉴权时忽略
+     */
+    private static final String MATCH_ALL = "/**";
+
+    private static final AuthorityIndex<?> EMPTY = new AuthorityIndex<>(new PathPatternTrie<>(), AuthorityDictionary.EMPTY);
+
+    private final PathPatternTrie<Item<R>> trie;
+
+    private final AuthorityDictionary dictionary;
+
+    /**
+     * 未匹配到资源时的默认要求
+     */
+    private final Requirement defaultRequirement;
+
+    private AuthorityIndex(PathPatternTrie<Item<R>> trie, AuthorityDictionary dictionary) {
+        this.trie = trie;
+        this.dictionary = dictionary;
+        this.defaultRequirement = new Requirement(null, dictionary.getAuthoritiesRequired());
+    }
+
+    /**
+     * 空索引
+     *
+     * @param <R>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> AuthorityIndex<R> empty() {
+        return (AuthorityIndex<R>) EMPTY;
+    }
+
+    /**
+     * 编译索引,权限标识字典由权限列表生成
+     *
+     * @param resources        权限资源
+     * @param pathFunction     资源路径
+     * @param authRequired     资源是否需要认证
+     * @param configAttributes 路径对应权限列表
+     * @param <R>
+     * @return
+     */
+    public static <R> AuthorityIndex<R> build(Iterable<R> resources, Function<? super R, String> pathFunction, Predicate<? super R> authRequired,
+                                              Map<String, Collection<ConfigAttribute>> configAttributes) {
+        AuthorityDictionary dictionary = configAttributes == null ? AuthorityDictionary.EMPTY : AuthorityDictionary.build(configAttributes);
+        return build(resources, pathFunction, authRequired, configAttributes, dictionary);
+    }
+
+    /**
+     * 编译索引
+     *
+     * @param resources        权限资源
+     * @param pathFunction     资源路径
+     * @param authRequired     资源是否需要认证
+     * @param configAttributes 路径对应权限列表
+     * @param dictionary       权限标识字典
+     * @param <R>
+     * @return
+     */
+    public static <R> AuthorityIndex<R> build(Iterable<R> resources, Function<? super R, String> pathFunction, Predicate<? super R> authRequired,
+                                              Map<String, Collection<ConfigAttribute>> configAttributes, AuthorityDictionary dictionary) {
+        Map<String, Item<R>> items = new LinkedHashMap<>();
+        if (resources != null) {
+            for (R resource : resources) {
+                String path = pathFunction.apply(resource);
+                if (StringUtils.isBlank(path)) {
+                    continue;
+                }
+                Item<R> item = items.computeIfAbsent(path, Item::new);
+                // 同一路径以最后加载的资源为准
+                item.resource = resource;
+                if (!authRequired.test(resource)) {
+                    item.permitAll = true;
+                }
+            }
+        }
+        if (configAttributes != null) {
+            configAttributes.forEach((path, attributes) -> {
+                Item<R> item = items.computeIfAbsent(path, Item::new);
+                item.attributes = attributes;
+                item.requirement = new Requirement(path, dictionary.toBitSet(attributes));
+            });
+        }
+        PathPatternTrie<Item<R>> trie = new PathPatternTrie<>();
+        items.forEach(trie::put);
+        return new AuthorityIndex<>(trie, dictionary);
+    }
+
+    /**
+     * 是否存在无需认证的资源
+     *
+     * @param requestPath
+     * @return
+     */
+    public boolean isPermitAll(String requestPath) {
+        for (PathPatternTrie.Entry<Item<R>> entry : trie.matchAll(requestPath)) {
+            if (entry.getValue().permitAll) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取最精确匹配的资源
+     *
+     * @param requestPath
+     * @return
+     */
+    public R getResource(String requestPath) {
+        for (PathPatternTrie.Entry<Item<R>> entry : trie.matchAll(requestPath)) {
+            Item<R> item = entry.getValue();
+            if (item.resource != null && !MATCH_ALL.equals(item.path)) {
+                return item.resource;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取最精确匹配的权限列表
+     *
+     * @param requestPath
+     * @return 未匹配返回null
+     */
+    public Collection<ConfigAttribute> getAttributes(String requestPath) {
+        for (PathPatternTrie.Entry<Item<R>> entry : trie.matchAll(requestPath)) {
+            Item<R> item = entry.getValue();
+            if (item.attributes != null && !MATCH_ALL.equals(item.path)) {
+                return item.attributes;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取最精确匹配的权限要求
+     * 同一模式下的请求路径返回同一对象,可按模式缓存鉴权结果
+     *
+     * @param requestPath
+     * @return 未匹配时返回默认要求
+     */
+    public Requirement getRequirement(String requestPath) {
+        for (PathPatternTrie.Entry<Item<R>> entry : trie.matchAll(requestPath)) {
+            Item<R> item = entry.getValue();
+            if (item.requirement != null && !MATCH_ALL.equals(item.path)) {
+                return item.requirement;
+            }
+        }
+        return defaultRequirement;
+    }
+
+    /**
+     * 获取最精确匹配的所需权限位图
+     *
+     * @param requestPath
+     * @return 未匹配时返回默认权限位图, 只读
+     */
+    public BitSet getRequiredAuthorities(String requestPath) {
+        return getRequirement(requestPath).getAuthorities();
+    }
+
+    public AuthorityDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public int size() {
+        return trie.size();
+    }
+
+    private static final class Item<R> {
+        private final String path;
+        private R resource;
+        private Collection<ConfigAttribute> attributes;
+        private Requirement requirement;
+        private boolean permitAll;
+
+        private Item(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * 权限要求
+     */
+    public static final class Requirement {
+        private final String pattern;
+        private final BitSet authorities;
+
+        private Requirement(String pattern, BitSet authorities) {
+            this.pattern = pattern;
+            this.authorities = authorities;
+        }
+
+        /**
+         * 匹配到的资源路径模式
+         *
+         * @return 默认要求返回null
+         */
+        public String getPattern() {
+            return pattern;
+        }
+
+        /**
+         * 所需权限位图,只读
+         *
+         * @return
+         */
+        public BitSet getAuthorities() {
+            return authorities;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.opencloud.common.matcher;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IP地址前缀树
+ * 按二进制位构建,IPv4与IPv6分别存储,支持单个地址和CIDR网段(如 192.168.0.0/16).
+ * 查询耗时只与地址位数相关,与规则数量无关.
+ * 构建完成后只读,可在多线程间安全共享.
+ *
+ * @author liuyadu
+ */
+public class IpAddressTrie {
+
+    private final Node ipv4 = new Node();
+
+    private final Node ipv6 = new Node();
+
+    private int size;
+
+    /**
+     * 添加IP或CIDR网段
+     *
+     * @param value
+     * @return 格式无法识别时返回false
+     */
+    public boolean add(String value) {
+        if (value == null) {
+            return false;
+        }
+        String address = value.trim();
+        int prefixLength = -1;
+        int slash = address.indexOf('/');
+        if (slash > 0) {
+            try {
+                prefixLength = Integer.parseInt(address.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            address = address.substring(0, slash).trim();
+        }
+        byte[] bytes = parseAddress(address);
+        if (bytes == null) {
+            return false;
+        }
+        int bits = bytes.length * 8;
+        if (prefixLength > bits) {
+            return false;
+        }
+        if (prefixLength < 0) {
+            prefixLength = bits;
+        }
+        Node node = root(bytes);
+        for (int i = 0; i < prefixLength; i++) {
+            if (node.terminal) {
+                // 已被更大的网段覆盖
+                return true;
+            }
+            int bit = bit(bytes, i);
+            if (node.children[bit] == null) {
+                node.children[bit] = new Node();
+            }
+            node = node.children[bit];
+        }
+        node.terminal = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * 是否包含该IP
+     *
+     * @param ipAddress
+     * @return
+     */
+    public boolean contains(String ipAddress) {
+        return contains(parseAddress(ipAddress));
+    }
+
+    /**
+     * 是否包含该IP
+     *
+     * @param bytes 已解析的地址
+     * @return
+     */
+    public boolean contains(byte[] bytes) {
+        if (bytes == null || size == 0) {
+            return false;
+        }
+        Node node = root(bytes);
+        int bits = bytes.length * 8;
+        for (int i = 0; i < bits; i++) {
+            if (node.terminal) {
+                return true;
+            }
+            node = node.children[bit(bytes, i)];
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.terminal;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 解析IP字面量,不会发起DNS查询
+     *
+     * @param address
+     * @return 非IP地址返回null
+     */
+    public static byte[] parseAddress(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+        if (address.indexOf(':') < 0) {
+            return parseIpv4(address);
+        }
+        String literal = address;
+        if (literal.charAt(0) == '[' && literal.charAt(literal.length() - 1) == ']') {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        if (literal.isEmpty() || !(literal.charAt(0) == ':' || Character.digit(literal.charAt(0), 16) != -1)) {
+            // 避免InetAddress将非法字面量当作主机名解析
+            return null;
+        }
+        try {
+            return InetAddress.getByName(literal).getAddress();
+        } catch (UnknownHostException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseIpv4(String address) {
+        byte[] bytes = new byte[4];
+        int octet = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || octet == 3) {
+                    return null;
+                }
+                bytes[octet++] = (byte) value;
+                value = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0 || octet != 3) {
+            return null;
+        }
+        bytes[3] = (byte) value;
+        return bytes;
+    }
+
+    private Node root(byte[] bytes) {
+        return bytes.length == 4 ? ipv4 : ipv6;
+    }
+
+    private static int bit(byte[] bytes, int index) {
+        return (bytes[index >> 3] >> (7 - (index & 7))) & 1;
+    }
+
+    private static final class Node {
+        private final Node[] children = new Node[2];
+        private boolean terminal;
+    }
+}
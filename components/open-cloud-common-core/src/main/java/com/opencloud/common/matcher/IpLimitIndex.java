@@ -0,0 +1,147 @@
+package com.opencloud.common.matcher;
+
+import com.opencloud.common.utils.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * IP黑白名单索引
+ * 按接口路径组织,每个路径下的IP/CIDR编译为前缀树,域名存入哈希集合.
+ * 每次加载黑白名单时构建一次,请求时无需再解析规则.
+ * 不依赖具体的名单模型,由调用方提供接口路径和IP/域名列表.
+ *
+ * @author liuyadu
+ */
+public class IpLimitIndex {
+
+    public static final IpLimitIndex EMPTY = new IpLimitIndex(new PathPatternTrie<>());
+
+    private final PathPatternTrie<Rule> trie;
+
+    private IpLimitIndex(PathPatternTrie<Rule> trie) {
+        this.trie = trie;
+    }
+
+    /**
+     * 编译索引
+     *
+     * @param apis            名单
+     * @param pathFunction    接口路径
+     * @param addressFunction IP、CIDR或域名列表
+     * @param <T>
+     * @return
+     */
+    public static <T> IpLimitIndex build(Iterable<T> apis, Function<? super T, String> pathFunction, Function<? super T, ? extends Collection<String>> addressFunction) {
+        Map<String, Rule> rules = new LinkedHashMap<>();
+        if (apis != null) {
+            for (T api : apis) {
+                String path = pathFunction.apply(api);
+                Collection<String> addresses = addressFunction.apply(api);
+                if (StringUtils.isBlank(path) || addresses == null || addresses.isEmpty()) {
+                    continue;
+                }
+                Rule rule = rules.computeIfAbsent(path, k -> new Rule());
+                for (String value : addresses) {
+                    rule.add(value);
+                }
+            }
+        }
+        PathPatternTrie<Rule> trie = new PathPatternTrie<>();
+        rules.forEach(trie::put);
+        return new IpLimitIndex(trie);
+    }
+
+    /**
+     * 匹配IP或域名
+     *
+     * @param requestPath
+     * @param ipAddress
+     * @param origin
+     * @return [hasRules, matched]
+     */
+    public Boolean[] match(String requestPath, String ipAddress, String origin) {
+        List<PathPatternTrie.Entry<Rule>> entries = trie.matchAll(requestPath);
+        if (entries.isEmpty()) {
+            return new Boolean[]{false, false};
+        }
+        byte[] address = IpAddressTrie.parseAddress(ipAddress);
+        String host = getHost(origin);
+        for (PathPatternTrie.Entry<Rule> entry : entries) {
+            if (entry.getValue().matches(address, host)) {
+                return new Boolean[]{true, true};
+            }
+        }
+        return new Boolean[]{true, false};
+    }
+
+    public int size() {
+        return trie.size();
+    }
+
+    /**
+     * 从Origin中提取主机名
+     *
+     * @param origin 如 http://www.example.com:8080
+     * @return
+     */
+    private static String getHost(String origin) {
+        if (StringUtils.isBlank(origin)) {
+            return null;
+        }
+        String host = origin.trim();
+        int scheme = host.indexOf("://");
+        if (scheme >= 0) {
+            host = host.substring(scheme + 3);
+        }
+        int end = host.length();
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c == ':' || c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        return host.substring(0, end).toLowerCase();
+    }
+
+    /**
+     * 单个接口路径下的限制规则
+     */
+    private static final class Rule {
+        private final IpAddressTrie addresses = new IpAddressTrie();
+        private final Set<String> domains = new HashSet<>();
+
+        private void add(String value) {
+            if (StringUtils.isBlank(value)) {
+                return;
+            }
+            if (!addresses.add(value) && StringUtils.matchDomain(value.trim())) {
+                domains.add(value.trim().toLowerCase());
+            }
+        }
+
+        /**
+         * 域名按后缀匹配: example.com 可匹配 example.com 和 www.example.com
+         */
+        private boolean matches(byte[] address, String host) {
+            if (address != null && addresses.contains(address)) {
+                return true;
+            }
+            if (host == null || domains.isEmpty()) {
+                return false;
+            }
+            String suffix = host;
+            while (true) {
+                if (domains.contains(suffix)) {
+                    return true;
+                }
+                int dot = suffix.indexOf('.');
+                if (dot < 0) {
+                    return false;
+                }
+                suffix = suffix.substring(dot + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.opencloud.common.matcher;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Ant风格路径模式索引
+ * 按路径段构建前缀树,支持字面量、段内通配符(* ? {var})和多级通配符(**)节点.
+ * 匹配时沿请求路径逐段下降,仅对命中的少量候选再用AntPathMatcher精确校验,
+ * 匹配耗时与请求路径长度相关,而与模式数量无关.
+ * 构建完成后只读,可在多线程间安全共享;修改请重新构建后整体替换.
+ *
+ * @author liuyadu
+ */
+public class PathPatternTrie<T> {
+
+    private static final String PATH_SEPARATOR = "/";
+
+    private static final String DOUBLE_WILDCARD = "**";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final Node<T> root = new Node<>();
+
+    private int size;
+
+    /**
+     * 添加路径模式
+     *
+     * @param pattern
+     * @param value
+     */
+    public void put(String pattern, T value) {
+        if (pattern == null) {
+            return;
+        }
+        Node<T> node = root;
+        for (String segment : tokenize(pattern)) {
+            node = node.child(segment);
+        }
+        node.addEntry(new Entry<>(pattern, value, size));
+        size++;
+    }
+
+    /**
+     * 是否存在匹配的模式
+     *
+     * @param path
+     * @return
+     */
+    public boolean matches(String path) {
+        return !matchAll(path).isEmpty();
+    }
+
+    /**
+     * 获取最精确匹配的值
+     *
+     * @param path
+     * @return
+     */
+    public T match(String path) {
+        List<Entry<T>> entries = matchAll(path);
+        return entries.isEmpty() ? null : entries.get(0).getValue();
+    }
+
+    /**
+     * 获取全部匹配项,按精确程度排序(最精确的在前),同等精确时按添加顺序
+     *
+     * @param path
+     * @return
+     */
+    public List<Entry<T>> matchAll(String path) {
+        if (path == null || size == 0) {
+            return Collections.emptyList();
+        }
+        Set<Entry<T>> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        collect(root, tokenize(path), 0, candidates);
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Entry<T>> result = new ArrayList<>(candidates.size());
+        for (Entry<T> entry : candidates) {
+            // 前缀树只做候选筛选,最终以AntPathMatcher语义为准
+            if (pathMatcher.match(entry.getPattern(), path)) {
+                result.add(entry);
+            }
+        }
+        if (result.size() > 1) {
+            Comparator<String> comparator = pathMatcher.getPatternComparator(path);
+            // 候选集合无序,同等精确的模式需按添加顺序排列,保证各节点、各次刷新结果一致
+            result.sort(Comparator.comparing((Entry<T> entry) -> entry.getPattern(), comparator).thenComparingInt(entry -> entry.sequence));
+        }
+        return result;
+    }
+
+    /**
+     * 获取前缀树候选项,不做AntPathMatcher校验,按添加顺序排列
+     * 结果是真实匹配项的超集,适用于匹配语义与AntPathMatcher不同(如PathPattern)、需由调用方自行校验的场景
+     *
+     * @param path
+     * @return
+     */
+    public List<Entry<T>> candidates(String path) {
+        if (path == null || size == 0) {
+            return Collections.emptyList();
+        }
+        Set<Entry<T>> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        collect(root, tokenize(path), 0, candidates);
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Entry<T>> result = new ArrayList<>(candidates);
+        if (result.size() > 1) {
+            result.sort(Comparator.comparingInt(entry -> entry.sequence));
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void collect(Node<T> node, String[] segments, int index, Set<Entry<T>> result) {
+        if (node.doubleWildcard != null) {
+            // ** 可匹配零个或多个路径段
+            for (int i = index; i <= segments.length; i++) {
+                collect(node.doubleWildcard, segments, i, result);
+            }
+        }
+        if (index == segments.length) {
+            if (node.entries != null) {
+                result.addAll(node.entries);
+            }
+            if (node.wildcards != null) {
+                // AntPathMatcher中 /a/* 可匹配以分隔符结尾的 /a/
+                Node<T> any = node.wildcards.get("*");
+                if (any != null && any.entries != null) {
+                    result.addAll(any.entries);
+                }
+            }
+            return;
+        }
+        String segment = segments[index];
+        if (node.literals != null) {
+            Node<T> child = node.literals.get(segment);
+            if (child != null) {
+                collect(child, segments, index + 1, result);
+            }
+        }
+        if (node.wildcards != null) {
+            for (Node<T> child : node.wildcards.values()) {
+                if (child.segmentPattern.matcher(segment).matches()) {
+                    collect(child, segments, index + 1, result);
+                }
+            }
+        }
+    }
+
+    private static String[] tokenize(String path) {
+        return StringUtils.tokenizeToStringArray(path, PATH_SEPARATOR, false, true);
+    }
+
+    private static boolean isWildcardSegment(String segment) {
+        return segment.indexOf('*') != -1 || segment.indexOf('?') != -1 || segment.indexOf('{') != -1;
+    }
+
+    /**
+     * 段内通配符转换为正则,{var:regex}统一按任意字符处理,由AntPathMatcher做最终校验
+     *
+     * @param segment
+     * @return
+     */
+    private static Pattern compileSegment(String segment) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int depth = 0;
+        for (char c : segment.toCharArray()) {
+            if (depth > 0) {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth--;
+                }
+                continue;
+            }
+            if (c == '*' || c == '?' || c == '{') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(".*");
+                    depth++;
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * 匹配项
+     */
+    public static final class Entry<T> {
+        private final String pattern;
+        private final T value;
+        private final int sequence;
+
+        Entry(String pattern, T value, int sequence) {
+            this.pattern = pattern;
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    private static final class Node<T> {
+        private Map<String, Node<T>> literals;
+        private Map<String, Node<T>> wildcards;
+        private Node<T> doubleWildcard;
+        private Pattern segmentPattern;
+        private List<Entry<T>> entries;
+
+        private Node<T> child(String segment) {
+            if (DOUBLE_WILDCARD.equals(segment)) {
+                if (doubleWildcard == null) {
+                    doubleWildcard = new Node<>();
+                }
+                return doubleWildcard;
+            }
+            if (isWildcardSegment(segment)) {
+                if (wildcards == null) {
+                    wildcards = new LinkedHashMap<>();
+                }
+                return wildcards.computeIfAbsent(segment, s -> {
+                    Node<T> node = new Node<>();
+                    node.segmentPattern = compileSegment(s);
+                    return node;
+                });
+            }
+            if (literals == null) {
+                literals = new HashMap<>();
+            }
+            return literals.computeIfAbsent(segment, s -> new Node<>());
+        }
+
+        private void addEntry(Entry<T> entry) {
+            if (entries == null) {
+                entries = new ArrayList<>(1);
+            }
+            entries.add(entry);
+        }
+    }
+}
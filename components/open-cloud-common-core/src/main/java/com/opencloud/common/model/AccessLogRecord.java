@@ -0,0 +1,87 @@
+package com.opencloud.common.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 网关访问日志传输对象
+ * 网关与基础服务之间传递访问日志,使用AccessLogCodec编解码
+ *
+ * @author liuyadu
+ */
+@Data
+@NoArgsConstructor
+public class AccessLogRecord implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 请求时间
+     */
+    private Date requestTime;
+
+    /**
+     * 响应时间
+     */
+    private Date responseTime;
+
+    /**
+     * 访问路径
+     */
+    private String path;
+
+    /**
+     * 请求类型
+     */
+    private String method;
+
+    /**
+     * 请求IP
+     */
+    private String ip;
+
+    /**
+     * 响应状态
+     */
+    private Integer httpStatus;
+
+    /**
+     * 服务名
+     */
+    private String serviceId;
+
+    private String userAgent;
+
+    /**
+     * 请求头
+     */
+    private Map<String, ?> headers;
+
+    /**
+     * 请求数据
+     */
+    private Map<String, ?> params;
+
+    /**
+     * 认证用户信息(json)
+     */
+    private String authentication;
+
+    /**
+     * 错误信息
+     */
+    private String error;
+
+    /**
+     * 响应大小(字节)
+     */
+    private Long responseSize;
+
+    /**
+     * 响应内容采样
+     */
+    private String responseBody;
+}
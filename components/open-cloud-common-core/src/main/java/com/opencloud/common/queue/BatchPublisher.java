@@ -0,0 +1,220 @@
+package com.opencloud.common.queue;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 批量异步发送器
+ * 调用方只负责写入有界环形队列,由单独的发送线程按数量或时间聚合成批后发送,
+ * 发送端变慢时按溢出策略处理,不会阻塞调用方(BLOCK策略除外)也不会无限占用内存.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class BatchPublisher<E> {
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 直接丢弃
+         */
+        DROP,
+        /**
+         * 队列超过高水位后按比例采样,满时丢弃
+         */
+        SAMPLE,
+        /**
+         * 等待空位,超时后丢弃
+         */
+        BLOCK
+    }
+
+    private final String name;
+
+    private final BoundedRingBuffer<E> buffer;
+
+    private final int batchSize;
+
+    private final long lingerNanos;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int sampleRate;
+
+    private final int highWatermark;
+
+    private final long blockTimeoutNanos;
+
+    private final Consumer<List<E>> sender;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong sampledOutCount = new AtomicLong();
+
+    private final AtomicLong sentCount = new AtomicLong();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private volatile int lastBatchSize;
+
+    private volatile boolean waiting;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    /**
+     * @param name              发送线程名称
+     * @param capacity          队列容量
+     * @param batchSize         每批最大数量
+     * @param lingerMillis      未满一批时最长等待时间(毫秒)
+     * @param overflowPolicy    溢出策略
+     * @param sampleRate        采样比例,SAMPLE策略下高水位后每sampleRate条保留1条
+     * @param blockTimeoutMillis BLOCK策略最长等待时间(毫秒)
+     * @param sender            批量发送
+     */
+    public BatchPublisher(String name, int capacity, int batchSize, long lingerMillis, OverflowPolicy overflowPolicy,
+                          int sampleRate, long blockTimeoutMillis, Consumer<List<E>> sender) {
+        this.name = name;
+        this.buffer = new BoundedRingBuffer<>(capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, lingerMillis));
+        this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.DROP : overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.highWatermark = buffer.capacity() * 3 / 4;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMillis));
+        this.sender = sender;
+    }
+
+    /**
+     * 启动发送线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+        log.info("BatchPublisher[{}] started capacity[{}] batchSize[{}] overflowPolicy[{}]", name, buffer.capacity(), batchSize, overflowPolicy);
+    }
+
+    /**
+     * 停止发送线程,并发送剩余数据
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 写入队列
+     *
+     * @param e
+     * @return 是否写入
+     */
+    public boolean publish(E e) {
+        if (overflowPolicy == OverflowPolicy.SAMPLE && buffer.size() >= highWatermark
+                && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            sampledOutCount.incrementAndGet();
+            return false;
+        }
+        boolean accepted = buffer.offer(e);
+        if (!accepted && overflowPolicy == OverflowPolicy.BLOCK) {
+            long deadline = System.nanoTime() + blockTimeoutNanos;
+            while (!accepted && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                accepted = buffer.offer(e);
+            }
+        }
+        if (!accepted) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        acceptedCount.incrementAndGet();
+        if (waiting && buffer.size() >= batchSize) {
+            waiting = false;
+            LockSupport.unpark(worker);
+        }
+        return true;
+    }
+
+    private void run() {
+        List<E> batch = new ArrayList<>(batchSize);
+        long batchStart = System.nanoTime();
+        while (running || !buffer.isEmpty()) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            long elapsed = System.nanoTime() - batchStart;
+            if (batch.size() >= batchSize || (!batch.isEmpty() && elapsed >= lingerNanos) || (!running && !batch.isEmpty())) {
+                send(batch);
+                batch = new ArrayList<>(batchSize);
+                batchStart = System.nanoTime();
+                continue;
+            }
+            if (batch.isEmpty()) {
+                batchStart = System.nanoTime();
+            }
+            waiting = true;
+            if (buffer.size() < batchSize - batch.size()) {
+                LockSupport.parkNanos(this, batch.isEmpty() ? lingerNanos : lingerNanos - elapsed);
+            }
+            waiting = false;
+        }
+    }
+
+    private void send(List<E> batch) {
+        try {
+            sender.accept(batch);
+            sentCount.addAndGet(batch.size());
+        } catch (Exception e) {
+            errorCount.incrementAndGet();
+            log.error("BatchPublisher[{}] send error:{}", name, e.getMessage());
+        }
+        batchCount.incrementAndGet();
+        lastBatchSize = batch.size();
+    }
+
+    /**
+     * 运行统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("queueDepth", buffer.size());
+        map.put("capacity", buffer.capacity());
+        map.put("overflowPolicy", overflowPolicy.name());
+        map.put("acceptedCount", acceptedCount.get());
+        map.put("droppedCount", droppedCount.get());
+        map.put("sampledOutCount", sampledOutCount.get());
+        map.put("sentCount", sentCount.get());
+        map.put("batchCount", batchCount.get());
+        map.put("lastBatchSize", lastBatchSize);
+        map.put("errorCount", errorCount.get());
+        return map;
+    }
+}
@@ -223,7 +223,7 @@ public class OpenHelper {
     public static ResourceServerTokenServices buildRedisTokenServices(RedisConnectionFactory redisConnectionFactory) throws Exception {
         OpenRedisTokenService tokenServices = new OpenRedisTokenService();
         // 这里的签名key 保持和认证中心一致
-        RedisTokenStore redisTokenStore = new RedisTokenStore(redisConnectionFactory);
+        RedisTokenStore redisTokenStore = new OpenRedisTokenStore(redisConnectionFactory);
         tokenServices.setTokenStore(redisTokenStore);
         log.info("buildRedisTokenServices[{}]", tokenServices);
         return tokenServices;
@@ -0,0 +1,89 @@
+package com.opencloud.common.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.store.redis.RedisTokenStore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 自定义RedisTokenStore
+ * 存储格式与RedisTokenStore完全一致,令牌被移除或重新保存时通过Redis频道广播令牌摘要,
+ * 网关等缓存了认证信息的服务收到后立即失效本地缓存.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class OpenRedisTokenStore extends RedisTokenStore {
+
+    /**
+     * 令牌变更广播频道
+     */
+    public static final String TOKEN_REVOKE_CHANNEL = "open:token:revoke";
+
+    /**
+     * 认证信息key前缀,与RedisTokenStore保持一致
+     */
+    public static final String AUTH = "auth:";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final RedisConnectionFactory connectionFactory;
+
+    public OpenRedisTokenStore(RedisConnectionFactory connectionFactory) {
+        super(connectionFactory);
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        super.storeAccessToken(token, authentication);
+        // 已存在的令牌可能被重新保存(如更新权限)
+        publishRevoke(token.getValue());
+    }
+
+    @Override
+    public void removeAccessToken(String tokenValue) {
+        super.removeAccessToken(tokenValue);
+        publishRevoke(tokenValue);
+    }
+
+    /**
+     * 令牌摘要,避免在频道及缓存中传递明文令牌
+     *
+     * @param tokenValue
+     * @return
+     */
+    public static String hashToken(String tokenValue) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(tokenValue.getBytes(StandardCharsets.UTF_8));
+            char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void publishRevoke(String tokenValue) {
+        if (tokenValue == null) {
+            return;
+        }
+        RedisConnection conn = connectionFactory.getConnection();
+        try {
+            conn.publish(TOKEN_REVOKE_CHANNEL.getBytes(StandardCharsets.UTF_8), hashToken(tokenValue).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.error("publishRevoke error:{}", e.getMessage());
+        } finally {
+            conn.close();
+        }
+    }
+}
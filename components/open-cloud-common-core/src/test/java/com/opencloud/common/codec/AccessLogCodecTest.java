@@ -0,0 +1,179 @@
+package com.opencloud.common.codec;
+
+import com.opencloud.common.model.AccessLogRecord;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class AccessLogCodecTest {
+
+    @Test
+    public void roundTrip() {
+        List<AccessLogRecord> records = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            records.add(record(i));
+        }
+        // 只有部分字段
+        AccessLogRecord sparse = new AccessLogRecord();
+        sparse.setPath("/sparse");
+        records.add(sparse);
+        records.add(new AccessLogRecord());
+
+        byte[] bytes = AccessLogCodec.encode(records);
+        assertTrue(AccessLogCodec.isEncoded(bytes));
+        List<AccessLogRecord> decoded = AccessLogCodec.decode(bytes);
+        assertEquals(records.size(), decoded.size());
+        for (int i = 0; i < 3; i++) {
+            AccessLogRecord expected = records.get(i);
+            AccessLogRecord actual = decoded.get(i);
+            assertEquals(expected.getRequestTime(), actual.getRequestTime());
+            assertEquals(expected.getResponseTime(), actual.getResponseTime());
+            assertEquals(expected.getPath(), actual.getPath());
+            assertEquals(expected.getMethod(), actual.getMethod());
+            assertEquals(expected.getIp(), actual.getIp());
+            assertEquals(expected.getHttpStatus(), actual.getHttpStatus());
+            assertEquals(expected.getServiceId(), actual.getServiceId());
+            assertEquals(expected.getUserAgent(), actual.getUserAgent());
+            assertEquals(expected.getAuthentication(), actual.getAuthentication());
+            assertEquals(expected.getError(), actual.getError());
+            assertEquals(expected.getResponseSize(), actual.getResponseSize());
+            assertEquals(expected.getResponseBody(), actual.getResponseBody());
+            assertEquals(expected.getHeaders(), actual.getHeaders());
+            Map<String, ?> params = actual.getParams();
+            assertEquals("v" + i, params.get("name"));
+            assertEquals(String.valueOf(i), params.get("page"));
+            assertNull(params.get("empty"));
+            assertTrue(params.containsKey("empty"));
+        }
+        assertEquals("/sparse", decoded.get(3).getPath());
+        assertNull(decoded.get(3).getRequestTime());
+        assertNull(decoded.get(3).getHeaders());
+        assertNull(decoded.get(4).getPath());
+    }
+
+    @Test
+    public void roundTripEmptyAndLongStrings() {
+        assertTrue(AccessLogCodec.decode(AccessLogCodec.encode(Collections.emptyList())).isEmpty());
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("响应内容").append(i);
+        }
+        AccessLogRecord record = new AccessLogRecord();
+        record.setResponseBody(body.toString());
+        record.setResponseTime(new Date(1000L));
+        List<AccessLogRecord> decoded = AccessLogCodec.decode(AccessLogCodec.encode(Arrays.asList(record, record)));
+        assertEquals(body.toString(), decoded.get(0).getResponseBody());
+        assertEquals(body.toString(), decoded.get(1).getResponseBody());
+        assertEquals(new Date(1000L), decoded.get(1).getResponseTime());
+    }
+
+    @Test
+    public void rejectsNonEncoded() {
+        assertFalse(AccessLogCodec.isEncoded(null));
+        assertFalse(AccessLogCodec.isEncoded(new byte[]{'O', 'L'}));
+        assertFalse(AccessLogCodec.isEncoded("{\"path\":\"/\"}".getBytes()));
+        assertMalformed("{\"path\":\"/\"}".getBytes());
+    }
+
+    @Test
+    public void rejectsHigherVersionOnly() {
+        byte[] bytes = AccessLogCodec.encode(Collections.singletonList(record(1)));
+        bytes[2] = AccessLogCodec.VERSION + 1;
+        assertMalformed(bytes);
+        bytes[2] = (byte) 0xFF;
+        assertMalformed(bytes);
+        bytes[2] = AccessLogCodec.VERSION;
+        assertEquals(1, AccessLogCodec.decode(bytes).size());
+    }
+
+    @Test
+    public void rejectsCountBeyondRemainingBytes() {
+        // 条数为Integer.MAX_VALUE,不应按条数分配内存
+        assertMalformed(new byte[]{'O', 'L', AccessLogCodec.VERSION, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        // 负数条数
+        assertMalformed(new byte[]{'O', 'L', AccessLogCodec.VERSION, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01});
+        // 条数大于剩余字节
+        assertMalformed(new byte[]{'O', 'L', AccessLogCodec.VERSION, 3, 0, 0});
+    }
+
+    @Test
+    public void rejectsMapSizeBeyondRemainingBytes() {
+        AccessLogRecord record = new AccessLogRecord();
+        record.setHeaders(Collections.singletonMap("a", "b"));
+        byte[] bytes = AccessLogCodec.encode(Collections.singletonList(record));
+        // 头部: magic(2) version(1) 条数(1) 掩码(2) 之后为map大小
+        assertEquals(1, bytes[6]);
+        bytes[6] = 0x7F;
+        assertMalformed(bytes);
+    }
+
+    @Test
+    public void rejectsTruncatedAndCorruptedInput() {
+        byte[] bytes = AccessLogCodec.encode(Arrays.asList(record(1), record(2)));
+        for (int length = 3; length < bytes.length; length++) {
+            assertMalformed(Arrays.copyOf(bytes, length));
+        }
+        // 随机篡改只允许抛出IllegalArgumentException
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            byte[] corrupted = bytes.clone();
+            int index = 3 + random.nextInt(corrupted.length - 3);
+            corrupted[index] = (byte) random.nextInt(256);
+            try {
+                AccessLogCodec.decode(corrupted);
+            } catch (IllegalArgumentException e) {
+                // 格式错误
+            }
+        }
+    }
+
+    @Test
+    public void rejectsInvalidStringReference() {
+        // 1条记录, 掩码F_PATH(4), 引用表中第0个字符串(表为空)
+        assertMalformed(new byte[]{'O', 'L', AccessLogCodec.VERSION, 1, 4, 2});
+        // 字符串长度超过剩余字节
+        assertMalformed(new byte[]{'O', 'L', AccessLogCodec.VERSION, 1, 4, 1, 0x7F, 'a'});
+    }
+
+    private static AccessLogRecord record(int i) {
+        AccessLogRecord record = new AccessLogRecord();
+        record.setRequestTime(new Date(1560000000000L + i));
+        record.setResponseTime(new Date(1560000000000L + i - 5));
+        record.setPath("/api/" + i);
+        record.setMethod("POST");
+        record.setIp("192.168.0." + i);
+        record.setHttpStatus(200 + i);
+        record.setServiceId("open-cloud-base-server");
+        record.setUserAgent("Mozilla/5.0");
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("content-type", "application/json");
+        headers.put("x-index", String.valueOf(i));
+        record.setHeaders(headers);
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("name", "v" + i);
+        params.put("page", i);
+        params.put("empty", null);
+        record.setParams(params);
+        record.setAuthentication(i % 2 == 0 ? null : "{\"username\":\"admin\"}");
+        record.setError(i == 2 ? "error" : null);
+        record.setResponseSize(1024L * i);
+        record.setResponseBody("{\"code\":0}");
+        return record;
+    }
+
+    private static void assertMalformed(byte[] bytes) {
+        try {
+            AccessLogCodec.decode(bytes);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // 格式错误
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.opencloud.common.matcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class IpAddressTrieTest {
+
+    @Test
+    public void singleIpv4Address() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertTrue(trie.add("192.168.1.10"));
+        assertTrue(trie.contains("192.168.1.10"));
+        assertFalse(trie.contains("192.168.1.11"));
+        assertFalse(trie.contains("192.168.1.1"));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void ipv4CidrContainment() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertTrue(trie.add("10.0.0.0/8"));
+        assertTrue(trie.add(" 172.16.0.0 / 12 "));
+        assertTrue(trie.contains("10.255.255.255"));
+        assertTrue(trie.contains("172.31.0.1"));
+        assertFalse(trie.contains("172.32.0.1"));
+        assertFalse(trie.contains("11.0.0.1"));
+
+        IpAddressTrie all = new IpAddressTrie();
+        assertTrue(all.add("0.0.0.0/0"));
+        assertTrue(all.contains("8.8.8.8"));
+        assertFalse(all.contains("::1"));
+    }
+
+    @Test
+    public void narrowerRuleAfterBroaderRule() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertTrue(trie.add("10.0.0.0/8"));
+        assertTrue(trie.add("10.1.0.0/16"));
+        assertTrue(trie.add("10.1.2.3"));
+        assertTrue(trie.contains("10.1.2.3"));
+        assertTrue(trie.contains("10.2.0.1"));
+        assertFalse(trie.contains("11.1.2.3"));
+    }
+
+    @Test
+    public void broaderRuleAfterNarrowerRule() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertTrue(trie.add("10.1.2.3"));
+        assertTrue(trie.add("10.1.0.0/16"));
+        assertTrue(trie.contains("10.1.200.1"));
+        assertFalse(trie.contains("10.2.0.1"));
+        assertTrue(trie.add("10.0.0.0/8"));
+        assertTrue(trie.contains("10.2.0.1"));
+        assertTrue(trie.contains("10.1.2.3"));
+    }
+
+    @Test
+    public void ipv6CidrContainment() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertTrue(trie.add("2001:db8::/32"));
+        assertTrue(trie.add("[::1]"));
+        assertTrue(trie.add("fe80::/10"));
+        assertTrue(trie.add("2001:db9:1::/48"));
+        assertTrue(trie.contains("2001:db8:ffff::1"));
+        assertTrue(trie.contains("2001:0db8:0000:0000:0000:0000:0000:0001"));
+        assertTrue(trie.contains("::1"));
+        assertTrue(trie.contains("[::1]"));
+        assertTrue(trie.contains("febf::1"));
+        assertTrue(trie.contains("2001:db9:1:ffff::1"));
+        assertFalse(trie.contains("2001:db9:2::1"));
+        assertFalse(trie.contains("2001:db7::1"));
+        assertFalse(trie.contains("::2"));
+        assertFalse(trie.contains("fec0::1"));
+        // IPv4规则不匹配IPv6地址
+        assertFalse(trie.contains("127.0.0.1"));
+    }
+
+    @Test
+    public void ipv4MappedIpv6AddressMatchesIpv4Rule() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertTrue(trie.add("10.0.0.0/8"));
+        assertTrue(trie.contains("::ffff:10.1.2.3"));
+    }
+
+    @Test
+    public void malformedInputIsRejected() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertFalse(trie.add(null));
+        assertFalse(trie.add(""));
+        assertFalse(trie.add("192.168.1.1:8080"));
+        assertFalse(trie.add("example.com"));
+        assertFalse(trie.add("localhost"));
+        assertFalse(trie.add("host:80"));
+        assertFalse(trie.add("256.1.1.1"));
+        assertFalse(trie.add("1.2.3"));
+        assertFalse(trie.add("1.2.3.4.5"));
+        assertFalse(trie.add("1..2.3"));
+        assertFalse(trie.add("1.2.3.4/33"));
+        assertFalse(trie.add("1.2.3.4/x"));
+        assertFalse(trie.add("::1/129"));
+        assertFalse(trie.add("2001:db8::g"));
+        assertTrue(trie.isEmpty());
+
+        assertTrue(trie.add("192.168.1.1"));
+        assertFalse(trie.contains((String) null));
+        assertFalse(trie.contains("192.168.1.1:8080"));
+        assertFalse(trie.contains("unknown"));
+        assertNull(IpAddressTrie.parseAddress("192.168.1.1:8080"));
+        assertNull(IpAddressTrie.parseAddress("www.example.com"));
+        assertNull(IpAddressTrie.parseAddress("host:80"));
+        assertNull(IpAddressTrie.parseAddress("[]"));
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 1, 1}, IpAddressTrie.parseAddress("192.168.1.1"));
+        assertEquals(16, IpAddressTrie.parseAddress("::1").length);
+    }
+}
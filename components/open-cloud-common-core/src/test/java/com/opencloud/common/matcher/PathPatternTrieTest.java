@@ -0,0 +1,204 @@
+package com.opencloud.common.matcher;
+
+import org.junit.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class PathPatternTrieTest {
+
+    private static final String[] PATTERNS = {
+            "/",
+            "/**",
+            "/api/**",
+            "/api/users",
+            "/api/users/",
+            "/api/users/*",
+            "/api/users/{id}",
+            "/api/users/{id:\\d+}/roles",
+            "/api/users/{id:[a-z]{2}}",
+            "/api/users/*/roles/**",
+            "/api/**/export",
+            "/api/user?",
+            "/api/*.json",
+            "/api/file-*.txt",
+            "/api/**/*.html",
+            "/static/**",
+            "**/health",
+            "/a/*/c",
+            "/a/**/b/**/c",
+            "/*/x"
+    };
+
+    private static final String[] PATHS = {
+            "/",
+            "",
+            "/api",
+            "/api/",
+            "/api/users",
+            "/api/users/",
+            "/api//users",
+            "//api/users",
+            "/api/users/1",
+            "/api/users/ab",
+            "/api/users/abc",
+            "/api/users/1/",
+            "/api/users/1/roles",
+            "/api/users/x/roles",
+            "/api/users/1/roles/2/3",
+            "/api/x/y/export",
+            "/api/export",
+            "/api/usera",
+            "/api/userab",
+            "/api/list.json",
+            "/api/v1/list.json",
+            "/api/file-1.txt",
+            "/api/v1/v2/index.html",
+            "/static",
+            "/static/js/app.js",
+            "/health",
+            "/a/b/c",
+            "/a/b/c/",
+            "/a/b/b/c",
+            "/a/x/b/y/z/c",
+            "/a/c",
+            "/q/x",
+            "/q//x",
+            "/other"
+    };
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Test
+    public void literalNodes() {
+        PathPatternTrie<String> trie = build("/api/users", "/api/roles");
+        assertEquals("/api/users", trie.match("/api/users"));
+        assertEquals("/api/roles", trie.match("/api/roles"));
+        assertNull(trie.match("/api/users/1"));
+        assertNull(trie.match("/api"));
+        assertFalse(trie.matches("/api/user"));
+        assertEquals(2, trie.size());
+    }
+
+    @Test
+    public void segmentWildcardNodes() {
+        PathPatternTrie<String> trie = build("/api/*/list", "/api/user?", "/api/users/{id}", "/api/{id:\\d+}.json");
+        assertEquals("/api/*/list", trie.match("/api/items/list"));
+        assertEquals("/api/user?", trie.match("/api/users"));
+        assertNull(trie.match("/api/user"));
+        assertEquals("/api/users/{id}", trie.match("/api/users/100"));
+        assertEquals("/api/{id:\\d+}.json", trie.match("/api/12.json"));
+        assertNull(trie.match("/api/ab.json"));
+        assertNull(trie.match("/api/users/100/roles"));
+    }
+
+    @Test
+    public void doubleWildcardNodes() {
+        PathPatternTrie<String> trie = build("/api/**", "/api/**/export", "/**");
+        assertEquals("/api/**", trie.match("/api"));
+        assertEquals("/api/**", trie.match("/api/users/1"));
+        assertEquals("/api/**/export", trie.match("/api/export"));
+        assertEquals("/api/**/export", trie.match("/api/a/b/export"));
+        assertEquals("/**", trie.match("/other"));
+        assertEquals(Arrays.asList("/api/**/export", "/api/**", "/**"), patterns(trie.matchAll("/api/a/export")));
+    }
+
+    @Test
+    public void trailingAndDoubleSlashes() {
+        PathPatternTrie<String> trie = build("/api/users", "/api/items/*");
+        assertEquals(pathMatcher.match("/api/users", "/api/users/"), trie.matches("/api/users/"));
+        assertEquals(pathMatcher.match("/api/users", "/api//users"), trie.matches("/api//users"));
+        assertEquals(pathMatcher.match("/api/items/*", "/api/items/"), trie.matches("/api/items/"));
+        assertEquals(pathMatcher.match("/api/items/*", "/api//items/1"), trie.matches("/api//items/1"));
+    }
+
+    @Test
+    public void equalsLinearAntPathMatcherScan() {
+        PathPatternTrie<String> trie = build(PATTERNS);
+        for (String path : PATHS) {
+            assertEquals(path, linearScan(Arrays.asList(PATTERNS), path), patterns(trie.matchAll(path)));
+        }
+    }
+
+    @Test
+    public void equalsLinearScanWithRandomPatterns() {
+        Random random = new Random(7);
+        String[] segments = {"a", "b", "c", "*", "?", "{id}", "**", "a*", "*.json"};
+        String[] pathSegments = {"a", "b", "c", "x", "ab", "1.json", ""};
+        for (int round = 0; round < 50; round++) {
+            List<String> patterns = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                patterns.add(randomPath(random, segments, random.nextInt(4) + 1));
+            }
+            PathPatternTrie<String> trie = build(patterns.toArray(new String[0]));
+            for (int i = 0; i < 100; i++) {
+                String path = randomPath(random, pathSegments, random.nextInt(5));
+                assertEquals(patterns + " " + path, linearScan(patterns, path), patterns(trie.matchAll(path)));
+            }
+        }
+    }
+
+    @Test
+    public void equallySpecificPatternsKeepLoadOrder() {
+        PathPatternTrie<String> trie = build("/api/{id}", "/api/{name}", "/api/{key}");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Arrays.asList("/api/{id}", "/api/{name}", "/api/{key}"), patterns(trie.matchAll("/api/" + i)));
+        }
+        PathPatternTrie<String> reversed = build("/api/{key}", "/api/{name}", "/api/{id}");
+        assertEquals("/api/{key}", reversed.match("/api/1"));
+    }
+
+    @Test
+    public void candidatesAreSupersetInLoadOrder() {
+        PathPatternTrie<String> trie = build("/api/**", "/api/{id:\\d+}", "/other");
+        List<String> candidates = patterns(trie.candidates("/api/abc"));
+        assertEquals(Arrays.asList("/api/**", "/api/{id:\\d+}"), candidates);
+        assertEquals(Collections.singletonList("/api/**"), patterns(trie.matchAll("/api/abc")));
+        assertTrue(trie.candidates(null).isEmpty());
+        assertTrue(new PathPatternTrie<String>().matchAll("/api").isEmpty());
+    }
+
+    private PathPatternTrie<String> build(String... patterns) {
+        PathPatternTrie<String> trie = new PathPatternTrie<>();
+        for (String pattern : patterns) {
+            trie.put(pattern, pattern);
+        }
+        return trie;
+    }
+
+    /**
+     * 原有逐条匹配: 按添加顺序扫描,再按精确程度稳定排序
+     */
+    private List<String> linearScan(List<String> patterns, String path) {
+        List<String> result = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path)) {
+                result.add(pattern);
+            }
+        }
+        result.sort(pathMatcher.getPatternComparator(path));
+        return result;
+    }
+
+    private static List<String> patterns(List<PathPatternTrie.Entry<String>> entries) {
+        List<String> result = new ArrayList<>();
+        entries.forEach(entry -> result.add(entry.getValue()));
+        return result;
+    }
+
+    private static String randomPath(Random random, String[] segments, int length) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            path.append('/').append(segments[random.nextInt(segments.length)]);
+        }
+        if (path.length() == 0 || random.nextInt(5) == 0) {
+            path.append('/');
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,191 @@
+package com.opencloud.common.queue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class BatchPublisherTest {
+
+    private BatchPublisher<Integer> publisher;
+
+    private final CountDownLatch senderEntered = new CountDownLatch(1);
+
+    private final CountDownLatch releaseSender = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        releaseSender.countDown();
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    /**
+     * 多线程写入,BLOCK策略下全部发送且不重复
+     */
+    @Test
+    public void concurrentPublishersNeitherLoseNorDuplicate() throws Exception {
+        final int producers = 4;
+        final int perProducer = 50000;
+        final int total = producers * perProducer;
+        final int batchSize = 100;
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        AtomicInteger oversizedBatches = new AtomicInteger();
+        publisher = new BatchPublisher<>("test-publisher", 256, batchSize, 5, BatchPublisher.OverflowPolicy.BLOCK, 1, TimeUnit.SECONDS.toMillis(30), batch -> {
+            if (batch.size() > batchSize) {
+                oversizedBatches.incrementAndGet();
+            }
+            batch.forEach(seen::incrementAndGet);
+        });
+        publisher.start();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int offset = p * perProducer;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    publisher.publish(offset + i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+            assertFalse("producer did not finish", thread.isAlive());
+        }
+        publisher.shutdown();
+
+        Map<String, Object> stats = publisher.getStats();
+        assertEquals((long) total, stats.get("acceptedCount"));
+        assertEquals(0L, stats.get("droppedCount"));
+        assertEquals((long) total, stats.get("sentCount"));
+        assertEquals(0, stats.get("queueDepth"));
+        assertEquals(0, oversizedBatches.get());
+        for (int i = 0; i < total; i++) {
+            assertEquals("value " + i, 1, seen.get(i));
+        }
+    }
+
+    @Test
+    public void dropPolicyCountsDroppedAndKeepsDepth() throws Exception {
+        publisher = newBlockedPublisher(BatchPublisher.OverflowPolicy.DROP, 1, 0);
+        int capacity = (Integer) publisher.getStats().get("capacity");
+        int extra = 100;
+        int accepted = 0;
+        for (int i = 1; i <= extra; i++) {
+            if (publisher.publish(i)) {
+                accepted++;
+            }
+        }
+        Map<String, Object> stats = publisher.getStats();
+        assertEquals(capacity, accepted);
+        assertEquals(capacity, stats.get("queueDepth"));
+        assertEquals((long) capacity + 1, stats.get("acceptedCount"));
+        assertEquals((long) (extra - capacity), stats.get("droppedCount"));
+        assertEquals(0L, stats.get("sampledOutCount"));
+
+        releaseSender.countDown();
+        publisher.shutdown();
+        stats = publisher.getStats();
+        assertEquals(0, stats.get("queueDepth"));
+        assertEquals((long) capacity + 1, stats.get("sentCount"));
+    }
+
+    @Test
+    public void samplePolicySamplesAboveHighWatermark() throws Exception {
+        // 采样比例取最大值,高水位后几乎全部丢弃
+        publisher = newBlockedPublisher(BatchPublisher.OverflowPolicy.SAMPLE, Integer.MAX_VALUE, 0);
+        int capacity = (Integer) publisher.getStats().get("capacity");
+        int highWatermark = capacity * 3 / 4;
+        int extra = 100;
+        for (int i = 1; i <= extra; i++) {
+            publisher.publish(i);
+        }
+        Map<String, Object> stats = publisher.getStats();
+        assertEquals(highWatermark, stats.get("queueDepth"));
+        assertEquals((long) highWatermark + 1, stats.get("acceptedCount"));
+        assertEquals((long) (extra - highWatermark), stats.get("sampledOutCount"));
+        assertEquals(0L, stats.get("droppedCount"));
+
+        releaseSender.countDown();
+        publisher.shutdown();
+        assertEquals((long) highWatermark + 1, publisher.getStats().get("sentCount"));
+    }
+
+    @Test
+    public void blockPolicyWaitsForSpaceThenDropsOnTimeout() throws Exception {
+        publisher = newBlockedPublisher(BatchPublisher.OverflowPolicy.BLOCK, 1, 200);
+        int capacity = (Integer) publisher.getStats().get("capacity");
+        for (int i = 1; i <= capacity; i++) {
+            assertTrue(publisher.publish(i));
+        }
+        // 发送线程阻塞,等待超时后丢弃
+        long start = System.nanoTime();
+        assertFalse(publisher.publish(-1));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        Map<String, Object> stats = publisher.getStats();
+        assertEquals(1L, stats.get("droppedCount"));
+        assertEquals(capacity, stats.get("queueDepth"));
+
+        // 等待期间发送线程恢复,写入成功
+        Thread releaser = new Thread(() -> {
+            sleep(10);
+            releaseSender.countDown();
+        });
+        releaser.start();
+        assertTrue(publisher.publish(-2));
+        releaser.join();
+        publisher.shutdown();
+        stats = publisher.getStats();
+        assertEquals(1L, stats.get("droppedCount"));
+        assertEquals((long) capacity + 2, stats.get("acceptedCount"));
+        assertEquals((long) capacity + 2, stats.get("sentCount"));
+        assertEquals(0, stats.get("queueDepth"));
+    }
+
+    /**
+     * 第一条数据进入发送后阻塞发送线程,之后写入的数据都留在队列中
+     */
+    private BatchPublisher<Integer> newBlockedPublisher(BatchPublisher.OverflowPolicy policy, int sampleRate, long blockTimeoutMillis) throws InterruptedException {
+        Consumer<List<Integer>> sender = batch -> {
+            senderEntered.countDown();
+            await(releaseSender);
+        };
+        BatchPublisher<Integer> blocked = new BatchPublisher<>("test-publisher", 16, 1, 1, policy, sampleRate, blockTimeoutMillis, sender);
+        blocked.start();
+        assertTrue(blocked.publish(0));
+        assertTrue(senderEntered.await(5, TimeUnit.SECONDS));
+        return blocked;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
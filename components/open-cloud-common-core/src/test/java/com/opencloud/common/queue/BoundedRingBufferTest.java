@@ -0,0 +1,119 @@
+package com.opencloud.common.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class BoundedRingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(5);
+        assertEquals(8, buffer.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(8));
+        assertEquals(8, buffer.size());
+    }
+
+    @Test
+    public void pollReturnsInOrderAndWrapsAround() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(round * 4 + i));
+            }
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(round * 4 + i), buffer.poll());
+            }
+            assertNull(buffer.poll());
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    @Test
+    public void drainToRespectsMax() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> target = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(target, 4));
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.drainTo(target, 4));
+        assertEquals(6, target.size());
+    }
+
+    /**
+     * 多生产者多消费者:每个元素恰好被消费一次
+     */
+    @Test
+    public void concurrentProducersAndConsumersNeitherLoseNorDuplicate() throws Exception {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 100000;
+        final int total = producers * perProducer;
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        AtomicInteger consumed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int offset = p * perProducer;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    Integer value = offset + i;
+                    while (!buffer.offer(value)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (consumed.get() < total) {
+                    Integer value = buffer.poll();
+                    if (value == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    seen.incrementAndGet(value);
+                    consumed.incrementAndGet();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+            assertFalse("worker did not finish", thread.isAlive());
+        }
+        assertEquals(total, consumed.get());
+        for (int i = 0; i < total; i++) {
+            assertEquals("value " + i, 1, seen.get(i));
+        }
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
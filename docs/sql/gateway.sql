@@ -35,6 +35,8 @@ CREATE TABLE `gateway_access_logs` (
   `authentication` text COMMENT '认证信息',
   `service_id` varchar(100) DEFAULT NULL COMMENT '服务名',
   `error` varchar(255) DEFAULT NULL COMMENT '错误信息',
+  `response_size` bigint(20) DEFAULT NULL COMMENT '响应大小(字节)',
+  `response_body` text COMMENT '响应内容采样',
   PRIMARY KEY (`access_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 ROW_FORMAT=COMPACT COMMENT='开放网关-访问日志';
 
@@ -0,0 +1,100 @@
+package com.opencloud.gateway.spring.server.benchmark;
+
+import com.opencloud.base.client.model.AuthorityResource;
+import com.opencloud.gateway.spring.server.configuration.ApiProperties;
+import com.opencloud.gateway.spring.server.filter.AccessManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鉴权路径匹配、权限匹配、IP黑白名单匹配
+ *
+ * @author liuyadu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessManagerBenchmark {
+
+    private static final int PATH_COUNT = 1024;
+
+    /**
+     * 接口及IP规则数量
+     */
+    @Param({"100", "1000", "10000", "50000"})
+    public int apiCount;
+
+    private AccessManager accessManager;
+
+    private ServerWebExchange exchange;
+
+    private Authentication authentication;
+
+    private String[] paths;
+
+    private String[] ips;
+
+    private String[] origins;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<AuthorityResource> resources = SyntheticData.authorityResources(apiCount);
+        BenchmarkResourceLocator resourceLocator = new BenchmarkResourceLocator(SyntheticData.routes(SyntheticData.SERVICE_COUNT));
+        resourceLocator.load(resources, SyntheticData.ipRules(apiCount, apiCount), SyntheticData.ipRules(apiCount / 10 + 1, apiCount));
+        ApiProperties apiProperties = new ApiProperties();
+        // 只测量匹配本身
+        apiProperties.setDecisionCacheSize(0L);
+        accessManager = new AccessManager(resourceLocator, apiProperties);
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").build());
+        authentication = new UsernamePasswordAuthenticationToken("benchmark", null, SyntheticData.userAuthorities(apiCount));
+        paths = SyntheticData.requestPaths(PATH_COUNT, apiCount);
+        ips = SyntheticData.ips(PATH_COUNT);
+        origins = new String[PATH_COUNT];
+        for (int i = 0; i < PATH_COUNT; i++) {
+            origins[i] = "http://app" + i + ".example.com";
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (PATH_COUNT - 1);
+    }
+
+    @Benchmark
+    public boolean permitAll() {
+        return accessManager.permitAll(paths[next()]);
+    }
+
+    @Benchmark
+    public AuthorityResource getResource() {
+        return accessManager.getResource(paths[next()]);
+    }
+
+    @Benchmark
+    public boolean mathAuthorities() {
+        return accessManager.mathAuthorities(exchange, authentication, paths[next()]);
+    }
+
+    @Benchmark
+    public boolean matchIpOrOriginBlacklist() {
+        int i = next();
+        return accessManager.matchIpOrOriginBlacklist(paths[i], ips[i], origins[i]);
+    }
+
+    @Benchmark
+    public Boolean[] matchIpOrOriginWhiteList() {
+        int i = next();
+        return accessManager.matchIpOrOriginWhiteList(paths[i], ips[i], null);
+    }
+}
@@ -0,0 +1,53 @@
+package com.opencloud.gateway.spring.server.benchmark;
+
+import com.opencloud.base.client.model.AuthorityResource;
+import com.opencloud.base.client.model.IpLimitApi;
+import com.opencloud.common.matcher.AuthorityIndex;
+import com.opencloud.gateway.spring.server.locator.ResourceLocator;
+import com.opencloud.gateway.spring.server.locator.ResourceSnapshot;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * 基准测试资源加载器
+ * 路由来自内存,资源快照直接构建,不访问基础服务.
+ *
+ * @author liuyadu
+ */
+public class BenchmarkResourceLocator extends ResourceLocator {
+
+    private ResourceSnapshot fixedSnapshot = ResourceSnapshot.EMPTY;
+
+    public BenchmarkResourceLocator(List<RouteDefinition> routes) {
+        super(() -> Flux.fromIterable(routes), null);
+        refreshRoutePrefixIndex().block();
+    }
+
+    /**
+     * 构建资源快照
+     *
+     * @param resources
+     * @param ipBlacks
+     * @param ipWhites
+     */
+    public void load(List<AuthorityResource> resources, List<IpLimitApi> ipBlacks, List<IpLimitApi> ipWhites) {
+        this.fixedSnapshot = new ResourceSnapshot(1L, System.currentTimeMillis(), resources, buildConfigAttributes(resources), ipBlacks, ipWhites);
+    }
+
+    @Override
+    public String getFullPath(String serviceId, String path) {
+        return super.getFullPath(serviceId, path);
+    }
+
+    @Override
+    public ResourceSnapshot getSnapshot() {
+        return fixedSnapshot;
+    }
+
+    @Override
+    public AuthorityIndex<AuthorityResource> getAuthorityIndex() {
+        return fixedSnapshot.getAuthorityIndex();
+    }
+}
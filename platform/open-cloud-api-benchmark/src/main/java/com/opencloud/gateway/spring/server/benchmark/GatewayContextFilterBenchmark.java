@@ -0,0 +1,72 @@
+package com.opencloud.gateway.spring.server.benchmark;
+
+import com.opencloud.gateway.spring.server.filter.GatewayContextFilter;
+import com.opencloud.gateway.spring.server.filter.context.GatewayContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求体缓存及参数解析
+ * 每次调用构建新的请求,下游读取全部参数,与签名、日志过滤器的实际用法一致.
+ *
+ * @author liuyadu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GatewayContextFilterBenchmark {
+
+    /**
+     * 请求体字段数量
+     */
+    @Param({"10", "100", "1000"})
+    public int fieldCount;
+
+    private GatewayContextFilter filter;
+
+    private WebFilterChain chain;
+
+    private String json;
+
+    private String form;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        filter = new GatewayContextFilter(10 * 1024 * 1024);
+        chain = exchange -> {
+            GatewayContext gatewayContext = exchange.getAttribute(GatewayContext.CACHE_GATEWAY_CONTEXT);
+            MultiValueMap<String, String> data = gatewayContext.getAllRequestData();
+            return data.isEmpty() ? Mono.error(new IllegalStateException("empty request data")) : Mono.empty();
+        };
+        json = SyntheticData.jsonBody(fieldCount);
+        form = SyntheticData.formBody(fieldCount);
+    }
+
+    private MockServerWebExchange exchange(MediaType contentType, String body) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/service-1/api/v1/res1/info?appId=1552274783265")
+                .contentType(contentType)
+                .contentLength(body.getBytes(StandardCharsets.UTF_8).length)
+                .body(body));
+    }
+
+    @Benchmark
+    public void json() {
+        filter.filter(exchange(MediaType.APPLICATION_JSON_UTF8, json), chain).block();
+    }
+
+    @Benchmark
+    public void form() {
+        filter.filter(exchange(MediaType.APPLICATION_FORM_URLENCODED, form), chain).block();
+    }
+}
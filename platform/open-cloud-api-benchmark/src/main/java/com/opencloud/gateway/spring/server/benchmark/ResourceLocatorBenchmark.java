@@ -0,0 +1,52 @@
+package com.opencloud.gateway.spring.server.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口路径加路由前缀,资源刷新时每个接口、IP规则调用一次
+ *
+ * @author liuyadu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceLocatorBenchmark {
+
+    private static final int PATH_COUNT = 1024;
+
+    /**
+     * 路由数量
+     */
+    @Param({"100", "1000", "10000", "50000"})
+    public int routeCount;
+
+    private BenchmarkResourceLocator resourceLocator;
+
+    private String[] serviceIds;
+
+    private String[] paths;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        resourceLocator = new BenchmarkResourceLocator(SyntheticData.routes(routeCount));
+        serviceIds = new String[PATH_COUNT];
+        paths = new String[PATH_COUNT];
+        for (int i = 0; i < PATH_COUNT; i++) {
+            serviceIds[i] = SyntheticData.serviceId((int) ((i * 2654435761L) % routeCount));
+            paths[i] = SyntheticData.apiPath(i);
+        }
+    }
+
+    @Benchmark
+    public String getFullPath() {
+        int i = cursor = (cursor + 1) & (PATH_COUNT - 1);
+        return resourceLocator.getFullPath(serviceIds[i], paths[i]);
+    }
+}
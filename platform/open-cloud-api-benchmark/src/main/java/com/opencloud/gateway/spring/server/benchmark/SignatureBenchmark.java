@@ -0,0 +1,61 @@
+package com.opencloud.gateway.spring.server.benchmark;
+
+import com.opencloud.common.constants.CommonConstants;
+import com.opencloud.common.utils.DateUtils;
+import com.opencloud.common.utils.SignatureUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 开放接口参数签名验证
+ *
+ * @author liuyadu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureBenchmark {
+
+    private static final String CLIENT_SECRET = "0osTIhce7uPvDKHz6aa67bhCukaKoYl4";
+
+    /**
+     * 业务参数数量
+     */
+    @Param({"5", "50"})
+    public int paramCount;
+
+    @Param({"MD5", "SHA256"})
+    public String signType;
+
+    private Map<String, String> params;
+
+    /**
+     * 时间戳有效期较短,每轮重新签名
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        params = new HashMap<>();
+        params.put(CommonConstants.SIGN_APP_ID_KEY, "1552274783265");
+        params.put(CommonConstants.SIGN_SIGN_TYPE_KEY, signType);
+        params.put(CommonConstants.SIGN_TIMESTAMP_KEY, DateUtils.getCurrentTimestampStr());
+        params.put(CommonConstants.SIGN_NONCE_KEY, "a1b2c3d4e5f6g7h8");
+        for (int i = 0; i < paramCount; i++) {
+            params.put("param" + i, "value" + i);
+        }
+        params.put(CommonConstants.SIGN_SIGN_KEY, SignatureUtils.getSign(params, CLIENT_SECRET));
+        if (!SignatureUtils.validateSign(params, CLIENT_SECRET)) {
+            throw new IllegalStateException("invalid benchmark signature");
+        }
+    }
+
+    @Benchmark
+    public boolean validateSign() {
+        return SignatureUtils.validateSign(params, CLIENT_SECRET);
+    }
+}
@@ -0,0 +1,55 @@
+package com.opencloud.gateway.spring.server.benchmark;
+
+import com.opencloud.common.utils.StringUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IP、域名格式校验,保存IP规则及校验请求来源时调用
+ *
+ * @author liuyadu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+    private static final int VALUE_COUNT = 1024;
+
+    private String[] ips;
+
+    private String[] domains;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ips = SyntheticData.ips(VALUE_COUNT);
+        domains = new String[VALUE_COUNT];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            // 混入部分非法值
+            domains[i] = i % 4 == 0 ? "invalid_domain_" + i : "app" + i + ".service.example.com";
+            if (i % 4 == 0) {
+                ips[i] = "256.1." + i + ".x";
+            }
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (VALUE_COUNT - 1);
+    }
+
+    @Benchmark
+    public boolean matchIp() {
+        return StringUtils.matchIp(ips[next()]);
+    }
+
+    @Benchmark
+    public boolean matchDomain() {
+        return StringUtils.matchDomain(domains[next()]);
+    }
+}
@@ -0,0 +1,209 @@
+package com.opencloud.gateway.spring.server.benchmark;
+
+import com.google.common.collect.Sets;
+import com.opencloud.base.client.model.AuthorityResource;
+import com.opencloud.base.client.model.IpLimitApi;
+import com.opencloud.common.security.OpenAuthority;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.net.URI;
+import java.util.*;
+
+/**
+ * 基准测试数据
+ * 使用固定随机种子生成,同样的规模每次生成的数据相同,结果可重复对比.
+ *
+ * @author liuyadu
+ */
+public final class SyntheticData {
+
+    public static final long SEED = 20190801L;
+
+    /**
+     * 服务数量
+     */
+    public static final int SERVICE_COUNT = 20;
+
+    /**
+     * 每个用户拥有的权限数量
+     */
+    public static final int USER_AUTHORITY_COUNT = 50;
+
+    private SyntheticData() {
+    }
+
+    public static String serviceId(int index) {
+        return "service-" + index;
+    }
+
+    /**
+     * 服务路由,每个服务一个Path断言
+     *
+     * @param routeCount
+     * @return
+     */
+    public static List<RouteDefinition> routes(int routeCount) {
+        List<RouteDefinition> routes = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            RouteDefinition route = new RouteDefinition();
+            route.setId(serviceId(i));
+            route.setUri(URI.create("lb://" + serviceId(i)));
+            PredicateDefinition predicate = new PredicateDefinition();
+            predicate.setName("Path");
+            predicate.addArg("pattern", "/" + serviceId(i) + "/**");
+            route.setPredicates(Collections.singletonList(predicate));
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    /**
+     * 接口原始路径(未加路由前缀)
+     *
+     * @param index
+     * @return
+     */
+    public static String apiPath(int index) {
+        // 十分之一为通配路径
+        return index % 10 == 9 ? "/api/v1/res" + index + "/**" : "/api/v1/res" + index + "/info";
+    }
+
+    /**
+     * 权限资源,路径已加路由前缀
+     * 每20个接口有1个无需授权
+     *
+     * @param apiCount
+     * @return
+     */
+    public static List<AuthorityResource> authorityResources(int apiCount) {
+        List<AuthorityResource> list = new ArrayList<>(apiCount);
+        for (int i = 0; i < apiCount; i++) {
+            AuthorityResource resource = new AuthorityResource();
+            resource.setAuthorityId((long) i);
+            resource.setAuthority(authority(i));
+            resource.setServiceId(serviceId(i % SERVICE_COUNT));
+            resource.setPath("/" + resource.getServiceId() + apiPath(i));
+            resource.setIsAuth(i % 20 == 0 ? 0 : 1);
+            resource.setIsOpen(1);
+            resource.setStatus(1);
+            list.add(resource);
+        }
+        return list;
+    }
+
+    public static String authority(int index) {
+        return "API_RES" + index;
+    }
+
+    /**
+     * IP规则,每个规则包含单个IP、网段和域名
+     *
+     * @param ruleCount
+     * @param apiCount
+     * @return
+     */
+    public static List<IpLimitApi> ipRules(int ruleCount, int apiCount) {
+        Random random = new Random(SEED);
+        List<IpLimitApi> list = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            int api = random.nextInt(apiCount);
+            IpLimitApi item = new IpLimitApi();
+            item.setItemId((long) i);
+            item.setPolicyId((long) i);
+            item.setServiceId(serviceId(api % SERVICE_COUNT));
+            item.setPath("/" + item.getServiceId() + apiPath(api));
+            item.setIpAddressSet(Sets.newHashSet(
+                    randomIp(random),
+                    "10." + random.nextInt(256) + "." + random.nextInt(256) + ".0/24",
+                    "app" + i + ".example.com"));
+            list.add(item);
+        }
+        return list;
+    }
+
+    /**
+     * 用户权限,随机分配
+     *
+     * @param apiCount
+     * @return
+     */
+    public static Collection<GrantedAuthority> userAuthorities(int apiCount) {
+        Random random = new Random(SEED);
+        List<GrantedAuthority> list = new ArrayList<>(USER_AUTHORITY_COUNT);
+        for (int i = 0; i < USER_AUTHORITY_COUNT; i++) {
+            list.add(new OpenAuthority(authority(random.nextInt(apiCount))));
+        }
+        return list;
+    }
+
+    /**
+     * 请求路径,一半命中已有接口,其余为未注册路径
+     *
+     * @param count
+     * @param apiCount
+     * @return
+     */
+    public static String[] requestPaths(int count, int apiCount) {
+        Random random = new Random(SEED);
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            int api = random.nextInt(apiCount);
+            String serviceId = serviceId(api % SERVICE_COUNT);
+            if (i % 2 == 0) {
+                paths[i] = "/" + serviceId + apiPath(api).replace("/**", "/detail/" + i);
+            } else {
+                paths[i] = "/" + serviceId + "/api/v2/unknown" + i;
+            }
+        }
+        return paths;
+    }
+
+    public static String[] ips(int count) {
+        Random random = new Random(SEED);
+        String[] ips = new String[count];
+        for (int i = 0; i < count; i++) {
+            ips[i] = randomIp(random);
+        }
+        return ips;
+    }
+
+    public static String randomIp(Random random) {
+        return random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+    }
+
+    /**
+     * JSON请求体
+     *
+     * @param fieldCount
+     * @return
+     */
+    public static String jsonBody(int fieldCount) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\"field").append(i).append("\":\"value").append(i).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * 表单请求体
+     *
+     * @param fieldCount
+     * @return
+     */
+    public static String formBody(int fieldCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append("field").append(i).append("=value").append(i);
+        }
+        return sb.toString();
+    }
+}
@@ -2,12 +2,27 @@ package com.opencloud.gateway.spring.server.actuator;
 
 import com.opencloud.common.event.RemoteRefreshRouteEvent;
 import com.opencloud.common.model.ResultBody;
+import com.opencloud.gateway.spring.server.filter.AccessManager;
+import com.opencloud.gateway.spring.server.filter.support.HybridRateLimiter;
+import com.opencloud.gateway.spring.server.filter.support.NonceReplayGuard;
+import com.opencloud.gateway.spring.server.locator.IncrementalRouteLocator;
+import com.opencloud.gateway.spring.server.locator.IndexedRoutePredicateHandlerMapping;
+import com.opencloud.gateway.spring.server.locator.ResourceLocator;
+import com.opencloud.gateway.spring.server.locator.ResourceSnapshot;
+import com.opencloud.gateway.spring.server.oauth2.RedisAuthenticationManager;
+import com.opencloud.gateway.spring.server.service.AccessLogService;
+import com.opencloud.gateway.spring.server.service.AppCredentialCache;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.endpoint.web.annotation.RestControllerEndpoint;
 import org.springframework.cloud.bus.endpoint.AbstractBusEndpoint;
+import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.List;
+
 /**
  * 自定义网关监控端点
  * @author liuyadu
@@ -17,8 +32,38 @@ import org.springframework.web.bind.annotation.RequestParam;
 )
 public class ApiEndpoint extends AbstractBusEndpoint {
 
-    public ApiEndpoint(ApplicationEventPublisher context, String id) {
+    private ResourceLocator resourceLocator;
+
+    @Autowired(required = false)
+    private AccessManager accessManager;
+
+    @Autowired(required = false)
+    private AppCredentialCache appCredentialCache;
+
+    @Autowired(required = false)
+    private NonceReplayGuard nonceReplayGuard;
+
+    @Autowired(required = false)
+    private RedisAuthenticationManager redisAuthenticationManager;
+
+    @Autowired(required = false)
+    private AccessLogService accessLogService;
+
+    @Autowired(required = false)
+    private HybridRateLimiter hybridRateLimiter;
+
+    @Autowired(required = false)
+    private IndexedRoutePredicateHandlerMapping indexedRoutePredicateHandlerMapping;
+
+    /**
+     * 增量路由构建替换了自动配置的路由构建器,声明类型为RouteLocator,按列表注入后筛选
+     */
+    @Autowired(required = false)
+    private List<RouteLocator> routeLocators;
+
+    public ApiEndpoint(ApplicationEventPublisher context, String id, ResourceLocator resourceLocator) {
         super(context, id);
+        this.resourceLocator = resourceLocator;
     }
 
     /**
@@ -32,4 +77,61 @@ public class ApiEndpoint extends AbstractBusEndpoint {
         this.publish(new RemoteRefreshRouteEvent(this, this.getInstanceId(), destination));
         return ResultBody.ok();
     }
+
+    /**
+     * 当前资源快照信息
+     * /actuator/open/resource
+     *
+     * @return
+     */
+    @GetMapping("/resource")
+    public ResultBody resource() {
+        ResourceSnapshot snapshot = resourceLocator.getSnapshot();
+        return ResultBody.ok()
+                .put("version", snapshot.getVersion())
+                .put("refreshTime", snapshot.getRefreshTime())
+                .put("authorityResources", snapshot.getAuthorityResources().size())
+                .put("ipBlacks", snapshot.getIpBlacks().size())
+                .put("ipWhites", snapshot.getIpWhites().size());
+    }
+
+    /**
+     * 网关运行统计
+     * /actuator/open/stats
+     *
+     * @return
+     */
+    @GetMapping("/stats")
+    public ResultBody stats() {
+        ResultBody resultBody = ResultBody.ok();
+        if (accessManager != null && accessManager.getDecisionCache() != null) {
+            resultBody.put("decisionCache", accessManager.getDecisionCache().getStats());
+        }
+        if (appCredentialCache != null) {
+            resultBody.put("appCache", appCredentialCache.getStats());
+        }
+        if (nonceReplayGuard != null) {
+            resultBody.put("nonceGuard", nonceReplayGuard.getStats());
+        }
+        if (redisAuthenticationManager != null) {
+            resultBody.put("authCache", redisAuthenticationManager.getStats());
+        }
+        if (accessLogService != null) {
+            resultBody.put("accessLog", accessLogService.getStats());
+        }
+        if (hybridRateLimiter != null) {
+            resultBody.put("rateLimiter", hybridRateLimiter.getStats());
+        }
+        if (indexedRoutePredicateHandlerMapping != null) {
+            resultBody.put("routeIndex", indexedRoutePredicateHandlerMapping.getStats());
+        }
+        if (routeLocators != null) {
+            for (RouteLocator routeLocator : routeLocators) {
+                if (routeLocator instanceof IncrementalRouteLocator) {
+                    resultBody.put("routeBuild", ((IncrementalRouteLocator) routeLocator).getStats());
+                }
+            }
+        }
+        return resultBody;
+    }
 }
@@ -5,19 +5,27 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.opencloud.base.client.constants.BaseConstants;
 import com.opencloud.common.configuration.OpenCommonProperties;
 import com.opencloud.common.utils.SpringContextHolder;
 import com.opencloud.gateway.spring.server.actuator.ApiEndpoint;
 import com.opencloud.gateway.spring.server.exception.JsonExceptionHandler;
 import com.opencloud.gateway.spring.server.filter.GatewayContextFilter;
 import com.opencloud.gateway.spring.server.filter.RemoveGatewayContextFilter;
+import com.opencloud.gateway.spring.server.filter.support.HybridRateLimiter;
+import com.opencloud.gateway.spring.server.filter.support.NonceReplayGuard;
+import com.opencloud.gateway.spring.server.locator.IncrementalRouteLocatorPostProcessor;
+import com.opencloud.gateway.spring.server.locator.IndexedRoutePredicateHandlerMapping;
 import com.opencloud.gateway.spring.server.locator.ResourceLocator;
+import com.opencloud.gateway.spring.server.locator.RoutePredicateHandlerMappingPostProcessor;
 import com.opencloud.gateway.spring.server.locator.JdbcRouteDefinitionLocator;
 import com.opencloud.gateway.spring.server.service.AccessLogService;
-import com.opencloud.gateway.spring.server.service.feign.BaseAuthorityServiceClient;
-import com.opencloud.gateway.spring.server.service.feign.GatewayServiceClient;
+import com.opencloud.gateway.spring.server.service.AppCredentialCache;
+import com.opencloud.gateway.spring.server.service.ReactiveResourceClient;
+import com.opencloud.gateway.spring.server.service.feign.BaseAppServiceClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnEnabledEndpoint;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -27,23 +35,32 @@ import org.springframework.boot.autoconfigure.jackson.JacksonProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.cloud.bus.BusProperties;
+import org.springframework.cloud.client.loadbalancer.reactive.LoadBalancerExchangeFilterFunction;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
 import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.validation.Validator;
+import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.result.view.ViewResolver;
 import reactor.core.publisher.Mono;
 
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.TimeZone;
@@ -151,6 +168,36 @@ public class ApiConfiguration {
         return  jdbcRouteDefinitionLocator;
     }
 
+    /**
+     * 增量路由构建,只重新构建新增和修改的路由
+     *
+     * @return
+     */
+    @Bean
+    public static IncrementalRouteLocatorPostProcessor incrementalRouteLocatorPostProcessor() {
+        IncrementalRouteLocatorPostProcessor postProcessor = new IncrementalRouteLocatorPostProcessor();
+        log.info("IncrementalRouteLocatorPostProcessor [{}]", postProcessor);
+        return postProcessor;
+    }
+
+    /**
+     * 非阻塞资源加载客户端
+     *
+     * @param loadBalancerExchangeFilterFunction
+     * @param apiProperties
+     * @return
+     */
+    @Bean
+    public ReactiveResourceClient reactiveResourceClient(LoadBalancerExchangeFilterFunction loadBalancerExchangeFilterFunction, ApiProperties apiProperties) {
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://" + BaseConstants.BASE_SERVER)
+                .filter(loadBalancerExchangeFilterFunction)
+                .build();
+        ReactiveResourceClient reactiveResourceClient = new ReactiveResourceClient(webClient, Duration.ofMillis(apiProperties.getResourceLoadTimeout()), apiProperties.getResourceLoadRetries());
+        log.info("ReactiveResourceClient [{}]", reactiveResourceClient);
+        return reactiveResourceClient;
+    }
+
     /**
      * 动态路由加载
      *
@@ -158,33 +205,112 @@ public class ApiConfiguration {
      */
     @Bean
     @Lazy
-    public ResourceLocator resourceLocator(RouteDefinitionLocator routeDefinitionLocator, BaseAuthorityServiceClient baseAuthorityServiceClient, GatewayServiceClient gatewayServiceClient) {
-        ResourceLocator resourceLocator =  new ResourceLocator(routeDefinitionLocator, baseAuthorityServiceClient, gatewayServiceClient);
+    public ResourceLocator resourceLocator(RouteDefinitionLocator routeDefinitionLocator, ReactiveResourceClient reactiveResourceClient) {
+        ResourceLocator resourceLocator =  new ResourceLocator(routeDefinitionLocator, reactiveResourceClient);
         log.info("ResourceLocator [{}]", resourceLocator);
         return resourceLocator;
     }
 
+    /**
+     * 应用信息本地缓存
+     *
+     * @param baseAppServiceClient
+     * @param apiProperties
+     * @return
+     */
+    @Bean
+    public AppCredentialCache appCredentialCache(BaseAppServiceClient baseAppServiceClient, ApiProperties apiProperties) {
+        AppCredentialCache appCredentialCache = new AppCredentialCache(baseAppServiceClient, apiProperties.getAppCacheSize(), apiProperties.getAppCacheExpire(), apiProperties.getAppCacheRefresh(), apiProperties.getAppCacheNegativeExpire());
+        log.info("AppCredentialCache [{}]", appCredentialCache);
+        return appCredentialCache;
+    }
+
+    /**
+     * 签名NONCE防重放
+     *
+     * @param apiProperties
+     * @param redisTemplateProvider
+     * @return
+     */
+    @Bean
+    public NonceReplayGuard nonceReplayGuard(ApiProperties apiProperties, ObjectProvider<ReactiveStringRedisTemplate> redisTemplateProvider) {
+        ReactiveStringRedisTemplate redisTemplate = apiProperties.getNonceClusterSync() ? redisTemplateProvider.getIfAvailable() : null;
+        NonceReplayGuard nonceReplayGuard = new NonceReplayGuard(apiProperties.getNonceWindow(), apiProperties.getNonceMaxMemory(), apiProperties.getNonceExpectedRequests(), redisTemplate);
+        log.info("NonceReplayGuard [{}]", nonceReplayGuard);
+        return nonceReplayGuard;
+    }
+
+    /**
+     * 本地令牌桶限流,Redis异步对账
+     * 网关自动配置同时注册redisRateLimiter,设为默认限流器,按类型注入RateLimiter时使用此实现
+     *
+     * @param apiProperties
+     * @param redisTemplateProvider
+     * @param validator
+     * @return
+     */
+    @Bean
+    @Primary
+    public HybridRateLimiter hybridRateLimiter(ApiProperties apiProperties, ObjectProvider<ReactiveStringRedisTemplate> redisTemplateProvider, @Qualifier("defaultValidator") Validator validator) {
+        HybridRateLimiter hybridRateLimiter = new HybridRateLimiter(redisTemplateProvider.getIfAvailable(), apiProperties.getRateLimitLeaseRatio(), apiProperties.getRateLimitMaxBuckets(), validator);
+        log.info("HybridRateLimiter [{}]", hybridRateLimiter);
+        return hybridRateLimiter;
+    }
+
+    /**
+     * 移除默认的路由匹配,由带路径索引的路由匹配代替
+     *
+     * @return
+     */
+    @Bean
+    public static RoutePredicateHandlerMappingPostProcessor routePredicateHandlerMappingPostProcessor() {
+        RoutePredicateHandlerMappingPostProcessor postProcessor = new RoutePredicateHandlerMappingPostProcessor();
+        log.info("RoutePredicateHandlerMappingPostProcessor [{}]", postProcessor);
+        return postProcessor;
+    }
+
+    /**
+     * 带路径索引的路由匹配
+     * 默认RoutePredicateHandlerMapping已移除,顺序固定为{@link IndexedRoutePredicateHandlerMapping#ORDER}
+     *
+     * @param webHandler
+     * @param routeLocator
+     * @param routeDefinitionLocator
+     * @param globalCorsProperties
+     * @param environment
+     * @return
+     */
+    @Bean
+    public IndexedRoutePredicateHandlerMapping indexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator, RouteDefinitionLocator routeDefinitionLocator,
+                                                                                   GlobalCorsProperties globalCorsProperties, Environment environment) {
+        IndexedRoutePredicateHandlerMapping handlerMapping = new IndexedRoutePredicateHandlerMapping(webHandler, routeLocator, routeDefinitionLocator, globalCorsProperties, environment);
+        handlerMapping.setOrder(IndexedRoutePredicateHandlerMapping.ORDER);
+        log.info("IndexedRoutePredicateHandlerMapping [{}]", handlerMapping);
+        return handlerMapping;
+    }
+
     /**
      * 网关bus端点
      *
      * @param context
      * @param bus
+     * @param resourceLocator
      * @return
      */
     @Bean
     @ConditionalOnEnabledEndpoint
     @ConditionalOnClass({Endpoint.class})
-    public ApiEndpoint apiEndpoint(ApplicationContext context, BusProperties bus) {
-        ApiEndpoint endpoint = new ApiEndpoint(context, bus.getId());
+    public ApiEndpoint apiEndpoint(ApplicationContext context, BusProperties bus, ResourceLocator resourceLocator) {
+        ApiEndpoint endpoint = new ApiEndpoint(context, bus.getId(), resourceLocator);
         log.info("ApiEndpoint [{}]", endpoint);
         return endpoint;
     }
 
     @Bean
     @ConditionalOnMissingBean(GatewayContextFilter.class)
-    public GatewayContextFilter gatewayContextFilter(){
+    public GatewayContextFilter gatewayContextFilter(ApiProperties apiProperties){
         log.debug("Load GatewayContextFilter Config Bean");
-        return new GatewayContextFilter();
+        return new GatewayContextFilter(apiProperties.getMaxBodySize());
     }
 
     @Bean
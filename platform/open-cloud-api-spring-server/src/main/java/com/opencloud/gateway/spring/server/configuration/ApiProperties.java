@@ -42,6 +42,141 @@ public class ApiProperties {
      */
     private Set<String> signIgnores;
 
+    /**
+     * 资源加载超时时间(毫秒)
+     */
+    private Long resourceLoadTimeout = 5000L;
+
+    /**
+     * 资源加载失败重试次数
+     */
+    private Integer resourceLoadRetries = 2;
+
+    /**
+     * 鉴权结果缓存最大数量,0表示不缓存
+     */
+    private Long decisionCacheSize = 10000L;
+
+    /**
+     * 鉴权结果缓存有效期(秒)
+     */
+    private Long decisionCacheExpire = 60L;
+
+    /**
+     * 应用信息缓存最大数量
+     */
+    private Long appCacheSize = 10000L;
+
+    /**
+     * 应用信息缓存有效期(秒)
+     */
+    private Long appCacheExpire = 600L;
+
+    /**
+     * 应用信息缓存异步刷新间隔(秒)
+     */
+    private Long appCacheRefresh = 60L;
+
+    /**
+     * 无效appId缓存有效期(秒)
+     */
+    private Long appCacheNegativeExpire = 10L;
+
+    /**
+     * 是否开启NONCE防重放
+     */
+    private Boolean nonceCheck = true;
+
+    /**
+     * NONCE有效期(秒),只接受当前时间前后该时长内的时间戳,NONCE至少保留两倍时长
+     */
+    private Long nonceWindow = 300L;
+
+    /**
+     * NONCE防重放内存上限(MB)
+     */
+    private Long nonceMaxMemory = 32L;
+
+    /**
+     * 每个保留周期内预计签名请求数,用于计算哈希函数个数
+     */
+    private Long nonceExpectedRequests = 3000000L;
+
+    /**
+     * 是否通过Redis在集群内同步NONCE
+     */
+    private Boolean nonceClusterSync = false;
+
+    /**
+     * 令牌认证信息缓存最大数量
+     */
+    private Long authCacheSize = 10000L;
+
+    /**
+     * 令牌认证信息缓存时间(秒)
+     */
+    private Long authCacheExpire = 30L;
+
+    /**
+     * 最大缓存请求体(字节),超过时不解析参数,直接转发
+     */
+    private Long maxBodySize = 2L * 1024 * 1024;
+
+    /**
+     * 访问日志响应内容采样最大字节数,0表示不采样
+     */
+    private Integer logBodyMaxBytes = 0;
+
+    /**
+     * 访问日志响应内容采样路径
+     */
+    private Set<String> logBodyPaths;
+
+    /**
+     * 访问日志响应内容采样类型,如:application/json
+     */
+    private Set<String> logBodyContentTypes;
+
+    /**
+     * 访问日志队列容量
+     */
+    private Integer accessLogQueueCapacity = 8192;
+
+    /**
+     * 访问日志每批最大数量
+     */
+    private Integer accessLogBatchSize = 100;
+
+    /**
+     * 访问日志未满一批时最长等待时间(毫秒)
+     */
+    private Long accessLogLingerMs = 200L;
+
+    /**
+     * 访问日志队列满时处理策略:DROP(丢弃) SAMPLE(采样) BLOCK(等待)
+     */
+    private String accessLogOverflowPolicy = "DROP";
+
+    /**
+     * 访问日志采样比例,SAMPLE策略下队列超过3/4后每N条保留1条
+     */
+    private Integer accessLogSampleRate = 10;
+
+    /**
+     * 访问日志BLOCK策略最长等待时间(毫秒)
+     */
+    private Long accessLogBlockTimeoutMs = 10L;
+
+    /**
+     * 限流每次向Redis租用配额比例
+     */
+    private Double rateLimitLeaseRatio = 0.1;
+
+    /**
+     * 限流本地令牌桶最大数量
+     */
+    private Long rateLimitMaxBuckets = 100000L;
+
 
     public Boolean getCheckSign() {
         return checkSign;
@@ -90,4 +225,220 @@ public class ApiProperties {
     public void setSignIgnores(Set<String> signIgnores) {
         this.signIgnores = signIgnores;
     }
+
+    public Long getResourceLoadTimeout() {
+        return resourceLoadTimeout;
+    }
+
+    public void setResourceLoadTimeout(Long resourceLoadTimeout) {
+        this.resourceLoadTimeout = resourceLoadTimeout;
+    }
+
+    public Integer getResourceLoadRetries() {
+        return resourceLoadRetries;
+    }
+
+    public void setResourceLoadRetries(Integer resourceLoadRetries) {
+        this.resourceLoadRetries = resourceLoadRetries;
+    }
+
+    public Long getDecisionCacheSize() {
+        return decisionCacheSize;
+    }
+
+    public void setDecisionCacheSize(Long decisionCacheSize) {
+        this.decisionCacheSize = decisionCacheSize;
+    }
+
+    public Long getDecisionCacheExpire() {
+        return decisionCacheExpire;
+    }
+
+    public void setDecisionCacheExpire(Long decisionCacheExpire) {
+        this.decisionCacheExpire = decisionCacheExpire;
+    }
+
+    public Long getAppCacheSize() {
+        return appCacheSize;
+    }
+
+    public void setAppCacheSize(Long appCacheSize) {
+        this.appCacheSize = appCacheSize;
+    }
+
+    public Long getAppCacheExpire() {
+        return appCacheExpire;
+    }
+
+    public void setAppCacheExpire(Long appCacheExpire) {
+        this.appCacheExpire = appCacheExpire;
+    }
+
+    public Long getAppCacheRefresh() {
+        return appCacheRefresh;
+    }
+
+    public void setAppCacheRefresh(Long appCacheRefresh) {
+        this.appCacheRefresh = appCacheRefresh;
+    }
+
+    public Long getAppCacheNegativeExpire() {
+        return appCacheNegativeExpire;
+    }
+
+    public void setAppCacheNegativeExpire(Long appCacheNegativeExpire) {
+        this.appCacheNegativeExpire = appCacheNegativeExpire;
+    }
+
+    public Boolean getNonceCheck() {
+        return nonceCheck;
+    }
+
+    public void setNonceCheck(Boolean nonceCheck) {
+        this.nonceCheck = nonceCheck;
+    }
+
+    public Long getNonceWindow() {
+        return nonceWindow;
+    }
+
+    public void setNonceWindow(Long nonceWindow) {
+        this.nonceWindow = nonceWindow;
+    }
+
+    public Long getNonceMaxMemory() {
+        return nonceMaxMemory;
+    }
+
+    public void setNonceMaxMemory(Long nonceMaxMemory) {
+        this.nonceMaxMemory = nonceMaxMemory;
+    }
+
+    public Long getNonceExpectedRequests() {
+        return nonceExpectedRequests;
+    }
+
+    public void setNonceExpectedRequests(Long nonceExpectedRequests) {
+        this.nonceExpectedRequests = nonceExpectedRequests;
+    }
+
+    public Boolean getNonceClusterSync() {
+        return nonceClusterSync;
+    }
+
+    public void setNonceClusterSync(Boolean nonceClusterSync) {
+        this.nonceClusterSync = nonceClusterSync;
+    }
+
+    public Long getAuthCacheSize() {
+        return authCacheSize;
+    }
+
+    public void setAuthCacheSize(Long authCacheSize) {
+        this.authCacheSize = authCacheSize;
+    }
+
+    public Long getAuthCacheExpire() {
+        return authCacheExpire;
+    }
+
+    public void setAuthCacheExpire(Long authCacheExpire) {
+        this.authCacheExpire = authCacheExpire;
+    }
+
+    public Long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(Long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public Integer getLogBodyMaxBytes() {
+        return logBodyMaxBytes;
+    }
+
+    public void setLogBodyMaxBytes(Integer logBodyMaxBytes) {
+        this.logBodyMaxBytes = logBodyMaxBytes;
+    }
+
+    public Set<String> getLogBodyPaths() {
+        return logBodyPaths;
+    }
+
+    public void setLogBodyPaths(Set<String> logBodyPaths) {
+        this.logBodyPaths = logBodyPaths;
+    }
+
+    public Set<String> getLogBodyContentTypes() {
+        return logBodyContentTypes;
+    }
+
+    public void setLogBodyContentTypes(Set<String> logBodyContentTypes) {
+        this.logBodyContentTypes = logBodyContentTypes;
+    }
+
+    public Integer getAccessLogQueueCapacity() {
+        return accessLogQueueCapacity;
+    }
+
+    public void setAccessLogQueueCapacity(Integer accessLogQueueCapacity) {
+        this.accessLogQueueCapacity = accessLogQueueCapacity;
+    }
+
+    public Integer getAccessLogBatchSize() {
+        return accessLogBatchSize;
+    }
+
+    public void setAccessLogBatchSize(Integer accessLogBatchSize) {
+        this.accessLogBatchSize = accessLogBatchSize;
+    }
+
+    public Long getAccessLogLingerMs() {
+        return accessLogLingerMs;
+    }
+
+    public void setAccessLogLingerMs(Long accessLogLingerMs) {
+        this.accessLogLingerMs = accessLogLingerMs;
+    }
+
+    public String getAccessLogOverflowPolicy() {
+        return accessLogOverflowPolicy;
+    }
+
+    public void setAccessLogOverflowPolicy(String accessLogOverflowPolicy) {
+        this.accessLogOverflowPolicy = accessLogOverflowPolicy;
+    }
+
+    public Integer getAccessLogSampleRate() {
+        return accessLogSampleRate;
+    }
+
+    public void setAccessLogSampleRate(Integer accessLogSampleRate) {
+        this.accessLogSampleRate = accessLogSampleRate;
+    }
+
+    public Long getAccessLogBlockTimeoutMs() {
+        return accessLogBlockTimeoutMs;
+    }
+
+    public void setAccessLogBlockTimeoutMs(Long accessLogBlockTimeoutMs) {
+        this.accessLogBlockTimeoutMs = accessLogBlockTimeoutMs;
+    }
+
+    public Double getRateLimitLeaseRatio() {
+        return rateLimitLeaseRatio;
+    }
+
+    public void setRateLimitLeaseRatio(Double rateLimitLeaseRatio) {
+        this.rateLimitLeaseRatio = rateLimitLeaseRatio;
+    }
+
+    public Long getRateLimitMaxBuckets() {
+        return rateLimitMaxBuckets;
+    }
+
+    public void setRateLimitMaxBuckets(Long rateLimitMaxBuckets) {
+        this.rateLimitMaxBuckets = rateLimitMaxBuckets;
+    }
 }
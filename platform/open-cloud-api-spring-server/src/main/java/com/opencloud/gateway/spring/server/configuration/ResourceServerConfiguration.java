@@ -4,14 +4,15 @@ import com.opencloud.gateway.spring.server.exception.JsonAccessDeniedHandler;
 import com.opencloud.gateway.spring.server.exception.JsonAuthenticationEntryPoint;
 import com.opencloud.gateway.spring.server.exception.JsonSignatureDeniedHandler;
 import com.opencloud.gateway.spring.server.filter.*;
+import com.opencloud.gateway.spring.server.filter.support.NonceReplayGuard;
 import com.opencloud.gateway.spring.server.locator.ResourceLocator;
 import com.opencloud.gateway.spring.server.oauth2.RedisAuthenticationManager;
 import com.opencloud.gateway.spring.server.service.AccessLogService;
-import com.opencloud.gateway.spring.server.service.feign.BaseAppServiceClient;
+import com.opencloud.gateway.spring.server.service.AppCredentialCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -21,7 +22,6 @@ import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
-import org.springframework.security.oauth2.provider.token.store.redis.RedisTokenStore;
 import org.springframework.security.oauth2.server.resource.web.server.ServerBearerTokenAuthenticationConverter;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.WebFilterExchange;
@@ -48,7 +48,7 @@ public class ResourceServerConfiguration {
     private static final String MAX_AGE = "18000L";
 
     @Autowired
-    private RedisConnectionFactory redisConnectionFactory;
+    private ReactiveRedisConnectionFactory reactiveRedisConnectionFactory;
     @Autowired
     private ResourceLocator apiresourceLocator;
     @Autowired
@@ -56,7 +56,11 @@ public class ResourceServerConfiguration {
     @Autowired
     private AccessLogService accessLogService;
     @Autowired
-    private BaseAppServiceClient baseAppServiceClient;
+    private AppCredentialCache appCredentialCache;
+    @Autowired
+    private NonceReplayGuard nonceReplayGuard;
+    @Autowired
+    private AccessManager accessManager;
 
     /**
      * 跨域配置
@@ -88,13 +92,22 @@ public class ResourceServerConfiguration {
         };
     }
 
+    /**
+     * 非阻塞Redis令牌认证
+     *
+     * @return
+     */
+    @Bean
+    public RedisAuthenticationManager redisAuthenticationManager() {
+        return new RedisAuthenticationManager(reactiveRedisConnectionFactory, apiProperties.getAuthCacheSize(), apiProperties.getAuthCacheExpire());
+    }
+
     @Bean
     SecurityWebFilterChain springWebFilterChain(ServerHttpSecurity http) throws Exception {
         // 自定义oauth2 认证, 使用redis读取token,而非jwt方式
         JsonAuthenticationEntryPoint entryPoint = new JsonAuthenticationEntryPoint(accessLogService);
         JsonAccessDeniedHandler accessDeniedHandler = new JsonAccessDeniedHandler(accessLogService);
-        AccessManager accessManager = new AccessManager(apiresourceLocator, apiProperties);
-        AuthenticationWebFilter oauth2 = new AuthenticationWebFilter(new RedisAuthenticationManager(new RedisTokenStore(redisConnectionFactory)));
+        AuthenticationWebFilter oauth2 = new AuthenticationWebFilter(redisAuthenticationManager());
         oauth2.setServerAuthenticationConverter(new ServerBearerTokenAuthenticationConverter());
         oauth2.setAuthenticationFailureHandler(new ServerAuthenticationEntryPointFailureHandler(entryPoint));
         oauth2.setAuthenticationSuccessHandler(new ServerAuthenticationSuccessHandler() {
@@ -122,13 +135,13 @@ public class ResourceServerConfiguration {
                 // 跨域过滤器
                 .addFilterAt(corsFilter(), SecurityWebFiltersOrder.CORS)
                 // 签名验证过滤器
-                .addFilterAt(new PreSignatureFilter(baseAppServiceClient,apiProperties, new JsonSignatureDeniedHandler(accessLogService)), SecurityWebFiltersOrder.CSRF)
+                .addFilterAt(new PreSignatureFilter(appCredentialCache, nonceReplayGuard, apiProperties, new JsonSignatureDeniedHandler(accessLogService)), SecurityWebFiltersOrder.CSRF)
                 // 访问验证前置过滤器
                 .addFilterAt(new PreCheckFilter(accessManager, accessDeniedHandler), SecurityWebFiltersOrder.CSRF)
                 // oauth2认证过滤器
                 .addFilterAt(oauth2, SecurityWebFiltersOrder.AUTHENTICATION)
                 // 日志过滤器
-                .addFilterAt(new AccessLogFilter(accessLogService), SecurityWebFiltersOrder.SECURITY_CONTEXT_SERVER_WEB_EXCHANGE);
+                .addFilterAt(new AccessLogFilter(accessLogService, apiProperties), SecurityWebFiltersOrder.SECURITY_CONTEXT_SERVER_WEB_EXCHANGE);
         return http.build();
     }
 }
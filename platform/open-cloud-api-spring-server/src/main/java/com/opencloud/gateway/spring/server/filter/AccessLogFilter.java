@@ -1,11 +1,13 @@
 package com.opencloud.gateway.spring.server.filter;
 
+import com.opencloud.common.matcher.PathPatternTrie;
+import com.opencloud.gateway.spring.server.configuration.ApiProperties;
 import com.opencloud.gateway.spring.server.service.AccessLogService;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.web.server.ServerWebExchange;
@@ -14,47 +16,158 @@ import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 日志过滤器
+ * 默认只统计响应大小,不复制响应内容.
+ * 配置了采样路径或内容类型时,最多记录前N字节响应内容,采样缓冲区使用响应的DataBufferFactory分配并在日志发送后释放.
  *
  * @author liuyadu
  */
 @Slf4j
 public class AccessLogFilter implements WebFilter {
 
+    /**
+     * 响应大小
+     */
+    public static final String RESPONSE_SIZE_ATTR = "responseSize";
+
+    /**
+     * 响应内容采样
+     */
+    public static final String RESPONSE_BODY_ATTR = "responseBody";
+
     private AccessLogService accessLogService;
 
+    /**
+     * 采样最大字节数
+     */
+    private int sampleMaxBytes;
+
+    private final PathPatternTrie<String> samplePaths = new PathPatternTrie<>();
+
+    private final List<MediaType> sampleContentTypes = new ArrayList<>();
+
     public AccessLogFilter(AccessLogService accessLogService) {
+        this(accessLogService, null);
+    }
+
+    public AccessLogFilter(AccessLogService accessLogService, ApiProperties apiProperties) {
         this.accessLogService = accessLogService;
+        if (apiProperties != null && apiProperties.getLogBodyMaxBytes() != null) {
+            this.sampleMaxBytes = apiProperties.getLogBodyMaxBytes();
+            if (apiProperties.getLogBodyPaths() != null) {
+                apiProperties.getLogBodyPaths().forEach(path -> samplePaths.put(path, path));
+            }
+            if (apiProperties.getLogBodyContentTypes() != null) {
+                apiProperties.getLogBodyContentTypes().forEach(type -> sampleContentTypes.add(MediaType.parseMediaType(type)));
+            }
+        }
     }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
         ServerHttpResponse response = exchange.getResponse();
-        DataBufferFactory bufferFactory = response.bufferFactory();
+        String requestPath = exchange.getRequest().getURI().getPath();
+        ResponseRecorder recorder = new ResponseRecorder(response, samplingEnabled() && samplePaths.matches(requestPath));
         ServerHttpResponseDecorator decoratedResponse = new ServerHttpResponseDecorator(response) {
             @Override
             public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
-                if (body instanceof Flux) {
-                    Flux<? extends DataBuffer> fluxBody = (Flux<? extends DataBuffer>) body;
-                    return super.writeWith(fluxBody.map(dataBuffer -> {
-                        // probably should reuse buffers
-                        byte[] content = new byte[dataBuffer.readableByteCount()];
-                        dataBuffer.read(content);
-                        //释放掉内存
-                        DataBufferUtils.release(dataBuffer);
-                        return bufferFactory.wrap(content);
-                    }));
-                }
-                // if body is not a flux. never got there.
-                return super.writeWith(body);
+                return super.writeWith(Flux.from(body).doOnNext(recorder::record));
+            }
+
+            @Override
+            public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                return super.writeAndFlushWith(Flux.from(body).map(publisher -> Flux.from(publisher).doOnNext(recorder::record)));
             }
         };
-        return chain.filter(exchange.mutate().response(decoratedResponse).build()).then(Mono.fromRunnable(()->{
+        return chain.filter(exchange.mutate().response(decoratedResponse).build()).then(Mono.fromRunnable(() -> {
+            exchange.getAttributes().put(RESPONSE_SIZE_ATTR, recorder.size);
+            String sample = recorder.getSample();
+            if (sample != null) {
+                exchange.getAttributes().put(RESPONSE_BODY_ATTR, sample);
+            }
             accessLogService.sendLog(exchange, null);
-        }));
+        })).doFinally(signalType -> recorder.release());
     }
 
+    private boolean samplingEnabled() {
+        return sampleMaxBytes > 0 && (!samplePaths.isEmpty() || !sampleContentTypes.isEmpty());
+    }
 
-}
+    private boolean matchContentType(MediaType contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        for (MediaType mediaType : sampleContentTypes) {
+            if (mediaType.isCompatibleWith(contentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 响应统计
+     * 仅在同一响应的写出线程中访问
+     */
+    private final class ResponseRecorder {
+        private final ServerHttpResponse response;
+        private long size;
+        /**
+         * null:未判断 true:采样 false:不采样
+         */
+        private Boolean sampling;
+        private DataBuffer sample;
+
+        private ResponseRecorder(ServerHttpResponse response, boolean pathMatched) {
+            this.response = response;
+            this.sampling = pathMatched ? Boolean.TRUE : (samplingEnabled() && !sampleContentTypes.isEmpty() ? null : Boolean.FALSE);
+        }
 
+        private void record(DataBuffer dataBuffer) {
+            int readable = dataBuffer.readableByteCount();
+            size += readable;
+            if (sampling == null) {
+                // 写出响应体时响应头已确定
+                sampling = matchContentType(response.getHeaders().getContentType());
+            }
+            if (!sampling) {
+                return;
+            }
+            if (sample == null) {
+                sample = response.bufferFactory().allocateBuffer(sampleMaxBytes);
+            }
+            int remaining = sampleMaxBytes - sample.writePosition();
+            if (remaining <= 0) {
+                return;
+            }
+            // 共享内容的视图,不影响原缓冲区读取位置
+            ByteBuffer view = dataBuffer.asByteBuffer();
+            if (view.remaining() > remaining) {
+                view.limit(view.position() + remaining);
+            }
+            sample.write(view);
+        }
+
+        private String getSample() {
+            if (sample == null) {
+                return null;
+            }
+            byte[] bytes = new byte[sample.readableByteCount()];
+            sample.read(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void release() {
+            if (sample != null) {
+                DataBufferUtils.release(sample);
+                sample = null;
+            }
+        }
+    }
+}
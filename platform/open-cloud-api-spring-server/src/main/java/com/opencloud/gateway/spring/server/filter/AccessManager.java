@@ -2,28 +2,24 @@ package com.opencloud.gateway.spring.server.filter;
 
 import cn.hutool.core.collection.ConcurrentHashSet;
 import com.opencloud.gateway.spring.server.configuration.ApiProperties;
+import com.opencloud.gateway.spring.server.filter.support.AuthorizationDecisionCache;
 import com.opencloud.gateway.spring.server.locator.ResourceLocator;
-import com.opencloud.gateway.spring.server.util.matcher.ReactiveIpAddressMatcher;
+import com.opencloud.gateway.spring.server.locator.ResourceSnapshot;
 import com.opencloud.base.client.model.AuthorityResource;
-import com.opencloud.base.client.model.IpLimitApi;
 import com.opencloud.common.constants.CommonConstants;
 import com.opencloud.common.constants.ErrorCode;
-import com.opencloud.common.security.OpenAuthority;
-import com.opencloud.common.utils.StringUtils;
+import com.opencloud.common.matcher.AuthorityDictionary;
+import com.opencloud.common.matcher.AuthorityIndex;
+import com.opencloud.common.matcher.PathPatternTrie;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.access.ConfigAttribute;
-import org.springframework.security.access.SecurityConfig;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.authorization.ReactiveAuthorizationManager;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.web.server.authorization.AuthorizationContext;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -41,12 +37,25 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
 
     private ApiProperties apiProperties;
 
-    private static final AntPathMatcher pathMatch = new AntPathMatcher();
-
     private Set<String> permitAll = new ConcurrentHashSet<>();
 
     private Set<String> authorityIgnores = new ConcurrentHashSet<>();
 
+    /**
+     * 始终放行路径索引
+     */
+    private final PathPatternTrie<String> permitAllIndex = new PathPatternTrie<>();
+
+    /**
+     * 忽略鉴权路径索引
+     */
+    private final PathPatternTrie<String> authorityIgnoresIndex = new PathPatternTrie<>();
+
+    /**
+     * 鉴权结果缓存
+     */
+    private AuthorizationDecisionCache decisionCache;
+
 
     public AccessManager(ResourceLocator resourceLocator, ApiProperties apiProperties) {
         this.resourceLocator = resourceLocator;
@@ -69,7 +78,12 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
             if (apiProperties.getAuthorityIgnores() != null) {
                 authorityIgnores.addAll(apiProperties.getAuthorityIgnores());
             }
+            if (apiProperties.getDecisionCacheSize() != null && apiProperties.getDecisionCacheSize() > 0) {
+                decisionCache = new AuthorizationDecisionCache(apiProperties.getDecisionCacheSize(), apiProperties.getDecisionCacheExpire());
+            }
         }
+        permitAll.forEach(path -> permitAllIndex.put(path, path));
+        authorityIgnores.forEach(path -> authorityIgnoresIndex.put(path, path));
     }
 
 
@@ -96,26 +110,11 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
      * @return
      */
     public boolean permitAll(String requestPath) {
-        final Boolean[] result = {false};
-        Iterator<String> it = permitAll.iterator();
-        while (it.hasNext()) {
-            String path = it.next();
-            if (pathMatch.match(path, requestPath)) {
-                return true;
-            }
+        if (permitAllIndex.matches(requestPath)) {
+            return true;
         }
         // 动态权限列表
-        Flux<AuthorityResource> resources = resourceLocator.getAuthorityResources();
-        resources.filter(res -> StringUtils.isNotBlank(res.getPath()))
-                .subscribe(res -> {
-                    Boolean isAuth = res.getIsAuth() != null && res.getIsAuth().intValue() == 1 ? true : false;
-                    // 无需认证,返回true
-                    if (pathMatch.match(res.getPath(), requestPath) && !isAuth) {
-                        result[0] = true;
-                        return;
-                    }
-                });
-        return result[0];
+        return resourceLocator.getAuthorityIndex().isPermitAll(requestPath);
     }
 
     /**
@@ -125,12 +124,11 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
      * @return
      */
     public AuthorityResource getResource(String requestPath) {
-        final AuthorityResource[] result = {null};
+        if (permitAll(requestPath)) {
+            return null;
+        }
         // 动态权限列表
-        Flux<AuthorityResource> resources = resourceLocator.getAuthorityResources();
-        resources.filter(r -> !"/**".equals(r.getPath()) && !permitAll(requestPath) && StringUtils.isNotBlank(r.getPath()) && pathMatch.match(r.getPath(), requestPath))
-                .subscribe(r -> result[0] = r);
-        return result[0];
+        return resourceLocator.getAuthorityIndex().getResource(requestPath);
     }
 
     /**
@@ -140,14 +138,7 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
      * @return
      */
     private boolean authorityIgnores(String requestPath) {
-        Iterator<String> it = authorityIgnores.iterator();
-        while (it.hasNext()) {
-            String path = it.next();
-            if (pathMatch.match(path, requestPath)) {
-                return true;
-            }
-        }
-        return false;
+        return authorityIgnoresIndex.matches(requestPath);
     }
 
     /**
@@ -170,61 +161,80 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
                 // 认证通过,并且无需权限
                 return true;
             }
-            return mathAuthorities(exchange, authentication, requestPath);
+            if (decisionCache == null || CommonConstants.ROOT.equals(authentication.getName())) {
+                return mathAuthorities(exchange, authentication, requestPath);
+            }
+            return cachedMathAuthorities(authentication, requestPath);
         }
         return false;
     }
 
+    /**
+     * 优先从缓存获取鉴权结果
+     * 按匹配到的资源路径模式缓存,同一模式下不同路径参数的请求共用结果
+     *
+     * @param authentication
+     * @param requestPath
+     * @return
+     */
+    private boolean cachedMathAuthorities(Authentication authentication, String requestPath) {
+        ResourceSnapshot snapshot = resourceLocator.getSnapshot();
+        long version = snapshot.getVersion();
+        AuthorityIndex<AuthorityResource> authorityIndex = snapshot.getAuthorityIndex();
+        AuthorityIndex.Requirement requirement = authorityIndex.getRequirement(requestPath);
+        AuthorizationDecisionCache.Key key = decisionCache.key(requirement.getPattern(), authentication);
+        AuthorizationDecisionCache.Decision decision = decisionCache.get(version, key);
+        if (decision == null) {
+            try {
+                decision = mathAuthorities(authorityIndex, requirement.getAuthorities(), authentication) ? AuthorizationDecisionCache.Decision.GRANTED : AuthorizationDecisionCache.Decision.DENIED;
+            } catch (AccessDeniedException e) {
+                decision = AuthorizationDecisionCache.Decision.EXPIRED;
+            }
+            decisionCache.put(version, key, decision);
+        }
+        if (decision == AuthorizationDecisionCache.Decision.EXPIRED) {
+            // 授权已过期
+            throw new AccessDeniedException(ErrorCode.ACCESS_DENIED_AUTHORITY_EXPIRED.getMessage());
+        }
+        return decision == AuthorizationDecisionCache.Decision.GRANTED;
+    }
+
+    /**
+     * 按位图匹配权限
+     * 资源所需权限与用户已有权限均映射为字典位图,命中任一即通过.
+     *
+     * @param exchange
+     * @param authentication
+     * @param requestPath
+     * @return
+     */
     public boolean mathAuthorities(ServerWebExchange exchange, Authentication authentication, String requestPath) {
-        Collection<ConfigAttribute> attributes = getAttributes(requestPath);
-        int result = 0;
-        int expires = 0;
         if (authentication == null) {
             return false;
-        } else {
-            if (CommonConstants.ROOT.equals(authentication.getName())) {
-                // 默认超级管理员账号,直接放行
-                return true;
-            }
-            Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
-            Iterator var6 = attributes.iterator();
-            while (var6.hasNext()) {
-                ConfigAttribute attribute = (ConfigAttribute) var6.next();
-                Iterator var8 = authorities.iterator();
-                while (var8.hasNext()) {
-                    GrantedAuthority authority = (GrantedAuthority) var8.next();
-                    if (attribute.getAttribute().equals(authority.getAuthority())) {
-                        result++;
-                        if (authority instanceof OpenAuthority) {
-                            OpenAuthority customer = (OpenAuthority) authority;
-                            if (customer.getIsExpired() != null && customer.getIsExpired()) {
-                                // 授权过期数
-                                expires++;
-                            }
-                        }
-                    }
-                }
-            }
-            log.debug("mathAuthorities result[{}] expires[{}]", result, expires);
-            if (expires > 0) {
-                // 授权已过期
-                throw new AccessDeniedException(ErrorCode.ACCESS_DENIED_AUTHORITY_EXPIRED.getMessage());
-            }
-            return result > 0;
         }
+        if (CommonConstants.ROOT.equals(authentication.getName())) {
+            // 默认超级管理员账号,直接放行
+            return true;
+        }
+        AuthorityIndex<AuthorityResource> authorityIndex = resourceLocator.getAuthorityIndex();
+        return mathAuthorities(authorityIndex, authorityIndex.getRequiredAuthorities(requestPath), authentication);
     }
 
-    private Collection<ConfigAttribute> getAttributes(String requestPath) {
-        // 匹配动态权限
-        for (Iterator<String> iter = resourceLocator.getConfigAttributes().keySet().iterator(); iter.hasNext(); ) {
-            String url = iter.next();
-            // 防止匹配错误 忽略/**
-            if (!"/**".equals(url) && pathMatch.match(url, requestPath)) {
-                // 返回匹配到权限
-                return resourceLocator.getConfigAttributes().get(url);
-            }
+    /**
+     * 按位图匹配权限
+     *
+     * @param authorityIndex
+     * @param required       所需权限位图
+     * @param authentication
+     * @return
+     */
+    private boolean mathAuthorities(AuthorityIndex<AuthorityResource> authorityIndex, BitSet required, Authentication authentication) {
+        AuthorityDictionary.GrantedBits granted = authorityIndex.getDictionary().toGrantedBits(authentication.getAuthorities());
+        if (granted.intersectsExpired(required)) {
+            // 授权已过期
+            throw new AccessDeniedException(ErrorCode.ACCESS_DENIED_AUTHORITY_EXPIRED.getMessage());
         }
-        return SecurityConfig.createList("AUTHORITIES_REQUIRED");
+        return granted.intersects(required);
     }
 
     /**
@@ -236,13 +246,7 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
      * @return
      */
     public boolean matchIpOrOriginBlacklist(String requestPath, String ipAddress, String origin) {
-        final Boolean[] result = {false};
-        Flux<IpLimitApi> blackList = resourceLocator.getIpBlacks();
-        blackList.filter(api -> pathMatch.match(api.getPath(), requestPath) && api.getIpAddressSet() != null && !api.getIpAddressSet().isEmpty())
-                .filter(api -> matchIpOrOrigin(api.getIpAddressSet(), ipAddress, origin))
-                .subscribe(r -> result[0] = true);
-        return result[0];
-
+        return resourceLocator.getSnapshot().getIpBlackIndex().match(requestPath, ipAddress, origin)[1];
     }
 
     /**
@@ -254,41 +258,11 @@ public class AccessManager implements ReactiveAuthorizationManager<Authorization
      * @return [hasWhiteList, allow]
      */
     public Boolean[] matchIpOrOriginWhiteList(String requestPath, String ipAddress, String origin) {
-        final Boolean[] result = {false, false};
-        boolean hasWhiteList = false;
-        boolean allow = false;
-        Flux<IpLimitApi> whiteList = resourceLocator.getIpWhites();
-        whiteList.filter(api -> pathMatch.match(api.getPath(), requestPath) && api.getIpAddressSet() != null && !api.getIpAddressSet().isEmpty())
-                .subscribe(api -> {
-                    result[0] = true;
-                    result[1] = matchIpOrOrigin(api.getIpAddressSet(), ipAddress, origin);
-                });
-        return result;
+        return resourceLocator.getSnapshot().getIpWhiteIndex().match(requestPath, ipAddress, origin);
     }
 
-    /**
-     * 匹配IP或域名
-     *
-     * @param values
-     * @param ipAddress
-     * @param origin
-     * @return
-     */
-    public boolean matchIpOrOrigin(Set<String> values, String ipAddress, String origin) {
-        ReactiveIpAddressMatcher ipAddressMatcher = null;
-        for (String value : values) {
-            if (StringUtils.matchIp(value)) {
-                ipAddressMatcher = new ReactiveIpAddressMatcher(value);
-                if (ipAddressMatcher.matches(ipAddress)) {
-                    return true;
-                }
-            } else {
-                if (StringUtils.matchDomain(value) && StringUtils.isNotBlank(origin) && origin.contains(value)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    public AuthorizationDecisionCache getDecisionCache() {
+        return decisionCache;
     }
 
     public ApiProperties getApiProperties() {
@@ -1,51 +1,37 @@
 package com.opencloud.gateway.spring.server.filter;
 
-import com.alibaba.fastjson.JSONObject;
 import com.opencloud.gateway.spring.server.filter.context.GatewayContext;
-import com.opencloud.gateway.spring.server.filter.support.CachedBodyOutputMessage;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.gateway.support.BodyInserterContext;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ReactiveHttpOutputMessage;
-import org.springframework.http.codec.HttpMessageReader;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.reactive.function.BodyInserter;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.server.HandlerStrategies;
-import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.Map;
-
 /**
  * SpringCloud Gateway 记录缓存请求Body和Form表单
  * GatewayContext gatewayContext = exchange.getAttribute(GatewayContext.CACHE_GATEWAY_CONTEXT);
+ * 只缓存不超过maxBodySize的JSON和表单请求体,参数在首次获取时才解析;
+ * 超过上限、长度未知或其他类型(文件上传等)的请求体直接以流的方式转发,不做缓存.
  * https://github.com/chenggangpro/spring-cloud-gateway-plugin
  * @author liuyadu
  */
 @Slf4j
 @AllArgsConstructor
 public class GatewayContextFilter implements WebFilter, Ordered {
+
     /**
-     * default HttpMessageReader
+     * 最大缓存请求体(字节)
      */
-    private static final List<HttpMessageReader<?>> MESSAGE_READERS = HandlerStrategies.withDefaults().messageReaders();
+    private long maxBodySize;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain){
@@ -59,17 +45,17 @@ public class GatewayContextFilter implements WebFilter, Ordered {
          */
         exchange.getAttributes().put(GatewayContext.CACHE_GATEWAY_CONTEXT,gatewayContext);
         MediaType contentType = headers.getContentType();
-        if(headers.getContentLength()>0){
-            if(MediaType.APPLICATION_JSON.equals(contentType) || MediaType.APPLICATION_JSON_UTF8.equals(contentType)){
-                return readBody(exchange, chain,gatewayContext);
+        long contentLength = headers.getContentLength();
+        if (contentLength > 0 && contentLength <= maxBodySize && contentType != null) {
+            if (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+                return cacheBody(exchange, chain, gatewayContext, GatewayContext.BodyType.JSON);
             }
-            if(MediaType.APPLICATION_FORM_URLENCODED.equals(contentType)){
-                return readFormData(exchange, chain,gatewayContext);
+            if (MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)) {
+                return cacheBody(exchange, chain, gatewayContext, GatewayContext.BodyType.FORM);
             }
         }
         log.debug("[GatewayContext]ContentType:{},Gateway context is set with {}",contentType, gatewayContext);
         return chain.filter(exchange);
-
     }
 
 
@@ -78,137 +64,41 @@ public class GatewayContextFilter implements WebFilter, Ordered {
         return Integer.MIN_VALUE;
     }
 
-
     /**
-     * ReadFormData
+     * 缓存原始请求体,不做解析
      * @param exchange
      * @param chain
+     * @param gatewayContext
+     * @param bodyType
      * @return
      */
-    private Mono<Void> readFormData(ServerWebExchange exchange,WebFilterChain chain,GatewayContext gatewayContext){
-        HttpHeaders headers = exchange.getRequest().getHeaders();
-        return exchange.getFormData()
-                .doOnNext(multiValueMap -> {
-                    gatewayContext.setFormData(multiValueMap);
-                    gatewayContext.getAllRequestData().addAll(multiValueMap);
-                    log.debug("[GatewayContext]Read FormData Success");
-                })
-                .then(Mono.defer(() -> {
-                    Charset charset = headers.getContentType().getCharset();
-                    charset = charset == null? StandardCharsets.UTF_8:charset;
-                    String charsetName = charset.name();
-                    MultiValueMap<String, String> formData = gatewayContext.getFormData();
-                    /*
-                     * formData is empty just return
-                     */
-                    if(null == formData || formData.isEmpty()){
-                        return chain.filter(exchange);
-                    }
-                    StringBuilder formDataBodyBuilder = new StringBuilder();
-                    String entryKey;
-                    List<String> entryValue;
-                    try {
-                        /*
-                         * repackage form data
-                         */
-                        for (Map.Entry<String, List<String>> entry : formData.entrySet()) {
-                            entryKey = entry.getKey();
-                            entryValue = entry.getValue();
-                            if (entryValue.size() > 1) {
-                                for(String value : entryValue){
-                                    formDataBodyBuilder.append(entryKey).append("=").append(URLEncoder.encode(value, charsetName)).append("&");
-                                }
-                            } else {
-                                formDataBodyBuilder.append(entryKey).append("=").append(URLEncoder.encode(entryValue.get(0), charsetName)).append("&");
-                            }
-                        }
-                    }catch (UnsupportedEncodingException e){}
-                    /*
-                     * substring with the last char '&'
-                     */
-                    String formDataBodyString = "";
-                    if(formDataBodyBuilder.length()>0){
-                        formDataBodyString = formDataBodyBuilder.substring(0, formDataBodyBuilder.length() - 1);
-                    }
-                    /*
-                     * get data bytes
-                     */
-                    byte[] bodyBytes =  formDataBodyString.getBytes(charset);
-                    int contentLength = bodyBytes.length;
-                    HttpHeaders httpHeaders = new HttpHeaders();
-                    httpHeaders.putAll(exchange.getRequest().getHeaders());
-                    httpHeaders.remove(HttpHeaders.CONTENT_LENGTH);
-                    /*
-                     * in case of content-length not matched
-                     */
-                    httpHeaders.setContentLength(contentLength);
-                    /*
-                     * use BodyInserter to InsertFormData Body
-                     */
-                    BodyInserter<String, ReactiveHttpOutputMessage> bodyInserter = BodyInserters.fromObject(formDataBodyString);
-                    CachedBodyOutputMessage cachedBodyOutputMessage = new CachedBodyOutputMessage(exchange, httpHeaders);
-                    log.debug("[GatewayContext]Rewrite Form Data :{}",formDataBodyString);
-                    return bodyInserter.insert(cachedBodyOutputMessage,  new BodyInserterContext())
-                            .then(Mono.defer(() -> {
-                                ServerHttpRequestDecorator decorator = new ServerHttpRequestDecorator(
-                                        exchange.getRequest()) {
-                                    @Override
-                                    public HttpHeaders getHeaders() {
-                                        return httpHeaders;
-                                    }
-                                    @Override
-                                    public Flux<DataBuffer> getBody() {
-                                        return cachedBodyOutputMessage.getBody();
-                                    }
-                                };
-                                return chain.filter(exchange.mutate().request(decorator).build());
-                            }));
-                }));
-    }
-
-    /**
-     * ReadJsonBody
-     * @param exchange
-     * @param chain
-     * @return
-     */
-    private Mono<Void> readBody(ServerWebExchange exchange, WebFilterChain chain, GatewayContext gatewayContext){
-        return DataBufferUtils.join(exchange.getRequest().getBody())
-                .flatMap(dataBuffer -> {
+    private Mono<Void> cacheBody(ServerWebExchange exchange, WebFilterChain chain, GatewayContext gatewayContext, GatewayContext.BodyType bodyType){
+        ServerHttpRequest request = exchange.getRequest();
+        return DataBufferUtils.join(request.getBody())
+                .map(dataBuffer -> {
                     /*
                      * read the body Flux<DataBuffer>, and release the buffer
-                     * //TODO when SpringCloudGateway Version Release To G.SR2,this can be update with the new version's feature
-                     * see PR https://github.com/spring-cloud/spring-cloud-gateway/pull/1095
                      */
                     byte[] bytes = new byte[dataBuffer.readableByteCount()];
                     dataBuffer.read(bytes);
                     DataBufferUtils.release(dataBuffer);
-                    Flux<DataBuffer> cachedFlux = Flux.defer(() -> {
-                        DataBuffer buffer = exchange.getResponse().bufferFactory().wrap(bytes);
-                        DataBufferUtils.retain(buffer);
-                        return Mono.just(buffer);
-                    });
+                    return bytes;
+                })
+                .defaultIfEmpty(new byte[0])
+                .flatMap(bytes -> {
+                    gatewayContext.cacheBody(bytes, bodyType, request.getHeaders().getContentType().getCharset());
+                    Flux<DataBuffer> cachedFlux = Flux.defer(() -> Mono.just(exchange.getResponse().bufferFactory().wrap(bytes)));
                     /*
                      * repackage ServerHttpRequest
                      */
-                    ServerHttpRequest mutatedRequest = new ServerHttpRequestDecorator(exchange.getRequest()) {
+                    ServerHttpRequest mutatedRequest = new ServerHttpRequestDecorator(request) {
                         @Override
                         public Flux<DataBuffer> getBody() {
                             return cachedFlux;
                         }
                     };
-                    ServerWebExchange mutatedExchange = exchange.mutate().request(mutatedRequest).build();
-                    return ServerRequest.create(mutatedExchange, MESSAGE_READERS)
-                            .bodyToMono(String.class)
-                            .doOnNext(objectValue -> {
-                                gatewayContext.setRequestBody(objectValue);
-                                try {
-                                    gatewayContext.getAllRequestData().setAll(JSONObject.parseObject(objectValue, Map.class));
-                                }catch (Exception e){
-                                    log.error("[GatewayContext]Read JsonBody error:{}",e);
-                                }
-                                log.debug("[GatewayContext]Read JsonBody Success");
-                            }).then(chain.filter(mutatedExchange));
+                    log.debug("[GatewayContext]Cache {} Body Success, size:{}", bodyType, bytes.length);
+                    return chain.filter(exchange.mutate().request(mutatedRequest).build());
                 });
     }
 
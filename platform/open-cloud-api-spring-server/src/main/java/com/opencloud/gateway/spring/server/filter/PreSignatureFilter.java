@@ -5,12 +5,13 @@ import com.google.common.collect.Maps;
 import com.opencloud.base.client.model.entity.BaseApp;
 import com.opencloud.common.constants.CommonConstants;
 import com.opencloud.common.exception.OpenSignatureException;
-import com.opencloud.common.model.ResultBody;
+import com.opencloud.common.utils.DateUtils;
 import com.opencloud.common.utils.SignatureUtils;
 import com.opencloud.gateway.spring.server.configuration.ApiProperties;
 import com.opencloud.gateway.spring.server.exception.JsonSignatureDeniedHandler;
 import com.opencloud.gateway.spring.server.filter.context.GatewayContext;
-import com.opencloud.gateway.spring.server.service.feign.BaseAppServiceClient;
+import com.opencloud.gateway.spring.server.filter.support.NonceReplayGuard;
+import com.opencloud.gateway.spring.server.service.AppCredentialCache;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
@@ -20,6 +21,7 @@ import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -32,14 +34,17 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public class PreSignatureFilter implements WebFilter {
     private JsonSignatureDeniedHandler signatureDeniedHandler;
-    private BaseAppServiceClient baseAppServiceClient;
+    private AppCredentialCache appCredentialCache;
+    private NonceReplayGuard nonceReplayGuard;
     private ApiProperties apiProperties;
     private static final AntPathMatcher pathMatch = new AntPathMatcher();
+    private static final String TIMESTAMP_PATTERN = "yyyyMMddHHmmss";
     private Set<String> signIgnores = new ConcurrentHashSet<>();
 
-    public PreSignatureFilter(BaseAppServiceClient baseAppServiceClient, ApiProperties apiProperties, JsonSignatureDeniedHandler signatureDeniedHandler) {
+    public PreSignatureFilter(AppCredentialCache appCredentialCache, NonceReplayGuard nonceReplayGuard, ApiProperties apiProperties, JsonSignatureDeniedHandler signatureDeniedHandler) {
         this.apiProperties = apiProperties;
-        this.baseAppServiceClient = baseAppServiceClient;
+        this.appCredentialCache = appCredentialCache;
+        this.nonceReplayGuard = nonceReplayGuard;
         this.signatureDeniedHandler = signatureDeniedHandler;
         // 默认忽略签名
         signIgnores.add("/");
@@ -73,19 +78,21 @@ public class PreSignatureFilter implements WebFilter {
                 }
                 // 验证请求参数
                 SignatureUtils.validateParams(params);
+                // 时间戳超出NONCE保留范围时无法防重放,直接拒绝
+                if (nonceReplayGuard != null && apiProperties.getNonceCheck()
+                        && !nonceReplayGuard.isFresh(DateUtils.parseDate(params.get(CommonConstants.SIGN_TIMESTAMP_KEY).toString(), TIMESTAMP_PATTERN))) {
+                    return signatureDeniedHandler.handle(exchange, new OpenSignatureException("签名验证失败:TIMESTAMP超出有效期"));
+                }
                 //开始验证签名
-                if (baseAppServiceClient != null) {
+                if (appCredentialCache != null) {
                     String appId = params.get(CommonConstants.SIGN_APP_ID_KEY).toString();
-                    // 获取客户端信息
-                    ResultBody<BaseApp> result = baseAppServiceClient.getApp(appId);
-                    BaseApp app = result.getData();
-                    if (app == null || app.getAppId() == null) {
-                        return signatureDeniedHandler.handle(exchange, new OpenSignatureException("appId无效"));
-                    }
-                    // 服务器验证签名结果
-                    if (!SignatureUtils.validateSign(params, app.getSecretKey())) {
-                        return signatureDeniedHandler.handle(exchange, new OpenSignatureException("签名验证失败!"));
-                    }
+                    Map signParams = params;
+                    // 获取客户端信息,优先读取本地缓存,未命中时不阻塞IO线程
+                    return appCredentialCache.getApp(appId)
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .onErrorResume(e -> signatureDeniedHandler.handle(exchange, new OpenSignatureException(e.getMessage())).then(Mono.<Optional<BaseApp>>empty()))
+                            .flatMap(app -> checkSign(exchange, chain, signParams, appId, app.orElse(null)));
                 }
             } catch (Exception ex) {
                 return signatureDeniedHandler.handle(exchange, new OpenSignatureException(ex.getMessage()));
@@ -94,6 +101,40 @@ public class PreSignatureFilter implements WebFilter {
         return chain.filter(exchange);
     }
 
+    /**
+     * 验证签名
+     *
+     * @param exchange
+     * @param chain
+     * @param params
+     * @param appId
+     * @param app      应用不存在时为null
+     * @return
+     */
+    private Mono<Void> checkSign(ServerWebExchange exchange, WebFilterChain chain, Map params, String appId, BaseApp app) {
+        try {
+            if (app == null) {
+                return signatureDeniedHandler.handle(exchange, new OpenSignatureException("appId无效"));
+            }
+            // 服务器验证签名结果
+            if (!SignatureUtils.validateSign(params, app.getSecretKey())) {
+                return signatureDeniedHandler.handle(exchange, new OpenSignatureException("签名验证失败!"));
+            }
+            // 签名通过后再记录NONCE,避免伪造请求占用空间
+            if (nonceReplayGuard != null && apiProperties.getNonceCheck()) {
+                String nonce = params.get(CommonConstants.SIGN_NONCE_KEY).toString();
+                return nonceReplayGuard.check(appId, nonce).flatMap(passed -> {
+                    if (!passed) {
+                        return signatureDeniedHandler.handle(exchange, new OpenSignatureException("签名验证失败:NONCE已使用,请勿重复请求"));
+                    }
+                    return chain.filter(exchange);
+                });
+            }
+        } catch (Exception ex) {
+            return signatureDeniedHandler.handle(exchange, new OpenSignatureException(ex.getMessage()));
+        }
+        return chain.filter(exchange);
+    }
 
     protected static List<String> getIgnoreMatchers(String... antPatterns) {
         List<String> matchers = new CopyOnWriteArrayList();
@@ -1,21 +1,55 @@
 package com.opencloud.gateway.spring.server.filter.context;
 
+import com.alibaba.fastjson.JSONObject;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
 /**
+ * 请求上下文
+ * 只缓存原始请求体,JSON和表单参数在首次获取时才解析.
+ * 同一请求的过滤器按顺序访问上下文,解析方法加锁只是防止在其他线程中调用时重复解析;
+ * 返回的参数集合不是线程安全的,不要在过滤器链以外修改.
+ * 访问日志等需要在其他线程中使用参数时,复制原始请求体后调用{@link #parseBody(byte[], BodyType, Charset, MultiValueMap)}.
+ *
  * @author liuyadu
  */
+@Slf4j
 @Getter
 @Setter
-@ToString
+@ToString(doNotUseGetters = true)
 public class GatewayContext {
 
     public static final String CACHE_GATEWAY_CONTEXT = "cacheGatewayContext";
+
+    /**
+     * 请求体类型
+     */
+    public enum BodyType {
+        /**
+         * 未缓存
+         */
+        NONE,
+        /**
+         * application/json
+         */
+        JSON,
+        /**
+         * application/x-www-form-urlencoded
+         */
+        FORM
+    }
+
     /**
      * cache json body
      */
@@ -36,5 +70,124 @@ public class GatewayContext {
      * cache all request data include:form data and query param
      */
     private MultiValueMap<String, String> allRequestData = new LinkedMultiValueMap<>(0);
+    /**
+     * 原始请求体
+     */
+    @ToString.Exclude
+    private byte[] cachedBody;
+    /**
+     * 请求体类型
+     */
+    private BodyType bodyType = BodyType.NONE;
+    /**
+     * 请求体编码
+     */
+    private Charset charset = StandardCharsets.UTF_8;
+    /**
+     * 请求体是否已解析
+     */
+    @ToString.Exclude
+    private volatile boolean bodyParsed;
+
+    /**
+     * 缓存原始请求体,延迟解析
+     *
+     * @param cachedBody
+     * @param bodyType
+     * @param charset
+     */
+    public synchronized void cacheBody(byte[] cachedBody, BodyType bodyType, Charset charset) {
+        this.cachedBody = cachedBody;
+        this.bodyType = bodyType;
+        this.charset = charset == null ? StandardCharsets.UTF_8 : charset;
+        this.bodyParsed = false;
+    }
+
+    public String getRequestBody() {
+        if (requestBody == null && bodyType == BodyType.JSON && cachedBody != null) {
+            requestBody = new String(cachedBody, charset);
+        }
+        return requestBody;
+    }
+
+    public synchronized MultiValueMap<String, String> getFormData() {
+        parseBody();
+        return formData;
+    }
+
+    public synchronized MultiValueMap<String, String> getAllRequestData() {
+        parseBody();
+        return allRequestData;
+    }
+
+    /**
+     * 获取已有参数的副本,不触发请求体解析
+     * 请求体未解析时只包含查询参数
+     *
+     * @return
+     */
+    public synchronized Map<String, String> getParsedRequestData() {
+        return allRequestData.toSingleValueMap();
+    }
+
+    /**
+     * 首次获取参数时解析请求体
+     */
+    private void parseBody() {
+        if (bodyParsed || cachedBody == null) {
+            return;
+        }
+        bodyParsed = true;
+        formData = parseBody(cachedBody, bodyType, charset, allRequestData);
+    }
+
+    /**
+     * 解析请求体并合并到参数集合,不依赖上下文,可在其他线程中调用
+     * JSON参数覆盖同名参数,表单参数追加到同名参数之后
+     *
+     * @param body     原始请求体
+     * @param bodyType 请求体类型
+     * @param charset  请求体编码
+     * @param target   参数集合
+     * @return 表单参数, 非表单请求返回null
+     */
+    public static MultiValueMap<String, String> parseBody(byte[] body, BodyType bodyType, Charset charset, MultiValueMap<String, String> target) {
+        if (body == null) {
+            return null;
+        }
+        Charset bodyCharset = charset == null ? StandardCharsets.UTF_8 : charset;
+        if (bodyType == BodyType.JSON) {
+            try {
+                target.setAll(JSONObject.parseObject(new String(body, bodyCharset), Map.class));
+            } catch (Exception e) {
+                log.error("[GatewayContext]Read JsonBody error:{}", e);
+            }
+        } else if (bodyType == BodyType.FORM) {
+            MultiValueMap<String, String> formData = parseFormData(new String(body, bodyCharset), bodyCharset);
+            target.addAll(formData);
+            return formData;
+        }
+        return null;
+    }
 
-}
\ No newline at end of file
+    private static MultiValueMap<String, String> parseFormData(String body, Charset charset) {
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+        try {
+            for (String pair : body.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int idx = pair.indexOf('=');
+                if (idx == -1) {
+                    result.add(URLDecoder.decode(pair, charset.name()), null);
+                } else {
+                    result.add(URLDecoder.decode(pair.substring(0, idx), charset.name()),
+                            URLDecoder.decode(pair.substring(idx + 1), charset.name()));
+                }
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            log.error("[GatewayContext]Read FormData error:{}", e.getMessage());
+        }
+        return result;
+    }
+}
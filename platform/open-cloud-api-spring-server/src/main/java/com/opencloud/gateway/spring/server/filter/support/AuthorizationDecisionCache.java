@@ -0,0 +1,244 @@
+package com.opencloud.gateway.spring.server.filter.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.opencloud.common.security.OpenAuthority;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鉴权结果缓存
+ * key为(匹配到的资源路径模式,权限集合指纹),资源快照版本变化时整体失效.
+ * 指纹为排序后权限标识的128位哈希,按Authentication实例缓存,同一令牌的请求只计算一次.
+ *
+ * @author liuyadu
+ */
+public class AuthorizationDecisionCache {
+
+    /**
+     * 鉴权结果
+     */
+    public enum Decision {
+        /**
+         * 允许访问
+         */
+        GRANTED,
+        /**
+         * 拒绝访问
+         */
+        DENIED,
+        /**
+         * 授权已过期
+         */
+        EXPIRED
+    }
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Cache<Key, Decision> cache;
+
+    /**
+     * 权限集合指纹,弱引用按实例缓存,认证信息失效后随之回收
+     */
+    private final Cache<Authentication, Fingerprint> fingerprints;
+
+    private volatile long version = -1;
+
+    public AuthorizationDecisionCache(long maximumSize, long expireSeconds) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.fingerprints = CacheBuilder.newBuilder()
+                .weakKeys()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * 生成缓存key
+     *
+     * @param pattern        匹配到的资源路径模式,未匹配时为null
+     * @param authentication
+     * @return
+     */
+    public Key key(String pattern, Authentication authentication) {
+        return new Key(pattern, fingerprint(authentication));
+    }
+
+    /**
+     * 获取缓存结果
+     *
+     * @param version 当前资源快照版本
+     * @param key
+     * @return 未命中返回null
+     */
+    public Decision get(long version, Key key) {
+        checkVersion(version);
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * 缓存结果
+     *
+     * @param version  计算结果时使用的资源快照版本
+     * @param key
+     * @param decision
+     */
+    public void put(long version, Key key, Decision decision) {
+        checkVersion(version);
+        if (version == this.version) {
+            cache.put(key, decision);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        fingerprints.invalidateAll();
+    }
+
+    /**
+     * 命中统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.size());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("fingerprintSize", fingerprints.size());
+        map.put("version", version);
+        return map;
+    }
+
+    /**
+     * 资源快照已更新时清空
+     *
+     * @param current
+     */
+    private void checkVersion(long current) {
+        if (current != version) {
+            synchronized (this) {
+                if (current > version) {
+                    cache.invalidateAll();
+                    version = current;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取权限集合指纹,有权限到期后重新计算
+     *
+     * @param authentication
+     * @return
+     */
+    private Fingerprint fingerprint(Authentication authentication) {
+        long now = System.currentTimeMillis();
+        Fingerprint fingerprint = fingerprints.getIfPresent(authentication);
+        if (fingerprint == null || now >= fingerprint.validUntil) {
+            fingerprint = Fingerprint.of(authentication.getAuthorities(), now);
+            fingerprints.put(authentication, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 权限集合指纹
+     * 权限标识排序后计算128位哈希,已过期的权限单独标记;
+     * validUntil为最近一个未过期权限的到期时间,此后过期状态会变化,需要重新计算.
+     */
+    private static final class Fingerprint {
+        private final long high;
+        private final long low;
+        private final long validUntil;
+
+        private Fingerprint(long high, long low, long validUntil) {
+            this.high = high;
+            this.low = low;
+            this.validUntil = validUntil;
+        }
+
+        private static Fingerprint of(Collection<? extends GrantedAuthority> authorities, long now) {
+            String[] values = new String[authorities.size()];
+            long validUntil = Long.MAX_VALUE;
+            int i = 0;
+            for (GrantedAuthority authority : authorities) {
+                String value = authority.getAuthority() == null ? "" : authority.getAuthority();
+                if (authority instanceof OpenAuthority && ((OpenAuthority) authority).getExpireTime() != null) {
+                    long expireTime = ((OpenAuthority) authority).getExpireTime().getTime();
+                    if (now > expireTime) {
+                        // 过期状态不同的权限集合视为不同指纹
+                        value = value + '\u0000';
+                    } else {
+                        validUntil = Math.min(validUntil, expireTime + 1);
+                    }
+                }
+                values[i++] = value;
+            }
+            Arrays.sort(values, 0, i);
+            Hasher hasher = HASH_FUNCTION.newHasher();
+            for (int j = 0; j < i; j++) {
+                hasher.putString(values[j], StandardCharsets.UTF_8).putByte((byte) '\n');
+            }
+            HashCode hash = hasher.hash();
+            byte[] bytes = hash.asBytes();
+            long high = 0;
+            for (int j = 8; j < 16; j++) {
+                high = (high << 8) | (bytes[j] & 0xFF);
+            }
+            return new Fingerprint(high, hash.asLong(), validUntil);
+        }
+    }
+
+    public static final class Key {
+        private final String pattern;
+        private final long high;
+        private final long low;
+        private final int hash;
+
+        private Key(String pattern, Fingerprint fingerprint) {
+            this.pattern = pattern;
+            this.high = fingerprint.high;
+            this.low = fingerprint.low;
+            this.hash = 31 * Objects.hashCode(pattern) + Long.hashCode(low);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && low == other.low
+                    && high == other.high
+                    && Objects.equals(pattern, other.pattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.opencloud.gateway.spring.server.filter.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.validation.Validator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 本地令牌桶 + Redis异步对账限流器
+ * <p>
+ * 按固定时间窗口限流,每个窗口的全局配额记录在Redis计数器中.
+ * 每个网关节点按批次(配额 * leaseRatio)向Redis租用令牌,请求只在本地扣减,不访问Redis.
+ * 本地剩余令牌低于半个批次时异步续租,全局配额用尽后本窗口内不再续租.
+ * 新窗口开始时先在本地预支一个批次,同时异步写入Redis对账,超出全局配额的部分收回.
+ * <p>
+ * 误差:每个节点每个窗口最多多放行一个批次,未用完的租约不归还.
+ * Redis不可用时退化为单节点限流,单节点放行数不超过全局配额.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class HybridRateLimiter extends AbstractRateLimiter<HybridRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "hybrid-rate-limiter";
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private static final String REDIS_KEY_PREFIX = "open:rate:";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    private final double leaseRatio;
+
+    private final Cache<String, Bucket> buckets;
+
+    private final AtomicLong allowedCount = new AtomicLong();
+
+    private final AtomicLong deniedCount = new AtomicLong();
+
+    private final AtomicLong leaseCount = new AtomicLong();
+
+    private final AtomicLong leaseErrorCount = new AtomicLong();
+
+    /**
+     * @param redisTemplate 为null时仅本地限流
+     * @param leaseRatio    每次租用配额比例
+     * @param maxBuckets    本地令牌桶最大数量
+     * @param validator
+     */
+    public HybridRateLimiter(ReactiveStringRedisTemplate redisTemplate, double leaseRatio, long maxBuckets, Validator validator) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, validator);
+        this.redisTemplate = redisTemplate;
+        this.leaseRatio = leaseRatio <= 0 || leaseRatio > 1 ? 0.1 : leaseRatio;
+        this.buckets = CacheBuilder.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build();
+        log.info("HybridRateLimiter leaseRatio[{}] maxBuckets[{}] clusterSync[{}]", this.leaseRatio, maxBuckets, redisTemplate != null);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().get(routeId);
+        if (config == null || config.getQuota() <= 0 || config.getInterval() <= 0) {
+            return Mono.just(new Response(true, Collections.emptyMap()));
+        }
+        Window window;
+        try {
+            window = current(routeId + ":" + id, config);
+        } catch (ExecutionException e) {
+            log.error("HybridRateLimiter error:{}", e.getMessage());
+            return Mono.just(new Response(true, Collections.emptyMap()));
+        }
+        long remaining = window.tryAcquire();
+        boolean allowed = remaining >= 0;
+        if (allowed) {
+            allowedCount.incrementAndGet();
+        } else {
+            deniedCount.incrementAndGet();
+        }
+        if (remaining <= window.lowWatermark) {
+            lease(window);
+        }
+        return Mono.just(new Response(allowed, Collections.singletonMap(REMAINING_HEADER, String.valueOf(Math.max(0, remaining)))));
+    }
+
+    private Window current(String key, Config config) throws ExecutionException {
+        long intervalMillis = TimeUnit.SECONDS.toMillis(config.getInterval());
+        long index = System.currentTimeMillis() / intervalMillis;
+        Bucket bucket = buckets.get(key, Bucket::new);
+        for (; ; ) {
+            Window window = bucket.window.get();
+            if (window != null && window.index == index && window.quota == config.getQuota()) {
+                return window;
+            }
+            long leaseSize = Math.max(1L, Math.min(config.getQuota(), (long) Math.ceil(config.getQuota() * leaseRatio)));
+            Window next = new Window(key, index, config, leaseSize);
+            if (bucket.window.compareAndSet(window, next)) {
+                // 本地预支一个批次,异步对账
+                next.leasing.set(true);
+                reconcile(next, true);
+                return next;
+            }
+        }
+    }
+
+    private void lease(Window window) {
+        if (window.exhausted || !window.leasing.compareAndSet(false, true)) {
+            return;
+        }
+        reconcile(window, false);
+    }
+
+    /**
+     * 向Redis申请一个批次
+     *
+     * @param window
+     * @param prepaid 是否已在本地预支
+     */
+    private void reconcile(Window window, boolean prepaid) {
+        leaseCount.incrementAndGet();
+        if (redisTemplate == null) {
+            grantLocal(window, prepaid);
+            return;
+        }
+        String redisKey = REDIS_KEY_PREFIX + window.key + ":" + window.index;
+        redisTemplate.opsForValue().increment(redisKey, window.leaseSize)
+                .flatMap(total -> {
+                    Mono<Long> result = Mono.just(total);
+                    if (total == window.leaseSize) {
+                        return redisTemplate.expire(redisKey, Duration.ofSeconds(window.ttl)).then(result);
+                    }
+                    return result;
+                })
+                .subscribe(total -> {
+                    long granted = Math.max(0L, Math.min(window.leaseSize, window.quota - (total - window.leaseSize)));
+                    if (granted < window.leaseSize) {
+                        window.exhausted = true;
+                    }
+                    if (prepaid) {
+                        window.tokens.addAndGet(granted - window.leaseSize);
+                    } else {
+                        window.tokens.addAndGet(granted);
+                    }
+                    window.leasing.set(false);
+                }, e -> {
+                    leaseErrorCount.incrementAndGet();
+                    log.warn("HybridRateLimiter lease error, fallback to local:{}", e.getMessage());
+                    grantLocal(window, prepaid);
+                });
+    }
+
+    /**
+     * 本地发放,单节点不超过全局配额
+     *
+     * @param window
+     * @param prepaid
+     */
+    private void grantLocal(Window window, boolean prepaid) {
+        if (!prepaid) {
+            long granted = Math.max(0L, Math.min(window.leaseSize, window.quota - window.localGranted.get()));
+            window.localGranted.addAndGet(granted);
+            window.tokens.addAndGet(granted);
+            if (granted < window.leaseSize) {
+                window.exhausted = true;
+            }
+        }
+        window.leasing.set(false);
+    }
+
+    /**
+     * 运行统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("buckets", buckets.size());
+        map.put("allowedCount", allowedCount.get());
+        map.put("deniedCount", deniedCount.get());
+        map.put("leaseCount", leaseCount.get());
+        map.put("leaseErrorCount", leaseErrorCount.get());
+        return map;
+    }
+
+    private static final class Bucket {
+        private final AtomicReference<Window> window = new AtomicReference<>();
+    }
+
+    /**
+     * 单个时间窗口内的本地令牌
+     */
+    private static final class Window {
+        private final String key;
+        private final long index;
+        private final long quota;
+        private final long ttl;
+        private final long leaseSize;
+        private final long lowWatermark;
+        private final AtomicLong tokens;
+        private final AtomicLong localGranted;
+        private final AtomicBoolean leasing = new AtomicBoolean();
+        private volatile boolean exhausted;
+
+        private Window(String key, long index, Config config, long leaseSize) {
+            this.key = key;
+            this.index = index;
+            this.quota = config.getQuota();
+            this.ttl = Math.max(config.getInterval(), config.getTtl()) + 1;
+            this.leaseSize = leaseSize;
+            this.lowWatermark = leaseSize / 2;
+            this.tokens = new AtomicLong(leaseSize);
+            this.localGranted = new AtomicLong(leaseSize);
+        }
+
+        /**
+         * @return 剩余令牌数,没有令牌时返回-1
+         */
+        private long tryAcquire() {
+            for (; ; ) {
+                long current = tokens.get();
+                if (current <= 0) {
+                    return -1;
+                }
+                if (tokens.compareAndSet(current, current - 1)) {
+                    return current - 1;
+                }
+            }
+        }
+    }
+
+    @Data
+    public static class Config {
+        /**
+         * 窗口内全局配额
+         */
+        private long quota;
+        /**
+         * 窗口长度(秒)
+         */
+        private long interval;
+        /**
+         * Redis计数器过期时间(秒)
+         */
+        private long ttl;
+    }
+}
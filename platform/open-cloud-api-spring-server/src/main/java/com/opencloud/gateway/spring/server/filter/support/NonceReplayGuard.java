@@ -0,0 +1,280 @@
+package com.opencloud.gateway.spring.server.filter.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 签名随机数(NONCE)防重放
+ * 使用一对轮换的布隆过滤器记录签名有效期内出现过的NONCE:
+ * 新请求写入current,同时检查previous,每两个有效期轮换一次,保证每个NONCE至少保留两个有效期.
+ * 请求时间戳只接受当前时间前后一个有效期(见isFresh),同一时间戳可被接受的时间跨度为两个有效期,与NONCE保留时长一致.
+ * 内存占用由配置上限固定,检查与写入均为O(1).
+ * 布隆过滤器存在极低误判率,误判时合法请求会被当作重放拒绝,客户端更换NONCE重试即可.
+ * 开启集群同步时,本地未命中的NONCE再通过Redis SETNX确认,防止跨节点重放.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class NonceReplayGuard {
+
+    private static final String REDIS_KEY_PREFIX = "open:nonce:";
+
+    private final long windowMillis;
+
+    /**
+     * 过滤器轮换周期,为有效期的两倍
+     */
+    private final long rotateMillis;
+
+    private final int numHashFunctions;
+
+    private final long numBits;
+
+    private volatile Pair pair;
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    private final AtomicLong passedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong clusterRejectedCount = new AtomicLong();
+
+    private final ScheduledExecutorService rotateExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "nonce-guard-rotate");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param windowSeconds    签名有效期(秒)
+     * @param maxMemoryMb      内存上限(MB),两个过滤器平分
+     * @param expectedRequests 每个有效期内预计签名请求数
+     * @param redisTemplate    集群同步,为null时仅本地校验
+     */
+    public NonceReplayGuard(long windowSeconds, long maxMemoryMb, long expectedRequests, ReactiveStringRedisTemplate redisTemplate) {
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        this.rotateMillis = windowMillis * 2;
+        // 按64位对齐
+        long words = Math.max(1L, maxMemoryMb * 1024 * 1024 / 2 / Long.BYTES);
+        if (words > Integer.MAX_VALUE) {
+            words = Integer.MAX_VALUE;
+        }
+        this.numBits = words * Long.SIZE;
+        // 每个过滤器保存一个轮换周期的请求
+        long n = Math.max(1L, expectedRequests) * 2;
+        this.numHashFunctions = (int) Math.max(1, Math.min(16, Math.round((double) numBits / n * Math.log(2))));
+        this.pair = new Pair(new BitArray((int) words), new BitArray((int) words));
+        this.redisTemplate = redisTemplate;
+        this.rotateExecutor.scheduleAtFixedRate(this::rotate, rotateMillis, rotateMillis, TimeUnit.MILLISECONDS);
+        log.info("NonceReplayGuard window[{}s] bits[{}] hashes[{}] expectedFpp[{}] clusterSync[{}]",
+                windowSeconds, numBits, numHashFunctions, String.format("%.2e", getExpectedFpp(n)), redisTemplate != null);
+    }
+
+    /**
+     * 请求时间戳是否在当前时间前后一个有效期内
+     * 超出范围的请求,其NONCE可能已被轮换清除,必须拒绝
+     *
+     * @param timestamp 请求时间戳
+     * @return
+     */
+    public boolean isFresh(Date timestamp) {
+        return timestamp != null && Math.abs(System.currentTimeMillis() - timestamp.getTime()) <= windowMillis;
+    }
+
+    /**
+     * 校验并记录NONCE
+     *
+     * @param appId
+     * @param nonce
+     * @return true:首次出现 false:重复请求
+     */
+    public Mono<Boolean> check(String appId, String nonce) {
+        String key = appId + ":" + nonce;
+        if (!tryAcquireLocal(key)) {
+            rejectedCount.incrementAndGet();
+            return Mono.just(false);
+        }
+        if (redisTemplate == null) {
+            passedCount.incrementAndGet();
+            return Mono.just(true);
+        }
+        return redisTemplate.opsForValue()
+                .setIfAbsent(REDIS_KEY_PREFIX + key, "1", Duration.ofMillis(rotateMillis))
+                .defaultIfEmpty(true)
+                .onErrorResume(e -> {
+                    // Redis不可用时降级为本地校验
+                    log.warn("NonceReplayGuard cluster sync error:{}", e.getMessage());
+                    return Mono.just(true);
+                })
+                .doOnNext(passed -> {
+                    if (passed) {
+                        passedCount.incrementAndGet();
+                    } else {
+                        clusterRejectedCount.incrementAndGet();
+                    }
+                });
+    }
+
+    /**
+     * 本地校验并记录
+     *
+     * @param key
+     * @return
+     */
+    private boolean tryAcquireLocal(String key) {
+        long hash1 = hash(key, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(key, 0xC2B2AE3D27D4EB4FL);
+        Pair current = this.pair;
+        if (current.previous.mightContain(hash1, hash2, numHashFunctions, numBits)) {
+            return false;
+        }
+        // put未改变任何位说明已存在
+        return current.current.put(hash1, hash2, numHashFunctions, numBits);
+    }
+
+    /**
+     * 轮换过滤器,复用最旧的位数组,避免每次重新分配
+     */
+    private void rotate() {
+        try {
+            Pair old = this.pair;
+            BitArray recycled = old.previous;
+            recycled.clear();
+            this.pair = new Pair(recycled, old.current);
+        } catch (Exception e) {
+            log.error("NonceReplayGuard rotate error:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 当前设置下的理论误判率
+     *
+     * @param insertions
+     * @return
+     */
+    private double getExpectedFpp(long insertions) {
+        return Math.pow(1 - Math.exp(-numHashFunctions * (double) insertions / numBits), numHashFunctions);
+    }
+
+    /**
+     * 运行统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("passedCount", passedCount.get());
+        map.put("rejectedCount", rejectedCount.get());
+        map.put("clusterRejectedCount", clusterRejectedCount.get());
+        map.put("memoryBytes", numBits / Byte.SIZE * 2);
+        map.put("numHashFunctions", numHashFunctions);
+        // 按当前填充率估算误判率
+        map.put("currentFpp", Math.pow((double) pair.current.bitCount() / numBits, numHashFunctions));
+        map.put("clusterSync", redisTemplate != null);
+        return map;
+    }
+
+    /**
+     * 64位FNV-1a,使用不同种子得到两个独立哈希后做双重哈希
+     */
+    private static long hash(String key, long seed) {
+        long h = 0xCBF29CE484222325L ^ seed;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        // 末尾混淆
+        h ^= (h >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    private static final class Pair {
+        private final BitArray current;
+        private final BitArray previous;
+
+        private Pair(BitArray current, BitArray previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * 无锁位数组
+     */
+    private static final class BitArray {
+        private final AtomicLongArray data;
+
+        private BitArray(int words) {
+            this.data = new AtomicLongArray(words);
+        }
+
+        private boolean mightContain(long hash1, long hash2, int k, long numBits) {
+            long combined = hash1;
+            for (int i = 0; i < k; i++) {
+                if (!get((combined & Long.MAX_VALUE) % numBits)) {
+                    return false;
+                }
+                combined += hash2;
+            }
+            return true;
+        }
+
+        /**
+         * @return 是否有位发生变化
+         */
+        private boolean put(long hash1, long hash2, int k, long numBits) {
+            boolean changed = false;
+            long combined = hash1;
+            for (int i = 0; i < k; i++) {
+                changed |= set((combined & Long.MAX_VALUE) % numBits);
+                combined += hash2;
+            }
+            return changed;
+        }
+
+        private boolean get(long index) {
+            return (data.get((int) (index >>> 6)) & (1L << index)) != 0;
+        }
+
+        private boolean set(long index) {
+            int i = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            do {
+                old = data.get(i);
+                if ((old & mask) != 0) {
+                    return false;
+                }
+            } while (!data.compareAndSet(i, old, old | mask));
+            return true;
+        }
+
+        private void clear() {
+            for (int i = 0; i < data.length(); i++) {
+                data.set(i, 0L);
+            }
+        }
+
+        private long bitCount() {
+            long count = 0;
+            for (int i = 0; i < data.length(); i++) {
+                count += Long.bitCount(data.get(i));
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 增量路由构建
+ * 替换默认的RouteDefinitionRouteLocator,按路由定义对象缓存构建好的路由.
+ * JdbcRouteDefinitionLocator刷新时未变化的路由沿用原定义对象,因此只有新增和修改的路由定义需要重新构建断言和过滤器,
+ * 其他来源的路由定义每次返回新对象时照常重建.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class IncrementalRouteLocator implements RouteLocator {
+
+    private final RouteDefinitionLocator routeDefinitionLocator;
+
+    /**
+     * 将一批路由定义按顺序转换为路由
+     */
+    private final Function<List<RouteDefinition>, RouteLocator> converter;
+
+    /**
+     * 路由定义 -> 路由,按对象引用比较,每次构建后整体替换
+     */
+    private volatile Map<RouteDefinition, Route> cache = Collections.emptyMap();
+
+    private final AtomicLong builtCount = new AtomicLong();
+
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    public IncrementalRouteLocator(RouteDefinitionLocator routeDefinitionLocator, Function<List<RouteDefinition>, RouteLocator> converter) {
+        this.routeDefinitionLocator = routeDefinitionLocator;
+        this.converter = converter;
+    }
+
+    @Override
+    public Flux<Route> getRoutes() {
+        return routeDefinitionLocator.getRouteDefinitions()
+                .collectList()
+                .flatMapMany(this::resolve);
+    }
+
+    private Flux<Route> resolve(List<RouteDefinition> definitions) {
+        Map<RouteDefinition, Route> previous = cache;
+        List<RouteDefinition> changed = new ArrayList<>();
+        for (RouteDefinition definition : definitions) {
+            if (!previous.containsKey(definition)) {
+                changed.add(definition);
+            }
+        }
+        if (changed.isEmpty()) {
+            return Flux.fromIterable(merge(definitions, previous, changed, Collections.emptyList()));
+        }
+        return converter.apply(changed).getRoutes()
+                .collectList()
+                .flatMapMany(built -> {
+                    if (built.size() != changed.size()) {
+                        // 无法与路由定义一一对应,本次不缓存
+                        log.warn("=============路由构建数量不一致:definitions={},routes={}==============", changed.size(), built.size());
+                        return converter.apply(definitions).getRoutes();
+                    }
+                    return Flux.fromIterable(merge(definitions, previous, changed, built));
+                });
+    }
+
+    /**
+     * 按路由定义顺序合并新构建和缓存的路由
+     */
+    private List<Route> merge(List<RouteDefinition> definitions, Map<RouteDefinition, Route> previous, List<RouteDefinition> changed, List<Route> built) {
+        Map<RouteDefinition, Route> next = new IdentityHashMap<>(definitions.size());
+        for (int i = 0; i < changed.size(); i++) {
+            next.put(changed.get(i), built.get(i));
+        }
+        List<Route> routes = new ArrayList<>(definitions.size());
+        for (RouteDefinition definition : definitions) {
+            Route route = next.get(definition);
+            if (route == null) {
+                route = previous.get(definition);
+                next.put(definition, route);
+            }
+            routes.add(route);
+        }
+        this.cache = next;
+        builtCount.addAndGet(changed.size());
+        reusedCount.addAndGet(definitions.size() - changed.size());
+        log.info("=============构建路由:built={},reused={}==============", changed.size(), definitions.size() - changed.size());
+        return routes;
+    }
+
+    /**
+     * 运行统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.size());
+        map.put("builtCount", builtCount.get());
+        map.put("reusedCount", reusedCount.get());
+        return map;
+    }
+}
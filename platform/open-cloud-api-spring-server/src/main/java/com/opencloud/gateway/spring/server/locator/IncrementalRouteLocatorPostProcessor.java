@@ -0,0 +1,53 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 使用IncrementalRouteLocator替换网关自动配置的routeDefinitionRouteLocator
+ * 自动配置的路由构建器没有条件注解,无法直接覆盖,这里在初始化后替换为增量实现,
+ * 转换单个路由的逻辑仍由RouteDefinitionRouteLocator完成.
+ *
+ * @author liuyadu
+ */
+public class IncrementalRouteLocatorPostProcessor implements BeanPostProcessor, ApplicationContextAware {
+
+    public static final String ROUTE_LOCATOR_BEAN_NAME = "routeDefinitionRouteLocator";
+
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!ROUTE_LOCATOR_BEAN_NAME.equals(beanName) || !(bean instanceof RouteDefinitionRouteLocator)) {
+            return bean;
+        }
+        // 与自动配置使用相同的依赖,此时均已初始化
+        RouteDefinitionLocator routeDefinitionLocator = applicationContext.getBean(RouteDefinitionLocator.class);
+        List<RoutePredicateFactory> predicates = applicationContext.getBeanProvider(RoutePredicateFactory.class).orderedStream().collect(Collectors.toList());
+        List<GatewayFilterFactory> filterFactories = applicationContext.getBeanProvider(GatewayFilterFactory.class).orderedStream().collect(Collectors.toList());
+        GatewayProperties gatewayProperties = applicationContext.getBean(GatewayProperties.class);
+        return new IncrementalRouteLocator(routeDefinitionLocator, definitions -> {
+            RouteDefinitionRouteLocator converter = new RouteDefinitionRouteLocator(() -> Flux.fromIterable(definitions), predicates, filterFactories, gatewayProperties);
+            // 解析#{@beanName}参数,发布FilterArgsEvent以更新限流器配置
+            converter.setBeanFactory(applicationContext.getAutowireCapableBeanFactory());
+            converter.setApplicationEventPublisher(applicationContext);
+            return converter;
+        });
+    }
+}
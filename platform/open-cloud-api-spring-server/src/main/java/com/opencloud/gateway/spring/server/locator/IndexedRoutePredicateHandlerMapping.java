@@ -0,0 +1,243 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import com.opencloud.common.matcher.PathPatternTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.NameUtils;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR;
+
+/**
+ * 带路径索引的路由匹配
+ * 只有一个Path断言的路由按路径模式放入前缀树,其余路由(多个断言、非Path断言、无法解析的模式)作为复杂路由按顺序匹配.
+ * 请求时只对前缀树候选路由和复杂路由按原顺序执行断言,结果与逐个匹配一致.
+ * 路由刷新后在下一次请求时异步重建索引,重建完成前按原方式逐个匹配.
+ * 每次刷新递增版本号,索引记录构建时的版本,只有构建期间未再刷新的索引才会被使用.
+ * 默认的RoutePredicateHandlerMapping由{@link RoutePredicateHandlerMappingPostProcessor}移除,索引未匹配时直接返回空,
+ * 不再由默认实现重新扫描全部路由.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping implements ApplicationListener<RefreshRoutesEvent> {
+
+    /**
+     * 位于RequestMappingHandlerMapping(0)之后,网关自身的接口优先于路由
+     */
+    public static final int ORDER = 1;
+
+    private final RouteLocator routeLocator;
+
+    private final RouteDefinitionLocator routeDefinitionLocator;
+
+    /**
+     * 路由版本,每次刷新加1
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 已开始构建的最新版本
+     */
+    private final AtomicLong building = new AtomicLong(-1);
+
+    private volatile RouteIndex index;
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator, RouteDefinitionLocator routeDefinitionLocator,
+                                               GlobalCorsProperties globalCorsProperties, Environment environment) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.routeDefinitionLocator = routeDefinitionLocator;
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesEvent event) {
+        // 本监听按HandlerMapping顺序先于CachingRouteLocator执行,先清除路由缓存,
+        // 保证版本号变化后构建索引时取到的都是刷新后的路由
+        if (routeLocator instanceof CachingRouteLocator) {
+            ((CachingRouteLocator) routeLocator).refresh();
+        }
+        generation.incrementAndGet();
+        index = null;
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        long currentGeneration = generation.get();
+        RouteIndex current = index;
+        if (current == null || current.generation != currentGeneration) {
+            rebuild(currentGeneration);
+            return super.lookupRoute(exchange);
+        }
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (path.indexOf('%') != -1) {
+            // 编码路径按解码后的值匹配,前缀树无法保证候选完整
+            return super.lookupRoute(exchange);
+        }
+        return Flux.fromIterable(current.candidates(path))
+                .concatMap(route -> Mono.just(route)
+                        .filterWhen(r -> {
+                            exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
+                            return r.getPredicate().apply(exchange);
+                        })
+                        .doOnError(e -> log.error("Error applying predicate for route: " + route.getId(), e))
+                        .onErrorResume(e -> Mono.empty()))
+                .next()
+                .map(route -> {
+                    validateRoute(route, exchange);
+                    return route;
+                });
+    }
+
+    /**
+     * 构建指定版本的索引,同一版本只构建一次
+     *
+     * @param targetGeneration
+     */
+    private void rebuild(long targetGeneration) {
+        long started = building.get();
+        if (started >= targetGeneration || !building.compareAndSet(started, targetGeneration)) {
+            return;
+        }
+        Mono.zip(routeLocator.getRoutes().collectList(), routeDefinitionLocator.getRouteDefinitions().collectList())
+                .subscribe(tuple -> {
+                    if (generation.get() != targetGeneration) {
+                        // 构建期间路由再次刷新,放弃本次结果
+                        return;
+                    }
+                    RouteIndex built = RouteIndex.build(targetGeneration, tuple.getT1(), tuple.getT2());
+                    // 赋值前再次刷新时版本号不一致,请求仍按原方式匹配并重新构建
+                    index = built;
+                    log.info("=============路由索引:generation={},indexed={},complex={}==============", targetGeneration, built.indexed, built.complex.size());
+                }, e -> {
+                    log.error("构建路由索引错误:{}", e);
+                    // 允许下一次请求重试
+                    building.compareAndSet(targetGeneration, targetGeneration - 1);
+                });
+    }
+
+    /**
+     * 运行统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        RouteIndex current = index;
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("generation", generation.get());
+        map.put("ready", current != null && current.generation == generation.get());
+        map.put("indexed", current == null ? 0 : current.indexed);
+        map.put("complex", current == null ? 0 : current.complex.size());
+        return map;
+    }
+
+    /**
+     * 路由索引,构建后只读
+     */
+    private static final class RouteIndex {
+        private final long generation;
+        private final List<Route> routes;
+        private final PathPatternTrie<Integer> trie = new PathPatternTrie<>();
+        private final List<Integer> complex = new ArrayList<>();
+        private int indexed;
+
+        private RouteIndex(long generation, List<Route> routes) {
+            this.generation = generation;
+            this.routes = routes;
+        }
+
+        private static RouteIndex build(long generation, List<Route> routes, List<RouteDefinition> definitions) {
+            Map<String, RouteDefinition> definitionMap = new HashMap<>(definitions.size() * 2);
+            for (RouteDefinition definition : definitions) {
+                definitionMap.putIfAbsent(definition.getId(), definition);
+            }
+            RouteIndex index = new RouteIndex(generation, new ArrayList<>(routes));
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < index.routes.size(); i++) {
+                Route route = index.routes.get(i);
+                // 重复ID的路由无法对应到唯一的路由定义
+                String pattern = seen.add(route.getId()) ? getSimplePattern(definitionMap.get(route.getId())) : null;
+                if (pattern != null) {
+                    index.trie.put(pattern, i);
+                    index.indexed++;
+                } else {
+                    index.complex.add(i);
+                }
+            }
+            return index;
+        }
+
+        /**
+         * 只有一个Path断言且只有一个模式时返回该模式
+         *
+         * @param definition
+         * @return
+         */
+        private static String getSimplePattern(RouteDefinition definition) {
+            if (definition == null || definition.getPredicates() == null || definition.getPredicates().size() != 1) {
+                return null;
+            }
+            PredicateDefinition predicate = definition.getPredicates().get(0);
+            if (!"Path".equals(predicate.getName()) || predicate.getArgs() == null) {
+                return null;
+            }
+            Map<String, String> args = predicate.getArgs();
+            String pattern = args.get("pattern");
+            if (pattern == null) {
+                if (args.size() != 1) {
+                    return null;
+                }
+                pattern = args.get(NameUtils.generateName(0));
+            }
+            if (pattern == null || !pattern.startsWith("/") || pattern.contains("{*") || pattern.contains(",")) {
+                return null;
+            }
+            return pattern;
+        }
+
+        /**
+         * 候选路由,按原顺序排列
+         *
+         * @param path
+         * @return
+         */
+        private List<Route> candidates(String path) {
+            List<PathPatternTrie.Entry<Integer>> entries = trie.candidates(path);
+            if (complex.isEmpty()) {
+                List<Route> result = new ArrayList<>(entries.size());
+                for (PathPatternTrie.Entry<Integer> entry : entries) {
+                    result.add(routes.get(entry.getValue()));
+                }
+                return result;
+            }
+            // 合并两个有序列表
+            List<Route> result = new ArrayList<>(entries.size() + complex.size());
+            int i = 0;
+            int j = 0;
+            while (i < entries.size() || j < complex.size()) {
+                if (j >= complex.size() || (i < entries.size() && entries.get(i).getValue() < complex.get(j))) {
+                    result.add(routes.get(entries.get(i++).getValue()));
+                } else {
+                    result.add(routes.get(complex.get(j++)));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -5,38 +5,47 @@ import com.opencloud.base.client.model.RateLimitApi;
 import com.opencloud.base.client.model.entity.GatewayRoute;
 import com.opencloud.common.event.RemoteRefreshRouteEvent;
 import com.opencloud.common.utils.StringUtils;
+import com.opencloud.gateway.spring.server.filter.support.HybridRateLimiter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.cloud.gateway.support.NameUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.ApplicationListener;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.web.util.UriComponentsBuilder;
-import reactor.cache.CacheFlux;
 import reactor.core.publisher.Flux;
 
 import java.net.URI;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * 自定义动态路由加载器
+ * 刷新时按行对比,只重建变化的路由定义并发布变更事件,未变化的路由沿用原定义对象,
+ * IncrementalRouteLocator据此只重新构建新增和修改的路由
  *
  * @author liuyadu
  */
 @Slf4j
-public class JdbcRouteDefinitionLocator implements RouteDefinitionLocator, ApplicationListener<RemoteRefreshRouteEvent> {
+public class JdbcRouteDefinitionLocator implements RouteDefinitionLocator, ApplicationListener<RemoteRefreshRouteEvent>, ApplicationEventPublisherAware {
     private JdbcTemplate jdbcTemplate;
-    private Flux<RouteDefinition> routeDefinitions;
-    private Map<String, List> cache = new ConcurrentHashMap();
+    private ApplicationEventPublisher publisher;
+    /**
+     * 当前路由定义,刷新时整体替换
+     */
+    private volatile List<RouteDefinition> routeDefinitions = Collections.emptyList();
+    /**
+     * 路由ID -> 路由定义及签名
+     */
+    private Map<String, RouteEntry> entries = Collections.emptyMap();
 
     private final static String SELECT_ROUTES = "SELECT * FROM gateway_route WHERE status = 1";
 
@@ -63,23 +72,42 @@ public class JdbcRouteDefinitionLocator implements RouteDefinitionLocator, Appli
 
     public JdbcRouteDefinitionLocator(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
-        routeDefinitions = CacheFlux.lookup(cache, "routeDefs", RouteDefinition.class).onCacheMissResume(Flux.fromIterable(new ArrayList<>()));
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
     }
 
     /**
-     * Clears the cache of routeDefinitions.
+     * 增量刷新
+     * 行数与最后修改时间无法发现删除后新增、回退修改时间等变化,因此每次都按行对比,
+     * 只重建变化的路由定义,未变化的沿用原对象,没有变化时不发布刷新事件.
+     * 新的路由列表构建完成后整体替换,刷新期间仍返回旧列表.
      *
      * @return routeDefinitions flux
      */
-    public Flux<RouteDefinition> refresh() {
-        this.cache.clear();
-        this.routeDefinitions = this.loadRoutes();
-        return this.routeDefinitions;
+    public synchronized Flux<RouteDefinition> refresh() {
+        try {
+            RouteDefinitionChangedEvent event = loadRoutes();
+            if (event.isEmpty()) {
+                log.debug("=============动态路由未变化==============");
+            } else {
+                log.info("=============动态路由变更:{}==============", event);
+                if (publisher != null) {
+                    publisher.publishEvent(event);
+                    publisher.publishEvent(new RefreshRoutesEvent(this));
+                }
+            }
+        } catch (Exception e) {
+            log.error("加载动态路由错误:{}", e);
+        }
+        return getRouteDefinitions();
     }
 
     @Override
     public Flux<RouteDefinition> getRouteDefinitions() {
-        return this.routeDefinitions;
+        return Flux.fromIterable(routeDefinitions);
     }
 
     @Override
@@ -87,7 +115,6 @@ public class JdbcRouteDefinitionLocator implements RouteDefinitionLocator, Appli
         refresh();
     }
 
-
     protected String getFullPath(List<GatewayRoute> routeList, String serviceId, String path) {
         final String[] fullPath = {path.startsWith("/") ? path : "/" + path};
         if (routeList != null) {
@@ -102,7 +129,161 @@ public class JdbcRouteDefinitionLocator implements RouteDefinitionLocator, Appli
     }
 
     /**
-     * 动态加载路由
+     * 加载路由并与上次结果对比
+     *
+     * @return 变更内容
+     */
+    private RouteDefinitionChangedEvent loadRoutes() {
+        //从数据库拿到路由配置
+        List<GatewayRoute> routeList = jdbcTemplate.query(SELECT_ROUTES, new RowMapper<GatewayRoute>() {
+            @Override
+            public GatewayRoute mapRow(ResultSet rs, int i) throws SQLException {
+                GatewayRoute result = new GatewayRoute();
+                result.setRouteId(rs.getLong("route_id"));
+                result.setPath(rs.getString("path"));
+                result.setServiceId(rs.getString("service_id"));
+                result.setUrl(rs.getString("url"));
+                result.setStatus(rs.getInt("status"));
+                result.setRetryable(rs.getInt("retryable"));
+                result.setStripPrefix(rs.getInt("strip_prefix"));
+                result.setIsPersist(rs.getInt("is_persist"));
+                result.setRouteName(rs.getString("route_name"));
+                return result;
+            }
+        });
+        List<RateLimitApi> limitApiList = jdbcTemplate.query(SELECT_LIMIT_PATH, new RowMapper<RateLimitApi>() {
+            @Override
+            public RateLimitApi mapRow(ResultSet rs, int i) throws SQLException {
+                RateLimitApi result = new RateLimitApi();
+                result.setPolicyId(rs.getLong("policy_id"));
+                result.setPolicyName(rs.getString("policy_name"));
+                result.setServiceId(rs.getString("service_id"));
+                result.setPath(rs.getString("path"));
+                result.setApiId(rs.getLong("api_id"));
+                result.setApiCode(rs.getString("api_code"));
+                result.setApiName(rs.getString("api_name"));
+                result.setApiCategory(rs.getString("api_category"));
+                result.setLimitQuota(rs.getLong("limit_quota"));
+                result.setIntervalUnit(rs.getString("interval_unit"));
+                result.setUrl(rs.getString("url"));
+                return result;
+            }
+        });
+        Map<String, RouteEntry> previous = entries;
+        Map<String, RouteEntry> current = new LinkedHashMap<>();
+        Set<String> added = new HashSet<>();
+        Set<String> updated = new HashSet<>();
+        if (limitApiList != null) {
+            // 加载限流
+            for (RateLimitApi item : limitApiList) {
+                String fullPath = getFullPath(routeList, item.getServiceId(), item.getPath());
+                String id = item.getApiId().toString();
+                String signature = item.getPolicyId() + "|" + item.getLimitQuota() + "|" + item.getIntervalUnit() + "|" + fullPath + "|" + item.getServiceId() + "|" + item.getUrl();
+                diff(previous, current, added, updated, id, signature, () -> buildRateLimitDefinition(item, fullPath));
+            }
+        }
+        if (routeList != null) {
+            // 最后加载路由
+            for (GatewayRoute gatewayRoute : routeList) {
+                String id = gatewayRoute.getRouteName();
+                String signature = gatewayRoute.getRouteId() + "|" + gatewayRoute.getPath() + "|" + gatewayRoute.getServiceId() + "|" + gatewayRoute.getUrl();
+                diff(previous, current, added, updated, id, signature, () -> buildRouteDefinition(gatewayRoute));
+            }
+        }
+        Set<String> removed = new HashSet<>(previous.keySet());
+        removed.removeAll(current.keySet());
+        // 路由按顺序匹配,内容未变但顺序变化时同样需要刷新
+        boolean reordered = !new ArrayList<>(previous.keySet()).equals(new ArrayList<>(current.keySet()));
+        List<RouteDefinition> definitions = new ArrayList<>(current.size());
+        current.values().forEach(entry -> definitions.add(entry.definition));
+        this.entries = current;
+        this.routeDefinitions = Collections.unmodifiableList(definitions);
+        log.info("=============加载动态路由:{}==============", routeList.size());
+        log.info("=============加载动态限流:{}==============", limitApiList.size());
+        return new RouteDefinitionChangedEvent(this, added, updated, removed, reordered);
+    }
+
+    /**
+     * 对比单个路由,内容未变化时沿用原路由定义
+     */
+    private void diff(Map<String, RouteEntry> previous, Map<String, RouteEntry> current, Set<String> added, Set<String> updated,
+                      String id, String signature, Supplier<RouteDefinition> builder) {
+        if (current.containsKey(id)) {
+            // 重复ID只保留第一个,与按顺序匹配的结果一致
+            return;
+        }
+        RouteEntry entry = previous.get(id);
+        if (entry != null && entry.signature.equals(signature)) {
+            current.put(id, entry);
+            return;
+        }
+        current.put(id, new RouteEntry(signature, builder.get()));
+        if (entry == null) {
+            added.add(id);
+        } else {
+            updated.add(id);
+        }
+    }
+
+    /**
+     * 构建接口限流路由
+     *
+     * @param item
+     * @param fullPath
+     * @return
+     */
+    private RouteDefinition buildRateLimitDefinition(RateLimitApi item, String fullPath) {
+        long[] arry = ResourceLocator.getIntervalAndQuota(item.getIntervalUnit());
+        // 窗口长度(秒)
+        long interval = arry[0];
+        // 计数器过期时间(秒)
+        long ttl = arry[1];
+        RouteDefinition definition = new RouteDefinition();
+        List<PredicateDefinition> predicates = Lists.newArrayList();
+        List<FilterDefinition> filters = Lists.newArrayList();
+        definition.setId(item.getApiId().toString());
+        PredicateDefinition predicatePath = new PredicateDefinition();
+        Map<String, String> predicatePathParams = new HashMap<>(8);
+        predicatePath.setName("Path");
+        predicatePathParams.put("pattern", fullPath);
+        predicatePathParams.put("pathPattern", fullPath);
+        predicatePathParams.put("_rateLimit", "1");
+        predicatePath.setArgs(predicatePathParams);
+        predicates.add(predicatePath);
+
+        // 服务地址
+        URI uri = UriComponentsBuilder.fromUriString(StringUtils.isNotBlank(item.getUrl()) ? item.getUrl() : "lb://" + item.getServiceId()).build().toUri();
+
+        // 路径去前缀
+        FilterDefinition stripPrefixDefinition = new FilterDefinition();
+        Map<String, String> stripPrefixParams = new HashMap<>(8);
+        stripPrefixDefinition.setName("StripPrefix");
+        stripPrefixParams.put(NameUtils.GENERATED_NAME_PREFIX + "0", "1");
+        stripPrefixDefinition.setArgs(stripPrefixParams);
+        filters.add(stripPrefixDefinition);
+        // 限流
+        FilterDefinition rateLimiterDefinition = new FilterDefinition();
+        Map<String, String> rateLimiterParams = new HashMap<>(8);
+        rateLimiterDefinition.setName("RequestRateLimiter");
+        // 本地令牌桶 + Redis异步对账
+        rateLimiterParams.put("rate-limiter", "#{@hybridRateLimiter}");
+        // 窗口内全局配额
+        rateLimiterParams.put(HybridRateLimiter.CONFIGURATION_PROPERTY_NAME + ".quota", String.valueOf(item.getLimitQuota()));
+        rateLimiterParams.put(HybridRateLimiter.CONFIGURATION_PROPERTY_NAME + ".interval", String.valueOf(interval));
+        rateLimiterParams.put(HybridRateLimiter.CONFIGURATION_PROPERTY_NAME + ".ttl", String.valueOf(ttl));
+        // 限流策略(#{@BeanName})
+        rateLimiterParams.put("key-resolver", "#{@pathKeyResolver}");
+        rateLimiterDefinition.setArgs(rateLimiterParams);
+        filters.add(rateLimiterDefinition);
+
+        definition.setPredicates(predicates);
+        definition.setFilters(filters);
+        definition.setUri(uri);
+        return definition;
+    }
+
+    /**
+     * 构建服务路由
      * * 示例
      * id: opencloud-admin-provider
      * uri: lb://opencloud-admin-provider
@@ -113,137 +294,49 @@ public class JdbcRouteDefinitionLocator implements RouteDefinitionLocator, Appli
      * #转发去掉前缀,总要否则swagger无法加载
      * - StripPrefix=1
      *
+     * @param gatewayRoute
      * @return
      */
-    private Flux<RouteDefinition> loadRoutes() {
-        //从数据库拿到路由配置
-        List<RouteDefinition> routes = Lists.newArrayList();
-        try {
-            List<GatewayRoute> routeList = jdbcTemplate.query(SELECT_ROUTES, new RowMapper<GatewayRoute>() {
-                @Override
-                public GatewayRoute mapRow(ResultSet rs, int i) throws SQLException {
-                    GatewayRoute result = new GatewayRoute();
-                    result.setRouteId(rs.getLong("route_id"));
-                    result.setPath(rs.getString("path"));
-                    result.setServiceId(rs.getString("service_id"));
-                    result.setUrl(rs.getString("url"));
-                    result.setStatus(rs.getInt("status"));
-                    result.setRetryable(rs.getInt("retryable"));
-                    result.setStripPrefix(rs.getInt("strip_prefix"));
-                    result.setIsPersist(rs.getInt("is_persist"));
-                    result.setRouteName(rs.getString("route_name"));
-                    return result;
-                }
-            });
-            List<RateLimitApi> limitApiList = jdbcTemplate.query(SELECT_LIMIT_PATH, new RowMapper<RateLimitApi>() {
-                @Override
-                public RateLimitApi mapRow(ResultSet rs, int i) throws SQLException {
-                    RateLimitApi result = new RateLimitApi();
-                    result.setPolicyId(rs.getLong("policy_id"));
-                    result.setPolicyName(rs.getString("policy_name"));
-                    result.setServiceId(rs.getString("service_id"));
-                    result.setPath(rs.getString("path"));
-                    result.setApiId(rs.getLong("api_id"));
-                    result.setApiCode(rs.getString("api_code"));
-                    result.setApiName(rs.getString("api_name"));
-                    result.setApiCategory(rs.getString("api_category"));
-                    result.setLimitQuota(rs.getLong("limit_quota"));
-                    result.setIntervalUnit(rs.getString("interval_unit"));
-                    result.setUrl(rs.getString("url"));
-                    return result;
-                }
-            });
-            if (limitApiList != null) {
-                // 加载限流
-                limitApiList.forEach(item -> {
-                    long[] arry = ResourceLocator.getIntervalAndQuota(item.getIntervalUnit());
-                    Long refreshInterval = arry[0];
-                    Long quota = arry[1];
-                    // 允许用户每秒处理多少个请求
-                    long replenishRate = item.getLimitQuota() / refreshInterval;
-                    replenishRate = replenishRate < 1 ? 1 : refreshInterval;
-                    // 令牌桶的容量，允许在一秒钟内完成的最大请求数
-                    long burstCapacity = replenishRate * 2;
-                    RouteDefinition definition = new RouteDefinition();
-                    List<PredicateDefinition> predicates = Lists.newArrayList();
-                    List<FilterDefinition> filters = Lists.newArrayList();
-                    definition.setId(item.getApiId().toString());
-                    PredicateDefinition predicatePath = new PredicateDefinition();
-                    String fullPath = getFullPath(routeList, item.getServiceId(), item.getPath());
-                    Map<String, String> predicatePathParams = new HashMap<>(8);
-                    predicatePath.setName("Path");
-                    predicatePathParams.put("pattern", fullPath);
-                    predicatePathParams.put("pathPattern", fullPath);
-                    predicatePathParams.put("_rateLimit", "1");
-                    predicatePath.setArgs(predicatePathParams);
-                    predicates.add(predicatePath);
-
-                    // 服务地址
-                    URI uri = UriComponentsBuilder.fromUriString(StringUtils.isNotBlank(item.getUrl()) ? item.getUrl() : "lb://" + item.getServiceId()).build().toUri();
-
-                    // 路径去前缀
-                    FilterDefinition stripPrefixDefinition = new FilterDefinition();
-                    Map<String, String> stripPrefixParams = new HashMap<>(8);
-                    stripPrefixDefinition.setName("StripPrefix");
-                    stripPrefixParams.put(NameUtils.GENERATED_NAME_PREFIX + "0", "1");
-                    stripPrefixDefinition.setArgs(stripPrefixParams);
-                    filters.add(stripPrefixDefinition);
-                    // 限流
-                    FilterDefinition rateLimiterDefinition = new FilterDefinition();
-                    Map<String, String> rateLimiterParams = new HashMap<>(8);
-                    rateLimiterDefinition.setName("RequestRateLimiter");
-                    //令牌桶流速
-                    rateLimiterParams.put("redis-rate-limiter.replenishRate", String.valueOf(replenishRate));
-                    //令牌桶容量
-                    rateLimiterParams.put("redis-rate-limiter.burstCapacity", String.valueOf(burstCapacity));
-                    // 限流策略(#{@BeanName})
-                    rateLimiterParams.put("key-resolver", "#{@pathKeyResolver}");
-                    rateLimiterDefinition.setArgs(rateLimiterParams);
-                    filters.add(rateLimiterDefinition);
-
-                    definition.setPredicates(predicates);
-                    definition.setFilters(filters);
-                    definition.setUri(uri);
-                    routes.add(definition);
-                });
-            }
-            if (routeList != null) {
-                // 最后加载路由
-                routeList.forEach(gatewayRoute -> {
-                    RouteDefinition definition = new RouteDefinition();
-                    List<PredicateDefinition> predicates = Lists.newArrayList();
-                    List<FilterDefinition> filters = Lists.newArrayList();
-                    definition.setId(gatewayRoute.getRouteName());
-                    // 路由地址
-                    PredicateDefinition predicatePath = new PredicateDefinition();
-                    Map<String, String> predicatePathParams = new HashMap<>(8);
-                    predicatePath.setName("Path");
-                    predicatePathParams.put("name", StringUtils.isBlank(gatewayRoute.getRouteName()) ? gatewayRoute.getRouteId().toString() : gatewayRoute.getRouteName());
-                    predicatePathParams.put("pattern", gatewayRoute.getPath());
-                    predicatePathParams.put("pathPattern", gatewayRoute.getPath());
-                    predicatePath.setArgs(predicatePathParams);
-                    predicates.add(predicatePath);
-                    // 服务地址
-                    URI uri = UriComponentsBuilder.fromUriString(StringUtils.isNotBlank(gatewayRoute.getUrl()) ? gatewayRoute.getUrl() : "lb://" + gatewayRoute.getServiceId()).build().toUri();
-
-                    FilterDefinition stripPrefixDefinition = new FilterDefinition();
-                    Map<String, String> stripPrefixParams = new HashMap<>(8);
-                    stripPrefixDefinition.setName("StripPrefix");
-                    stripPrefixParams.put(NameUtils.GENERATED_NAME_PREFIX + "0", "1");
-                    stripPrefixDefinition.setArgs(stripPrefixParams);
-                    filters.add(stripPrefixDefinition);
-
-                    definition.setPredicates(predicates);
-                    definition.setFilters(filters);
-                    definition.setUri(uri);
-                    routes.add(definition);
-                });
-            }
-            log.info("=============加载动态路由:{}==============", routeList.size());
-            log.info("=============加载动态限流:{}==============", limitApiList.size());
-        } catch (Exception e) {
-            log.error("加载动态路由错误:{}", e);
+    private RouteDefinition buildRouteDefinition(GatewayRoute gatewayRoute) {
+        RouteDefinition definition = new RouteDefinition();
+        List<PredicateDefinition> predicates = Lists.newArrayList();
+        List<FilterDefinition> filters = Lists.newArrayList();
+        definition.setId(gatewayRoute.getRouteName());
+        // 路由地址
+        PredicateDefinition predicatePath = new PredicateDefinition();
+        Map<String, String> predicatePathParams = new HashMap<>(8);
+        predicatePath.setName("Path");
+        predicatePathParams.put("name", StringUtils.isBlank(gatewayRoute.getRouteName()) ? gatewayRoute.getRouteId().toString() : gatewayRoute.getRouteName());
+        predicatePathParams.put("pattern", gatewayRoute.getPath());
+        predicatePathParams.put("pathPattern", gatewayRoute.getPath());
+        predicatePath.setArgs(predicatePathParams);
+        predicates.add(predicatePath);
+        // 服务地址
+        URI uri = UriComponentsBuilder.fromUriString(StringUtils.isNotBlank(gatewayRoute.getUrl()) ? gatewayRoute.getUrl() : "lb://" + gatewayRoute.getServiceId()).build().toUri();
+
+        FilterDefinition stripPrefixDefinition = new FilterDefinition();
+        Map<String, String> stripPrefixParams = new HashMap<>(8);
+        stripPrefixDefinition.setName("StripPrefix");
+        stripPrefixParams.put(NameUtils.GENERATED_NAME_PREFIX + "0", "1");
+        stripPrefixDefinition.setArgs(stripPrefixParams);
+        filters.add(stripPrefixDefinition);
+
+        definition.setPredicates(predicates);
+        definition.setFilters(filters);
+        definition.setUri(uri);
+        return definition;
+    }
+
+    /**
+     * 路由定义及其内容签名
+     */
+    private static final class RouteEntry {
+        private final String signature;
+        private final RouteDefinition definition;
+
+        private RouteEntry(String signature, RouteDefinition definition) {
+            this.signature = signature;
+            this.definition = definition;
         }
-        return Flux.fromIterable(routes);
     }
 }
@@ -4,22 +4,20 @@ import com.google.common.collect.Lists;
 import com.opencloud.base.client.model.AuthorityResource;
 import com.opencloud.base.client.model.IpLimitApi;
 import com.opencloud.common.event.RemoteRefreshRouteEvent;
-import com.opencloud.gateway.spring.server.service.feign.BaseAuthorityServiceClient;
-import com.opencloud.gateway.spring.server.service.feign.GatewayServiceClient;
+import com.opencloud.common.matcher.AuthorityIndex;
+import com.opencloud.gateway.spring.server.service.ReactiveResourceClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.context.ApplicationListener;
 import org.springframework.security.access.ConfigAttribute;
 import org.springframework.security.access.SecurityConfig;
-import reactor.cache.CacheFlux;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 资源加载器
@@ -56,63 +54,109 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
 
 
     /**
-     * 权限资源
+     * 当前资源快照
      */
-    private Flux<AuthorityResource> authorityResources;
+    private final AtomicReference<ResourceSnapshot> snapshot = new AtomicReference<>(ResourceSnapshot.EMPTY);
 
     /**
-     * ip黑名单
+     * 快照版本号
      */
-    private Flux<IpLimitApi> ipBlacks;
+    private final AtomicLong version = new AtomicLong();
 
     /**
-     * ip白名单
+     * 服务路由前缀,每次刷新资源前重建
      */
-    private Flux<IpLimitApi> ipWhites;
+    private volatile RoutePrefixIndex routePrefixIndex = RoutePrefixIndex.EMPTY;
 
-    /**
-     * 权限列表
-     */
-    private Map<String, Collection<ConfigAttribute>> configAttributes = new ConcurrentHashMap<>();
-    /**
-     * 缓存
-     */
-    private Map<String, Object> cache = new ConcurrentHashMap<>();
-
-
-    private BaseAuthorityServiceClient baseAuthorityServiceClient;
-    private GatewayServiceClient gatewayServiceClient;
+    private ReactiveResourceClient reactiveResourceClient;
 
     private RouteDefinitionLocator routeDefinitionLocator;
 
     public ResourceLocator() {
-        authorityResources = CacheFlux.lookup(cache, "authorityResources", AuthorityResource.class).onCacheMissResume(Flux.fromIterable(new ArrayList<>()));
-        ipBlacks = CacheFlux.lookup(cache, "ipBlacks", IpLimitApi.class).onCacheMissResume(Flux.fromIterable(new ArrayList<>()));
-        ipWhites = CacheFlux.lookup(cache, "ipWhites", IpLimitApi.class).onCacheMissResume(Flux.fromIterable(new ArrayList<>()));
     }
 
 
-    public ResourceLocator(RouteDefinitionLocator routeDefinitionLocator, BaseAuthorityServiceClient baseAuthorityServiceClient, GatewayServiceClient gatewayServiceClient) {
+    public ResourceLocator(RouteDefinitionLocator routeDefinitionLocator, ReactiveResourceClient reactiveResourceClient) {
         this();
-        this.baseAuthorityServiceClient = baseAuthorityServiceClient;
-        this.gatewayServiceClient = gatewayServiceClient;
+        this.reactiveResourceClient = reactiveResourceClient;
         this.routeDefinitionLocator = routeDefinitionLocator;
     }
 
     /**
-     * 清空缓存并刷新
+     * 同步刷新,仅用于启动时首次加载
      */
     public void refresh() {
-        this.configAttributes.clear();
-        this.cache.clear();
-        this.authorityResources = loadAuthorityResources();
-        this.ipBlacks = loadIpBlackList();
-        this.ipWhites = loadIpWhiteList();
+        refreshAsync().block();
+    }
+
+    /**
+     * 非阻塞刷新
+     * 在旁路构建新快照,完成后原子替换,刷新期间请求仍读取旧快照.
+     * 某项数据加载失败时沿用上一版本数据.
+     *
+     * @return 当前生效的快照
+     */
+    public Mono<ResourceSnapshot> refreshAsync() {
+        ResourceSnapshot previous = snapshot.get();
+        long nextVersion = version.incrementAndGet();
+        Mono<List<AuthorityResource>> resources = loadAuthorityResources()
+                .onErrorResume(e -> {
+                    log.error("加载动态权限错误:{}", e);
+                    return Mono.just(previous.getAuthorityResources());
+                });
+        Mono<List<IpLimitApi>> blacks = loadIpBlackList()
+                .onErrorResume(e -> {
+                    log.error("加载IP黑名单错误:{}", e);
+                    return Mono.just(previous.getIpBlacks());
+                });
+        Mono<List<IpLimitApi>> whites = loadIpWhiteList()
+                .onErrorResume(e -> {
+                    log.error("加载IP白名单错误:{}", e);
+                    return Mono.just(previous.getIpWhites());
+                });
+        // 先重建路由前缀,再加载资源
+        return refreshRoutePrefixIndex()
+                .then(Mono.zip(resources, blacks, whites))
+                .map(tuple -> publish(new ResourceSnapshot(nextVersion, System.currentTimeMillis(), tuple.getT1(), buildConfigAttributes(tuple.getT1()), tuple.getT2(), tuple.getT3())));
+    }
+
+    /**
+     * 发布快照,并发刷新时只保留版本号最大的快照
+     *
+     * @param current
+     * @return
+     */
+    private ResourceSnapshot publish(ResourceSnapshot current) {
+        ResourceSnapshot existing;
+        do {
+            existing = snapshot.get();
+            if (existing.getVersion() > current.getVersion()) {
+                return existing;
+            }
+        } while (!snapshot.compareAndSet(existing, current));
+        log.info("=============发布资源快照:version={}==============", current.getVersion());
+        return current;
     }
 
     @Override
     public void onApplicationEvent(RemoteRefreshRouteEvent event) {
-        refresh();
+        refreshAsync().subscribe();
+    }
+
+    /**
+     * 重建服务路由前缀索引,失败时沿用上一版本
+     *
+     * @return
+     */
+    protected Mono<RoutePrefixIndex> refreshRoutePrefixIndex() {
+        return routeDefinitionLocator.getRouteDefinitions()
+                .collectList()
+                .map(RoutePrefixIndex::build)
+                .doOnNext(index -> this.routePrefixIndex = index)
+                .onErrorResume(e -> {
+                    log.error("加载路由前缀错误:{}", e);
+                    return Mono.just(routePrefixIndex);
+                });
     }
 
     /**
@@ -121,93 +165,77 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
      * @return
      */
     protected String getFullPath(String serviceId, String path) {
-        final String[] fullPath = {path.startsWith("/") ? path : "/" + path};
-        routeDefinitionLocator.getRouteDefinitions()
-                .filter(routeDefinition -> routeDefinition.getId().equals(serviceId))
-                .subscribe(routeDefinition -> {
-                            routeDefinition.getPredicates().stream()
-                                    .filter(predicateDefinition -> ("Path").equalsIgnoreCase(predicateDefinition.getName()))
-                                    .filter(predicateDefinition -> !predicateDefinition.getArgs().containsKey("_rateLimit"))
-                                    .forEach(predicateDefinition -> {
-                                        fullPath[0] = predicateDefinition.getArgs().get("pattern").replace("/**", path.startsWith("/") ? path : "/" + path);
-                                    });
-                        }
-                );
-        return fullPath[0];
+        return routePrefixIndex.getFullPath(serviceId, path);
     }
 
     /**
      * 加载授权列表
+     *
+     * @return
      */
-    public Flux<AuthorityResource> loadAuthorityResources() {
-        List<AuthorityResource> resources = Lists.newArrayList();
-        Collection<ConfigAttribute> array;
-        ConfigAttribute cfg;
-        try {
-            // 查询所有接口
-            resources = baseAuthorityServiceClient.findAuthorityResource().getData();
-            if (resources != null) {
-                for (AuthorityResource item : resources) {
-                    String path = item.getPath();
-                    if (path == null) {
-                        continue;
-                    }
-                    String fullPath = getFullPath(item.getServiceId(), path);
-                    item.setPath(fullPath);
-                    array = configAttributes.get(fullPath);
-                    if (array == null) {
-                        array = new ArrayList<>();
-                    }
-                    if (!array.contains(item.getAuthority())) {
-                        cfg = new SecurityConfig(item.getAuthority());
-                        array.add(cfg);
-                    }
-                    configAttributes.put(fullPath, array);
+    public Mono<List<AuthorityResource>> loadAuthorityResources() {
+        // 查询所有接口
+        return reactiveResourceClient.findAuthorityResource().map(resources -> {
+            List<AuthorityResource> list = Lists.newArrayList();
+            for (AuthorityResource item : resources) {
+                String path = item.getPath();
+                if (path == null) {
+                    continue;
                 }
-                log.info("=============加载动态权限:{}==============", resources.size());
+                item.setPath(getFullPath(item.getServiceId(), path));
+                list.add(item);
+            }
+            log.info("=============加载动态权限:{}==============", list.size());
+            return list;
+        });
+    }
+
+    /**
+     * 构建权限列表
+     *
+     * @param resources
+     * @return
+     */
+    protected Map<String, Collection<ConfigAttribute>> buildConfigAttributes(List<AuthorityResource> resources) {
+        Map<String, Collection<ConfigAttribute>> configAttributes = new LinkedHashMap<>();
+        for (AuthorityResource item : resources) {
+            Collection<ConfigAttribute> array = configAttributes.computeIfAbsent(item.getPath(), k -> new ArrayList<>());
+            ConfigAttribute cfg = new SecurityConfig(item.getAuthority());
+            if (!array.contains(cfg)) {
+                array.add(cfg);
             }
-        } catch (Exception e) {
-            log.error("加载动态权限错误:{}", e);
         }
-        return Flux.fromIterable(resources);
+        return configAttributes;
     }
 
     /**
      * 加载IP黑名单
+     *
+     * @return
      */
-    public Flux<IpLimitApi> loadIpBlackList() {
-        List<IpLimitApi> list = Lists.newArrayList();
-        try {
-            list = gatewayServiceClient.getApiBlackList().getData();
-            if (list != null) {
-                for (IpLimitApi item : list) {
-                    item.setPath(getFullPath(item.getServiceId(), item.getPath()));
-                }
-                log.info("=============加载IP黑名单:{}==============", list.size());
+    public Mono<List<IpLimitApi>> loadIpBlackList() {
+        return reactiveResourceClient.getApiBlackList().map(list -> {
+            for (IpLimitApi item : list) {
+                item.setPath(getFullPath(item.getServiceId(), item.getPath()));
             }
-        } catch (Exception e) {
-            log.error("加载IP黑名单错误:{}", e);
-        }
-        return Flux.fromIterable(list);
+            log.info("=============加载IP黑名单:{}==============", list.size());
+            return list;
+        });
     }
 
     /**
      * 加载IP白名单
+     *
+     * @return
      */
-    public Flux<IpLimitApi> loadIpWhiteList() {
-        List<IpLimitApi> list = Lists.newArrayList();
-        try {
-            list = gatewayServiceClient.getApiWhiteList().getData();
-            if (list != null) {
-                for (IpLimitApi item : list) {
-                    item.setPath(getFullPath(item.getServiceId(), item.getPath()));
-                }
-                log.info("=============加载IP白名单:{}==============", list.size());
+    public Mono<List<IpLimitApi>> loadIpWhiteList() {
+        return reactiveResourceClient.getApiWhiteList().map(list -> {
+            for (IpLimitApi item : list) {
+                item.setPath(getFullPath(item.getServiceId(), item.getPath()));
             }
-        } catch (Exception e) {
-            log.error("加载IP白名单错误:{}", e);
-        }
-        return Flux.fromIterable(list);
+            log.info("=============加载IP白名单:{}==============", list.size());
+            return list;
+        });
     }
 
     /**
@@ -218,7 +246,7 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
      */
     public static long[] getIntervalAndQuota(String timeUnit) {
         if (timeUnit.equalsIgnoreCase(TimeUnit.SECONDS.name())) {
-            return new long[]{SECONDS_IN_MINUTE, PERIOD_SECOND_TTL};
+            return new long[]{1, PERIOD_SECOND_TTL};
         } else if (timeUnit.equalsIgnoreCase(TimeUnit.MINUTES.name())) {
             return new long[]{SECONDS_IN_MINUTE, PERIOD_MINUTE_TTL};
         } else if (timeUnit.equalsIgnoreCase(TimeUnit.HOURS.name())) {
@@ -230,60 +258,41 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
         }
     }
 
-    public Flux<AuthorityResource> getAuthorityResources() {
-        return authorityResources;
+    /**
+     * 获取当前资源快照
+     *
+     * @return
+     */
+    public ResourceSnapshot getSnapshot() {
+        return snapshot.get();
     }
 
-    public void setAuthorityResources(Flux<AuthorityResource> authorityResources) {
-        this.authorityResources = authorityResources;
+    public Flux<AuthorityResource> getAuthorityResources() {
+        return Flux.fromIterable(snapshot.get().getAuthorityResources());
     }
 
     public Flux<IpLimitApi> getIpBlacks() {
-        return ipBlacks;
-    }
-
-    public void setIpBlacks(Flux<IpLimitApi> ipBlacks) {
-        this.ipBlacks = ipBlacks;
+        return Flux.fromIterable(snapshot.get().getIpBlacks());
     }
 
     public Flux<IpLimitApi> getIpWhites() {
-        return ipWhites;
+        return Flux.fromIterable(snapshot.get().getIpWhites());
     }
 
-    public void setIpWhites(Flux<IpLimitApi> ipWhites) {
-        this.ipWhites = ipWhites;
+    public AuthorityIndex<AuthorityResource> getAuthorityIndex() {
+        return snapshot.get().getAuthorityIndex();
     }
 
     public Map<String, Collection<ConfigAttribute>> getConfigAttributes() {
-        return configAttributes;
-    }
-
-    public void setConfigAttributes(Map<String, Collection<ConfigAttribute>> configAttributes) {
-        this.configAttributes = configAttributes;
-    }
-
-    public Map<String, Object> getCache() {
-        return cache;
-    }
-
-    public void setCache(Map<String, Object> cache) {
-        this.cache = cache;
-    }
-
-    public BaseAuthorityServiceClient getBaseAuthorityServiceClient() {
-        return baseAuthorityServiceClient;
-    }
-
-    public void setBaseAuthorityServiceClient(BaseAuthorityServiceClient baseAuthorityServiceClient) {
-        this.baseAuthorityServiceClient = baseAuthorityServiceClient;
+        return snapshot.get().getConfigAttributes();
     }
 
-    public GatewayServiceClient getGatewayServiceClient() {
-        return gatewayServiceClient;
+    public ReactiveResourceClient getReactiveResourceClient() {
+        return reactiveResourceClient;
     }
 
-    public void setGatewayServiceClient(GatewayServiceClient gatewayServiceClient) {
-        this.gatewayServiceClient = gatewayServiceClient;
+    public void setReactiveResourceClient(ReactiveResourceClient reactiveResourceClient) {
+        this.reactiveResourceClient = reactiveResourceClient;
     }
 
     public RouteDefinitionLocator getRouteDefinitionLocator() {
@@ -0,0 +1,125 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import com.opencloud.base.client.model.AuthorityResource;
+import com.opencloud.base.client.model.IpLimitApi;
+import com.opencloud.common.matcher.AuthorityDictionary;
+import com.opencloud.common.matcher.AuthorityIndex;
+import com.opencloud.common.matcher.IpLimitIndex;
+import org.springframework.security.access.ConfigAttribute;
+
+import java.util.*;
+
+/**
+ * 资源快照
+ * 刷新时在旁路构建完成后整体发布,发布后不再修改.
+ * 请求线程始终读取到一份完整的权限、黑白名单数据,不会出现刷新过程中的空窗期.
+ *
+ * @author liuyadu
+ */
+public final class ResourceSnapshot {
+
+    public static final ResourceSnapshot EMPTY = new ResourceSnapshot(0L, 0L, Collections.emptyList(), Collections.emptyMap(), Collections.emptyList(), Collections.emptyList());
+
+    /**
+     * 版本号
+     */
+    private final long version;
+
+    /**
+     * 刷新时间
+     */
+    private final long refreshTime;
+
+    /**
+     * 权限资源
+     */
+    private final List<AuthorityResource> authorityResources;
+
+    /**
+     * 权限列表,key为路由后的完整路径
+     */
+    private final Map<String, Collection<ConfigAttribute>> configAttributes;
+
+    /**
+     * ip黑名单
+     */
+    private final List<IpLimitApi> ipBlacks;
+
+    /**
+     * ip白名单
+     */
+    private final List<IpLimitApi> ipWhites;
+
+    /**
+     * 权限资源路径索引
+     */
+    private final AuthorityIndex<AuthorityResource> authorityIndex;
+
+    /**
+     * ip黑名单索引
+     */
+    private final IpLimitIndex ipBlackIndex;
+
+    /**
+     * ip白名单索引
+     */
+    private final IpLimitIndex ipWhiteIndex;
+
+    public ResourceSnapshot(long version, long refreshTime, List<AuthorityResource> authorityResources, Map<String, Collection<ConfigAttribute>> configAttributes, List<IpLimitApi> ipBlacks, List<IpLimitApi> ipWhites) {
+        this.version = version;
+        this.refreshTime = refreshTime;
+        this.authorityResources = Collections.unmodifiableList(new ArrayList<>(authorityResources));
+        this.configAttributes = Collections.unmodifiableMap(new LinkedHashMap<>(configAttributes));
+        this.ipBlacks = Collections.unmodifiableList(new ArrayList<>(ipBlacks));
+        this.ipWhites = Collections.unmodifiableList(new ArrayList<>(ipWhites));
+        this.authorityIndex = AuthorityIndex.build(this.authorityResources, AuthorityResource::getPath, ResourceSnapshot::isAuth, this.configAttributes, AuthorityDictionary.build(this.configAttributes));
+        this.ipBlackIndex = IpLimitIndex.build(this.ipBlacks, IpLimitApi::getPath, IpLimitApi::getIpAddressSet);
+        this.ipWhiteIndex = IpLimitIndex.build(this.ipWhites, IpLimitApi::getPath, IpLimitApi::getIpAddressSet);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getRefreshTime() {
+        return refreshTime;
+    }
+
+    public List<AuthorityResource> getAuthorityResources() {
+        return authorityResources;
+    }
+
+    public Map<String, Collection<ConfigAttribute>> getConfigAttributes() {
+        return configAttributes;
+    }
+
+    public List<IpLimitApi> getIpBlacks() {
+        return ipBlacks;
+    }
+
+    public List<IpLimitApi> getIpWhites() {
+        return ipWhites;
+    }
+
+    public AuthorityIndex<AuthorityResource> getAuthorityIndex() {
+        return authorityIndex;
+    }
+
+    public IpLimitIndex getIpBlackIndex() {
+        return ipBlackIndex;
+    }
+
+    public IpLimitIndex getIpWhiteIndex() {
+        return ipWhiteIndex;
+    }
+
+    /**
+     * 资源是否需要认证
+     *
+     * @param resource
+     * @return
+     */
+    private static boolean isAuth(AuthorityResource resource) {
+        return resource.getIsAuth() != null && resource.getIsAuth().intValue() == 1;
+    }
+}
@@ -0,0 +1,60 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 路由定义变更事件
+ * 只包含本次刷新新增、修改、删除的路由ID,随后发布的RefreshRoutesEvent中,
+ * IncrementalRouteLocator只重新构建新增和修改的路由
+ *
+ * @author liuyadu
+ */
+public class RouteDefinitionChangedEvent extends ApplicationEvent {
+
+    private final Set<String> added;
+
+    private final Set<String> updated;
+
+    private final Set<String> removed;
+
+    /**
+     * 路由顺序是否变化
+     */
+    private final boolean reordered;
+
+    public RouteDefinitionChangedEvent(Object source, Set<String> added, Set<String> updated, Set<String> removed, boolean reordered) {
+        super(source);
+        this.added = Collections.unmodifiableSet(added);
+        this.updated = Collections.unmodifiableSet(updated);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.reordered = reordered;
+    }
+
+    public Set<String> getAdded() {
+        return added;
+    }
+
+    public Set<String> getUpdated() {
+        return updated;
+    }
+
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    public boolean isReordered() {
+        return reordered;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty() && !reordered;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteDefinitionChangedEvent{added=" + added.size() + ", updated=" + updated.size() + ", removed=" + removed.size() + ", reordered=" + reordered + "}";
+    }
+}
@@ -0,0 +1,39 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.cloud.gateway.config.GatewayAutoConfiguration;
+
+/**
+ * 移除网关自动配置的routePredicateHandlerMapping
+ * 由IndexedRoutePredicateHandlerMapping代替,索引构建完成后未匹配的请求不再逐个扫描全部路由;
+ * 自动配置的HandlerMapping没有条件注解,同时存在时执行顺序取决于注册顺序.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class RoutePredicateHandlerMappingPostProcessor implements BeanDefinitionRegistryPostProcessor {
+
+    public static final String HANDLER_MAPPING_BEAN_NAME = "routePredicateHandlerMapping";
+
+    @Override
+    public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
+        if (!registry.containsBeanDefinition(HANDLER_MAPPING_BEAN_NAME)) {
+            return;
+        }
+        BeanDefinition definition = registry.getBeanDefinition(HANDLER_MAPPING_BEAN_NAME);
+        // 只移除自动配置的定义
+        if (GatewayAutoConfiguration.class.getName().equals(definition.getFactoryBeanName())) {
+            registry.removeBeanDefinition(HANDLER_MAPPING_BEAN_NAME);
+            log.info("remove default {}", HANDLER_MAPPING_BEAN_NAME);
+        }
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+    }
+}
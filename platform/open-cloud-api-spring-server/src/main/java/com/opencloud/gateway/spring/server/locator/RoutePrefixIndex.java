@@ -0,0 +1,96 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 服务路由前缀索引
+ * 每次刷新资源时按路由定义构建一次,接口路径加前缀时按服务ID直接查找,无需逐个扫描路由.
+ * 与逐个扫描结果一致:同一服务取最后一个Path断言,忽略限流路由.
+ *
+ * @author liuyadu
+ */
+public final class RoutePrefixIndex {
+
+    public static final RoutePrefixIndex EMPTY = new RoutePrefixIndex(Collections.emptyMap());
+
+    private static final String MATCH_ALL = "/**";
+
+    private final Map<String, Prefix> prefixes;
+
+    private RoutePrefixIndex(Map<String, Prefix> prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * 构建索引
+     *
+     * @param routeDefinitions
+     * @return
+     */
+    public static RoutePrefixIndex build(List<RouteDefinition> routeDefinitions) {
+        Map<String, Prefix> prefixes = new HashMap<>(Math.max(16, routeDefinitions.size() * 2));
+        for (RouteDefinition routeDefinition : routeDefinitions) {
+            if (routeDefinition.getId() == null || routeDefinition.getPredicates() == null) {
+                continue;
+            }
+            for (PredicateDefinition predicateDefinition : routeDefinition.getPredicates()) {
+                Map<String, String> args = predicateDefinition.getArgs();
+                if (!"Path".equalsIgnoreCase(predicateDefinition.getName()) || args == null || args.containsKey("_rateLimit")) {
+                    continue;
+                }
+                String pattern = args.get("pattern");
+                if (pattern != null) {
+                    prefixes.put(routeDefinition.getId(), new Prefix(pattern));
+                }
+            }
+        }
+        return new RoutePrefixIndex(prefixes);
+    }
+
+    /**
+     * 获取路由后的地址
+     *
+     * @param serviceId
+     * @param path
+     * @return
+     */
+    public String getFullPath(String serviceId, String path) {
+        String normalized = path.startsWith("/") ? path : "/" + path;
+        Prefix prefix = serviceId == null ? null : prefixes.get(serviceId);
+        return prefix == null ? normalized : prefix.apply(normalized);
+    }
+
+    public int size() {
+        return prefixes.size();
+    }
+
+    /**
+     * 预先拆分的路由模式
+     */
+    private static final class Prefix {
+        private final String pattern;
+        /**
+         * 模式以/**结尾且只出现一次时为其前面部分,否则为null
+         */
+        private final String head;
+
+        private Prefix(String pattern) {
+            this.pattern = pattern;
+            int index = pattern.indexOf(MATCH_ALL);
+            this.head = index != -1 && index == pattern.length() - MATCH_ALL.length() ? pattern.substring(0, index) : null;
+        }
+
+        private String apply(String path) {
+            if (head != null) {
+                return head.concat(path);
+            }
+            return pattern.replace(MATCH_ALL, path);
+        }
+    }
+}
@@ -1,26 +1,82 @@
 package com.opencloud.gateway.spring.server.oauth2;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.opencloud.common.constants.ErrorCode;
+import com.opencloud.common.security.OpenRedisTokenStore;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
-import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.redis.JdkSerializationStrategy;
+import org.springframework.security.oauth2.provider.token.store.redis.RedisTokenStoreSerializationStrategy;
 import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 非阻塞Redis令牌认证
+ * 直接读取RedisTokenStore写入的认证信息,解析结果按令牌摘要缓存在本地,
+ * 缓存时间不超过令牌剩余有效期,令牌被移除或更新时通过Redis频道通知失效.
+ *
  * @author: liuyadu
  * @date: 2019/5/9 10:53
  * @description:
  */
 @Slf4j
-public class RedisAuthenticationManager implements ReactiveAuthenticationManager {
-    private TokenStore tokenStore;
+public class RedisAuthenticationManager implements ReactiveAuthenticationManager, DisposableBean {
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+
+    private final RedisTokenStoreSerializationStrategy serializationStrategy = new JdkSerializationStrategy();
+
+    private final Cache<String, CachedAuthentication> cache;
 
-    public RedisAuthenticationManager(TokenStore tokenStore) {
-        this.tokenStore = tokenStore;
+    private final long cacheExpireMillis;
+
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+
+    private final Disposable revokeSubscription;
+
+    /**
+     * @param connectionFactory
+     * @param cacheSize          最大缓存数量
+     * @param cacheExpireSeconds 缓存时间(秒)
+     */
+    public RedisAuthenticationManager(ReactiveRedisConnectionFactory connectionFactory, long cacheSize, long cacheExpireSeconds) {
+        RedisSerializationContext<String, byte[]> serializationContext = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(RedisSerializer.byteArray())
+                .key(RedisSerializer.string())
+                .hashKey(RedisSerializer.string())
+                .build();
+        this.redisTemplate = new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+        this.cacheExpireMillis = TimeUnit.SECONDS.toMillis(cacheExpireSeconds);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheExpireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.listenerContainer = new ReactiveRedisMessageListenerContainer(connectionFactory);
+        this.revokeSubscription = listenerContainer.receive(ChannelTopic.of(OpenRedisTokenStore.TOKEN_REVOKE_CHANNEL))
+                .doOnNext(message -> cache.invalidate(message.getMessage()))
+                .doOnError(e -> log.error("token revoke subscription error:{}", e.getMessage()))
+                .retryBackoff(Long.MAX_VALUE, Duration.ofSeconds(1), Duration.ofMinutes(1))
+                .subscribe();
     }
 
     @Override
@@ -29,22 +85,73 @@ public class RedisAuthenticationManager implements ReactiveAuthenticationManager
                 .filter(a -> a instanceof BearerTokenAuthenticationToken)
                 .cast(BearerTokenAuthenticationToken.class)
                 .map(BearerTokenAuthenticationToken::getToken)
-                .flatMap((token -> {
-                    OAuth2Authentication oAuth2Authentication = this.tokenStore.readAuthentication(token);
-                    if(oAuth2Authentication==null){
-                        return Mono.error(new InvalidTokenException(ErrorCode.INVALID_TOKEN.getMessage()));
-                    }else{
-                        return Mono.just(oAuth2Authentication);
-                    }
-                }))
+                .flatMap(this::readAuthentication)
                 .cast(Authentication.class);
     }
 
-    public TokenStore getTokenStore() {
-        return tokenStore;
+    /**
+     * 读取认证信息,优先本地缓存
+     *
+     * @param token
+     * @return
+     */
+    private Mono<OAuth2Authentication> readAuthentication(String token) {
+        String tokenHash = OpenRedisTokenStore.hashToken(token);
+        CachedAuthentication cached = cache.getIfPresent(tokenHash);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            return Mono.just(cached.authentication);
+        }
+        String key = OpenRedisTokenStore.AUTH + token;
+        return Mono.zip(redisTemplate.opsForValue().get(key), redisTemplate.getExpire(key).defaultIfEmpty(Duration.ZERO))
+                // 反序列化不占用IO线程
+                .publishOn(Schedulers.parallel())
+                .map(tuple -> {
+                    OAuth2Authentication oAuth2Authentication = serializationStrategy.deserialize(tuple.getT1(), OAuth2Authentication.class);
+                    long ttl = tuple.getT2().toMillis();
+                    // 未设置过期时间的令牌按缓存时间计算
+                    long expire = ttl > 0 ? Math.min(ttl, cacheExpireMillis) : cacheExpireMillis;
+                    cache.put(tokenHash, new CachedAuthentication(oAuth2Authentication, System.currentTimeMillis() + expire));
+                    return oAuth2Authentication;
+                })
+                .switchIfEmpty(Mono.error(new InvalidTokenException(ErrorCode.INVALID_TOKEN.getMessage())));
     }
 
-    public void setTokenStore(TokenStore tokenStore) {
-        this.tokenStore = tokenStore;
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 命中统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.size());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    @Override
+    public void destroy() {
+        revokeSubscription.dispose();
+        listenerContainer.destroy();
+    }
+
+    private static final class CachedAuthentication {
+        private final OAuth2Authentication authentication;
+        private final long expiresAt;
+
+        private CachedAuthentication(OAuth2Authentication authentication, long expiresAt) {
+            this.authentication = authentication;
+            this.expiresAt = expiresAt;
+        }
     }
 }
@@ -3,12 +3,19 @@ package com.opencloud.gateway.spring.server.service;
 import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.collect.Maps;
+import com.opencloud.common.codec.AccessLogCodec;
 import com.opencloud.common.constants.QueueConstants;
+import com.opencloud.common.model.AccessLogRecord;
+import com.opencloud.common.queue.BatchPublisher;
 import com.opencloud.common.security.OpenUserDetails;
+import com.opencloud.gateway.spring.server.configuration.ApiProperties;
+import com.opencloud.gateway.spring.server.filter.AccessLogFilter;
 import com.opencloud.gateway.spring.server.filter.context.GatewayContext;
 import com.opencloud.gateway.spring.server.util.ReactiveWebUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.route.Route;
@@ -18,9 +25,15 @@ import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.util.AntPathMatcher;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.nio.charset.Charset;
 import java.util.*;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
@@ -28,7 +41,7 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.G
 /**
  * @author: liuyadu
  * @date: 2019/5/8 11:27
- * @description:
+ * @description: 访问日志先写入有界队列,由单独线程按数量或时间批量编码(AccessLogCodec)后发送到MQ,消息中间件变慢不影响请求处理
  */
 @Slf4j
 @Component
@@ -37,11 +50,16 @@ public class AccessLogService {
     @Autowired
     private AmqpTemplate amqpTemplate;
 
+    @Autowired
+    private ApiProperties apiProperties;
+
     @Value("${spring.application.name}")
     private String defaultServiceId;
 
     private final AntPathMatcher antPathMatcher = new AntPathMatcher();
 
+    private BatchPublisher<PendingLog> publisher;
+
     @JsonIgnore
     private Set<String> ignores = new HashSet<>(Arrays.asList(new String[]{
             "/**/oauth/check_token/**",
@@ -67,19 +85,31 @@ public class AccessLogService {
         return false;
     }
 
+    /**
+     * 写入日志队列,由发送线程批量发送,不阻塞请求线程
+     *
+     * @param exchange
+     * @param ex
+     */
     public void sendLog(ServerWebExchange exchange, Exception ex) {
         ServerHttpRequest request = exchange.getRequest();
         ServerHttpResponse response = exchange.getResponse();
         try {
+            String requestPath = request.getURI().getPath();
+            if (ignore(requestPath)) {
+                return;
+            }
             Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
             int httpStatus = response.getStatusCode().value();
-            String requestPath = request.getURI().getPath();
             String method = request.getMethodValue();
             Map<String, String> headers = request.getHeaders().toSingleValueMap();
             Map data = Maps.newHashMap();
             GatewayContext gatewayContext = exchange.getAttribute(GatewayContext.CACHE_GATEWAY_CONTEXT);
+            boolean bodyPending = false;
             if(gatewayContext!=null){
-                data = gatewayContext.getAllRequestData().toSingleValueMap();
+                // 请求体未解析时只取查询参数,请求体在发送线程中解析,不占用IO线程
+                bodyPending = !gatewayContext.isBodyParsed() && gatewayContext.getCachedBody() != null;
+                data = gatewayContext.getParsedRequestData();
             }
             String serviceId = null;
             if (route != null) {
@@ -92,32 +122,127 @@ public class AccessLogService {
             if (ex != null) {
                 error = ex.getMessage();
             }
-            if (ignore(requestPath)) {
-                return;
+            AccessLogRecord record = new AccessLogRecord();
+            record.setRequestTime(requestTime instanceof Date ? (Date) requestTime : null);
+            record.setServiceId(serviceId == null ? defaultServiceId : serviceId);
+            record.setHttpStatus(httpStatus);
+            record.setHeaders(headers);
+            record.setPath(requestPath);
+            record.setParams(data);
+            record.setIp(ip);
+            record.setMethod(method);
+            record.setUserAgent(userAgent);
+            record.setResponseTime(new Date());
+            record.setError(error);
+            record.setResponseSize(exchange.getAttribute(AccessLogFilter.RESPONSE_SIZE_ATTR));
+            record.setResponseBody(exchange.getAttribute(AccessLogFilter.RESPONSE_BODY_ATTR));
+            PendingLog pendingLog = new PendingLog(record);
+            if (bodyPending) {
+                pendingLog.body = gatewayContext.getCachedBody();
+                pendingLog.bodyType = gatewayContext.getBodyType();
+                pendingLog.charset = gatewayContext.getCharset();
             }
-            Map<String, Object> map = Maps.newHashMap();
-            map.put("requestTime", requestTime);
-            map.put("serviceId", serviceId == null ? defaultServiceId : serviceId);
-            map.put("httpStatus", httpStatus);
-            map.put("headers", JSONObject.toJSON(headers));
-            map.put("path", requestPath);
-            map.put("params", JSONObject.toJSON(data));
-            map.put("ip", ip);
-            map.put("method", method);
-            map.put("userAgent", userAgent);
-            map.put("responseTime", new Date());
-            map.put("error", error);
             Mono<Authentication>  authenticationMono = exchange.getPrincipal();
-            Mono<OpenUserDetails> authentication = authenticationMono
+            authenticationMono
                     .map(Authentication::getPrincipal)
-                    .cast(OpenUserDetails.class);
-            authentication.subscribe(user ->
-                    map.put("authentication", JSONObject.toJSONString(user))
-            );
-            amqpTemplate.convertAndSend(QueueConstants.QUEUE_ACCESS_LOGS, map);
+                    .filter(principal -> principal instanceof OpenUserDetails)
+                    .subscribe(user -> pendingLog.user = user,
+                            e -> publish(pendingLog),
+                            () -> publish(pendingLog));
         } catch (Exception e) {
             log.error("access logs save error:{}", e);
         }
 
     }
+
+    private void publish(PendingLog pendingLog) {
+        if (publisher != null) {
+            publisher.publish(pendingLog);
+        }
+    }
+
+    /**
+     * 批量编码发送,运行在发送线程
+     *
+     * @param batch
+     */
+    private void send(List<PendingLog> batch) {
+        List<AccessLogRecord> records = new ArrayList<>(batch.size());
+        for (PendingLog pendingLog : batch) {
+            if (pendingLog.body != null) {
+                pendingLog.record.setParams(parseParams(pendingLog));
+            }
+            if (pendingLog.user != null) {
+                pendingLog.record.setAuthentication(JSONObject.toJSONString(pendingLog.user));
+            }
+            records.add(pendingLog.record);
+        }
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(AccessLogCodec.CONTENT_TYPE);
+        amqpTemplate.send(QueueConstants.QUEUE_ACCESS_LOGS, new Message(AccessLogCodec.encode(records), properties));
+    }
+
+    /**
+     * 合并查询参数和请求体参数,与GatewayContext中的解析结果一致
+     *
+     * @param pendingLog
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> parseParams(PendingLog pendingLog) {
+        MultiValueMap<String, String> data = new LinkedMultiValueMap<>();
+        data.setAll((Map<String, String>) pendingLog.record.getParams());
+        GatewayContext.parseBody(pendingLog.body, pendingLog.bodyType, pendingLog.charset, data);
+        return data.toSingleValueMap();
+    }
+
+    @PostConstruct
+    public void start() {
+        BatchPublisher.OverflowPolicy overflowPolicy = BatchPublisher.OverflowPolicy.DROP;
+        try {
+            overflowPolicy = BatchPublisher.OverflowPolicy.valueOf(apiProperties.getAccessLogOverflowPolicy().toUpperCase());
+        } catch (Exception e) {
+            log.warn("unknown accessLogOverflowPolicy [{}], use DROP", apiProperties.getAccessLogOverflowPolicy());
+        }
+        publisher = new BatchPublisher<>("access-log-publisher",
+                apiProperties.getAccessLogQueueCapacity(),
+                apiProperties.getAccessLogBatchSize(),
+                apiProperties.getAccessLogLingerMs(),
+                overflowPolicy,
+                apiProperties.getAccessLogSampleRate(),
+                apiProperties.getAccessLogBlockTimeoutMs(),
+                this::send);
+        publisher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    /**
+     * 日志队列统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        return publisher == null ? Collections.emptyMap() : publisher.getStats();
+    }
+
+    /**
+     * 待发送日志,用户信息和未解析的请求体在发送线程中转换
+     */
+    private static final class PendingLog {
+        private final AccessLogRecord record;
+        private volatile Object user;
+        private byte[] body;
+        private GatewayContext.BodyType bodyType;
+        private Charset charset;
+
+        private PendingLog(AccessLogRecord record) {
+            this.record = record;
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package com.opencloud.gateway.spring.server.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.opencloud.base.client.model.entity.BaseApp;
+import com.opencloud.common.event.RemoteRefreshRouteEvent;
+import com.opencloud.common.model.ResultBody;
+import com.opencloud.gateway.spring.server.service.feign.BaseAppServiceClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationListener;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 应用信息本地缓存
+ * 验签时优先读取本地缓存,未命中时在elastic线程池中调用base-server,不阻塞IO线程;
+ * 到达刷新时间后后台重新加载,加载失败时继续使用旧值.
+ * 无效appId按较短时间缓存,避免随机appId的请求每次都访问base-server.
+ * 应用信息变更时由base-server发布网关刷新事件,收到后整体失效.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class AppCredentialCache implements ApplicationListener<RemoteRefreshRouteEvent> {
+
+    private final BaseAppServiceClient baseAppServiceClient;
+
+    private final Cache<String, Entry> cache;
+
+    /**
+     * 加载中的请求,同一appId并发未命中时只调用一次
+     */
+    private final ConcurrentMap<String, Mono<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final long expireMillis;
+
+    private final long refreshMillis;
+
+    private final long negativeExpireMillis;
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong loadExceptionCount = new AtomicLong();
+
+    /**
+     * @param baseAppServiceClient
+     * @param maximumSize           最大缓存数量
+     * @param expireSeconds         过期时间(秒),过期后重新加载
+     * @param refreshSeconds        刷新时间(秒),到期后后台加载
+     * @param negativeExpireSeconds 无效appId缓存时间(秒)
+     */
+    public AppCredentialCache(BaseAppServiceClient baseAppServiceClient, long maximumSize, long expireSeconds, long refreshSeconds, long negativeExpireSeconds) {
+        this.baseAppServiceClient = baseAppServiceClient;
+        this.expireMillis = TimeUnit.SECONDS.toMillis(expireSeconds);
+        this.refreshMillis = TimeUnit.SECONDS.toMillis(refreshSeconds);
+        this.negativeExpireMillis = TimeUnit.SECONDS.toMillis(negativeExpireSeconds);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Math.max(expireSeconds, negativeExpireSeconds), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取应用信息
+     *
+     * @param appId
+     * @return 应用不存在时为空
+     */
+    public Mono<BaseApp> getApp(String appId) {
+        long now = System.currentTimeMillis();
+        Entry entry = cache.getIfPresent(appId);
+        if (entry != null && now < entry.expiresAt) {
+            if (now >= entry.refreshAt) {
+                // 本次仍使用旧值,加载失败时保留旧值
+                load(appId).subscribe(e -> {
+                }, e -> log.warn("refresh app [{}] error:{}", appId, e.getMessage()));
+            }
+            return Mono.justOrEmpty(entry.app);
+        }
+        return load(appId).flatMap(e -> Mono.justOrEmpty(e.app));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 命中统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.size());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("loadCount", loadCount.get());
+        map.put("loadExceptionCount", loadExceptionCount.get());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    @Override
+    public void onApplicationEvent(RemoteRefreshRouteEvent event) {
+        invalidateAll();
+        log.debug("AppCredentialCache invalidated");
+    }
+
+    private Mono<Entry> load(String appId) {
+        return loading.computeIfAbsent(appId, key -> Mono.fromCallable(() -> fetch(key))
+                // Feign为阻塞调用,不占用IO线程
+                .subscribeOn(Schedulers.elastic())
+                // 结果通知调用方之前移除,之后的请求读取缓存或重新加载
+                .doOnNext(entry -> {
+                    cache.put(key, entry);
+                    loading.remove(key);
+                })
+                .doOnError(e -> {
+                    loadExceptionCount.incrementAndGet();
+                    loading.remove(key);
+                })
+                .cache());
+    }
+
+    private Entry fetch(String appId) {
+        loadCount.incrementAndGet();
+        ResultBody<BaseApp> result = baseAppServiceClient.getApp(appId);
+        BaseApp app = result != null ? result.getData() : null;
+        long now = System.currentTimeMillis();
+        if (app == null || app.getAppId() == null) {
+            // 无效appId短时间缓存,新增应用后最迟在该时间后可用
+            return new Entry(null, now + negativeExpireMillis, Long.MAX_VALUE);
+        }
+        return new Entry(app, now + expireMillis, now + refreshMillis);
+    }
+
+    private static final class Entry {
+        private final BaseApp app;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        private Entry(BaseApp app, long expiresAt, long refreshAt) {
+            this.app = app;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+    }
+}
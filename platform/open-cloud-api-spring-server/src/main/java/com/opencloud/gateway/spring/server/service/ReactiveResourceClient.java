@@ -0,0 +1,95 @@
+package com.opencloud.gateway.spring.server.service;
+
+import com.opencloud.base.client.model.AuthorityResource;
+import com.opencloud.base.client.model.IpLimitApi;
+import com.opencloud.common.model.ResultBody;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 非阻塞资源加载客户端
+ * 替代Feign阻塞调用,避免刷新时占用Netty事件循环线程
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class ReactiveResourceClient {
+
+    private static final ParameterizedTypeReference<ResultBody<List<AuthorityResource>>> AUTHORITY_RESOURCE_TYPE = new ParameterizedTypeReference<ResultBody<List<AuthorityResource>>>() {
+    };
+
+    private static final ParameterizedTypeReference<ResultBody<List<IpLimitApi>>> IP_LIMIT_API_TYPE = new ParameterizedTypeReference<ResultBody<List<IpLimitApi>>>() {
+    };
+
+    /**
+     * 首次重试间隔
+     */
+    private static final Duration FIRST_BACKOFF = Duration.ofMillis(200);
+
+    private final WebClient webClient;
+
+    private final Duration timeout;
+
+    private final long retries;
+
+    /**
+     * @param webClient 已指向base-server的WebClient
+     * @param timeout   单次请求超时时间
+     * @param retries   失败重试次数
+     */
+    public ReactiveResourceClient(WebClient webClient, Duration timeout, long retries) {
+        this.webClient = webClient;
+        this.timeout = timeout;
+        this.retries = retries;
+    }
+
+    /**
+     * 获取所有访问权限列表
+     *
+     * @return
+     */
+    public Mono<List<AuthorityResource>> findAuthorityResource() {
+        return get("/authority/access", AUTHORITY_RESOURCE_TYPE);
+    }
+
+    /**
+     * 获取接口黑名单列表
+     *
+     * @return
+     */
+    public Mono<List<IpLimitApi>> getApiBlackList() {
+        return get("/gateway/api/blackList", IP_LIMIT_API_TYPE);
+    }
+
+    /**
+     * 获取接口白名单列表
+     *
+     * @return
+     */
+    public Mono<List<IpLimitApi>> getApiWhiteList() {
+        return get("/gateway/api/whiteList", IP_LIMIT_API_TYPE);
+    }
+
+    private <T> Mono<List<T>> get(String uri, ParameterizedTypeReference<ResultBody<List<T>>> type) {
+        return webClient.get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(type)
+                .flatMap(result -> {
+                    if (!result.isOk() || result.getData() == null) {
+                        return Mono.error(new IllegalStateException(uri + " " + result.getMessage()));
+                    }
+                    return Mono.just(result.getData());
+                })
+                .timeout(timeout)
+                .retryBackoff(retries, FIRST_BACKOFF)
+                .doOnError(e -> log.warn("load {} failed:{}", uri, e.getMessage()));
+    }
+}
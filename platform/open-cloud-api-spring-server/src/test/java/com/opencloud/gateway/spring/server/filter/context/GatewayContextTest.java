@@ -0,0 +1,42 @@
+package com.opencloud.gateway.spring.server.filter.context;
+
+import org.junit.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class GatewayContextTest {
+
+    @Test
+    public void parsedRequestDataDoesNotParseBody() {
+        GatewayContext context = new GatewayContext();
+        context.getAllRequestData().add("q", "1");
+        context.cacheBody("{\"name\":\"a\"}".getBytes(StandardCharsets.UTF_8), GatewayContext.BodyType.JSON, null);
+        assertEquals(1, context.getParsedRequestData().size());
+        assertFalse(context.isBodyParsed());
+        assertEquals("a", context.getAllRequestData().getFirst("name"));
+        assertTrue(context.isBodyParsed());
+        assertEquals(2, context.getParsedRequestData().size());
+    }
+
+    @Test
+    public void staticParseMatchesContext() {
+        byte[] form = "name=a&q=2".getBytes(StandardCharsets.UTF_8);
+        GatewayContext context = new GatewayContext();
+        context.getAllRequestData().add("q", "1");
+        context.cacheBody(form, GatewayContext.BodyType.FORM, StandardCharsets.UTF_8);
+
+        MultiValueMap<String, String> data = new LinkedMultiValueMap<>();
+        data.add("q", "1");
+        MultiValueMap<String, String> formData = GatewayContext.parseBody(form, GatewayContext.BodyType.FORM, StandardCharsets.UTF_8, data);
+        assertEquals(context.getFormData(), formData);
+        assertEquals(context.getAllRequestData().toSingleValueMap(), data.toSingleValueMap());
+        assertEquals("1", data.getFirst("q"));
+    }
+}
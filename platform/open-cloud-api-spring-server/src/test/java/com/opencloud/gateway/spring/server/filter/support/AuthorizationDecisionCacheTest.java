@@ -0,0 +1,62 @@
+package com.opencloud.gateway.spring.server.filter.support;
+
+import com.opencloud.common.security.OpenAuthority;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class AuthorizationDecisionCacheTest {
+
+    private final AuthorizationDecisionCache cache = new AuthorizationDecisionCache(100, 60);
+
+    @Test
+    public void sameAuthoritiesInAnyOrderShareKey() {
+        Authentication a = authentication(new OpenAuthority("API_a"), new OpenAuthority("API_b"));
+        Authentication b = authentication(new OpenAuthority("API_b"), new OpenAuthority("API_a"));
+        assertEquals(cache.key("/user/{id}", a), cache.key("/user/{id}", b));
+        assertEquals(cache.key(null, a), cache.key(null, b));
+        assertNotEquals(cache.key("/user/{id}", a), cache.key("/user/list", a));
+        assertNotEquals(cache.key("/user/{id}", a), cache.key("/user/{id}", authentication(new OpenAuthority("API_a"))));
+    }
+
+    @Test
+    public void decisionIsSharedByPattern() {
+        Authentication a = authentication(new OpenAuthority("API_a"));
+        cache.put(1, cache.key("/user/{id}", a), AuthorizationDecisionCache.Decision.GRANTED);
+        assertEquals(AuthorizationDecisionCache.Decision.GRANTED, cache.get(1, cache.key("/user/{id}", a)));
+        assertNull(cache.get(1, cache.key("/user/list", a)));
+        // 资源快照更新后整体失效
+        assertNull(cache.get(2, cache.key("/user/{id}", a)));
+    }
+
+    @Test
+    public void expiringAuthorityChangesFingerprint() throws InterruptedException {
+        OpenAuthority expiring = new OpenAuthority("API_a");
+        expiring.setExpireTime(new Date(System.currentTimeMillis() + 50));
+        Authentication a = authentication(expiring);
+        AuthorizationDecisionCache.Key before = cache.key("/user/{id}", a);
+        assertEquals(before, cache.key("/user/{id}", a));
+        Thread.sleep(100);
+        AuthorizationDecisionCache.Key after = cache.key("/user/{id}", a);
+        assertNotEquals(before, after);
+
+        OpenAuthority expired = new OpenAuthority("API_a");
+        expired.setExpireTime(new Date(System.currentTimeMillis() - 1000));
+        assertEquals(after, cache.key("/user/{id}", authentication(expired)));
+    }
+
+    private static Authentication authentication(GrantedAuthority... authorities) {
+        List<GrantedAuthority> list = Arrays.asList(authorities);
+        return new UsernamePasswordAuthenticationToken("user", null, list);
+    }
+}
@@ -0,0 +1,167 @@
+package com.opencloud.gateway.spring.server.filter.support;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 使用同步返回的Redis模拟对象,租约和对账在请求线程内完成
+ *
+ * @author liuyadu
+ */
+public class HybridRateLimiterTest {
+
+    private static final String ROUTE = "route";
+
+    private static final String CLIENT = "client";
+
+    private static final long QUOTA = 100;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    /**
+     * 模拟Redis中的全局计数器
+     */
+    private final AtomicLong counter = new AtomicLong();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(ReactiveStringRedisTemplate.class);
+        valueOperations = mock(ReactiveValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment(anyString(), anyLong())).thenAnswer(invocation -> Mono.fromSupplier(() -> counter.addAndGet(invocation.<Long>getArgument(1))));
+        when(redisTemplate.expire(anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+    }
+
+    @Test
+    public void allowsWithoutConfig() {
+        HybridRateLimiter limiter = new HybridRateLimiter(redisTemplate, 0.1, 100, null);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.isAllowed(ROUTE, CLIENT).block().isAllowed());
+        }
+        verifyZeroInteractions(valueOperations);
+    }
+
+    @Test
+    public void leasesBatchesUntilGlobalQuota() {
+        // 两个节点共享Redis计数器
+        HybridRateLimiter node1 = newLimiter(redisTemplate);
+        HybridRateLimiter node2 = newLimiter(redisTemplate);
+        long allowed = 0;
+        for (int i = 0; i < QUOTA * 3; i++) {
+            allowed += allowed(i % 2 == 0 ? node1 : node2);
+        }
+        assertEquals(QUOTA, allowed);
+        // 10个批次发放完配额,之后每个节点各有一次未获得令牌的租用,随后不再续租
+        assertEquals(120, counter.get());
+        verify(valueOperations, times(12)).increment(anyString(), eq(10L));
+        // 只在窗口第一次写入时设置过期时间
+        verify(redisTemplate, times(1)).expire(anyString(), eq(Duration.ofSeconds(3601)));
+        assertEquals(0L, node1.getStats().get("leaseErrorCount"));
+    }
+
+    @Test
+    public void remainingHeaderCountsDownLocally() {
+        HybridRateLimiter limiter = newLimiter(redisTemplate);
+        RateLimiter.Response response = limiter.isAllowed(ROUTE, CLIENT).block();
+        assertTrue(response.isAllowed());
+        assertEquals("9", response.getHeaders().get(HybridRateLimiter.REMAINING_HEADER));
+        // 剩余不足半个批次前不访问Redis
+        for (int i = 0; i < 3; i++) {
+            limiter.isAllowed(ROUTE, CLIENT).block();
+        }
+        verify(valueOperations, times(1)).increment(anyString(), anyLong());
+    }
+
+    @Test
+    public void reconcileReclaimsPrepaidBatch() {
+        // 其他节点已用掉大部分配额
+        counter.set(QUOTA - 5);
+        HybridRateLimiter limiter = newLimiter(redisTemplate);
+        long allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            allowed += allowed(limiter);
+        }
+        // 预支的10个令牌对账后只保留5个
+        assertEquals(5, allowed);
+        assertEquals(15L, limiter.getStats().get("deniedCount"));
+        verify(valueOperations, times(1)).increment(anyString(), anyLong());
+    }
+
+    @Test
+    public void reconcileDeniesWhenQuotaUsedElsewhere() {
+        counter.set(QUOTA);
+        HybridRateLimiter limiter = newLimiter(redisTemplate);
+        for (int i = 0; i < 20; i++) {
+            assertFalse(limiter.isAllowed(ROUTE, CLIENT).block().isAllowed());
+        }
+        verify(valueOperations, times(1)).increment(anyString(), anyLong());
+    }
+
+    @Test
+    public void redisDownFallsBackToLocalQuota() {
+        reset(valueOperations);
+        when(valueOperations.increment(anyString(), anyLong())).thenReturn(Mono.error(new RedisConnectionFailureException("connection refused")));
+        HybridRateLimiter limiter = newLimiter(redisTemplate);
+        long allowed = 0;
+        for (int i = 0; i < QUOTA * 3; i++) {
+            allowed += allowed(limiter);
+        }
+        // 单节点放行数不超过全局配额
+        assertEquals(QUOTA, allowed);
+        Object leaseCount = limiter.getStats().get("leaseCount");
+        assertTrue((Long) leaseCount > 0);
+        assertEquals(leaseCount, limiter.getStats().get("leaseErrorCount"));
+    }
+
+    @Test
+    public void localOnlyWithoutRedis() {
+        HybridRateLimiter limiter = newLimiter(null);
+        long allowed = 0;
+        for (int i = 0; i < QUOTA * 3; i++) {
+            allowed += allowed(limiter);
+        }
+        assertEquals(QUOTA, allowed);
+        assertEquals(0L, limiter.getStats().get("leaseErrorCount"));
+        assertEquals(1L, limiter.getStats().get("buckets"));
+    }
+
+    @Test
+    public void quotaChangeStartsNewWindow() {
+        counter.set(QUOTA);
+        HybridRateLimiter limiter = newLimiter(redisTemplate);
+        assertFalse(limiter.isAllowed(ROUTE, CLIENT).block().isAllowed());
+        limiter.getConfig().get(ROUTE).setQuota(QUOTA * 2);
+        assertTrue(limiter.isAllowed(ROUTE, CLIENT).block().isAllowed());
+    }
+
+    private static HybridRateLimiter newLimiter(ReactiveStringRedisTemplate redisTemplate) {
+        HybridRateLimiter limiter = new HybridRateLimiter(redisTemplate, 0.1, 100, null);
+        HybridRateLimiter.Config config = new HybridRateLimiter.Config();
+        config.setQuota(QUOTA);
+        config.setInterval(3600);
+        config.setTtl(3600);
+        limiter.getConfig().put(ROUTE, config);
+        return limiter;
+    }
+
+    private static long allowed(HybridRateLimiter limiter) {
+        return limiter.isAllowed(ROUTE, CLIENT).block().isAllowed() ? 1 : 0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class IncrementalRouteLocatorTest {
+
+    private final List<String> converted = new ArrayList<>();
+
+    private volatile List<RouteDefinition> definitions = new ArrayList<>();
+
+    private final IncrementalRouteLocator locator = new IncrementalRouteLocator(() -> Flux.fromIterable(definitions), batch -> () -> Flux.fromIterable(batch).map(definition -> {
+        converted.add(definition.getId());
+        return Route.async()
+                .id(definition.getId())
+                .uri(definition.getUri())
+                .asyncPredicate(exchange -> Mono.just(true))
+                .build();
+    }));
+
+    @Test
+    public void rebuildsOnlyChangedDefinitions() {
+        RouteDefinition a = definition("a");
+        RouteDefinition b = definition("b");
+        RouteDefinition c = definition("c");
+        definitions = Arrays.asList(a, b, c);
+        List<Route> first = locator.getRoutes().collectList().block();
+        assertEquals(Arrays.asList("a", "b", "c"), converted);
+        assertEquals(3, first.size());
+
+        // b修改,c删除,d新增,a不变
+        converted.clear();
+        RouteDefinition b2 = definition("b");
+        RouteDefinition d = definition("d");
+        definitions = Arrays.asList(d, a, b2);
+        List<Route> second = locator.getRoutes().collectList().block();
+        assertEquals(Arrays.asList("d", "b"), converted);
+        assertEquals(Arrays.asList("d", "a", "b"), ids(second));
+        assertSame(first.get(0), second.get(1));
+        assertNotSame(first.get(1), second.get(2));
+
+        // 没有变化时不重新构建
+        converted.clear();
+        List<Route> third = locator.getRoutes().collectList().block();
+        assertTrue(converted.isEmpty());
+        for (int i = 0; i < second.size(); i++) {
+            assertSame(second.get(i), third.get(i));
+        }
+        assertEquals(3, locator.getStats().get("size"));
+        assertEquals(5L, locator.getStats().get("builtCount"));
+        assertEquals(4L, locator.getStats().get("reusedCount"));
+    }
+
+    @Test
+    public void removedDefinitionIsRebuiltWhenAddedBack() {
+        RouteDefinition a = definition("a");
+        definitions = Arrays.asList(a);
+        locator.getRoutes().collectList().block();
+        definitions = new ArrayList<>();
+        assertTrue(locator.getRoutes().collectList().block().isEmpty());
+        converted.clear();
+        definitions = Arrays.asList(a);
+        assertEquals(1, locator.getRoutes().collectList().block().size());
+        assertEquals(Arrays.asList("a"), converted);
+    }
+
+    private static RouteDefinition definition(String id) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setUri(URI.create("lb://" + id));
+        return definition;
+    }
+
+    private static List<String> ids(List<Route> routes) {
+        List<String> ids = new ArrayList<>();
+        routes.forEach(route -> ids.add(route.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,203 @@
+package com.opencloud.gateway.spring.server.locator;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.cloud.gateway.config.GatewayAutoConfiguration;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class IndexedRoutePredicateHandlerMappingTest {
+
+    private static final int ROUTES = 20;
+
+    /**
+     * 当前版本的路由,刷新时整体替换
+     */
+    private volatile int version;
+
+    private volatile List<Route> routes = buildRoutes(0);
+
+    private final List<RouteDefinition> definitions = buildDefinitions();
+
+    private final CachingRouteLocator routeLocator = new CachingRouteLocator(() -> Flux.fromIterable(routes));
+
+    private final IndexedRoutePredicateHandlerMapping handlerMapping = new IndexedRoutePredicateHandlerMapping(
+            new FilteringWebHandler(Collections.emptyList()), routeLocator, () -> Flux.fromIterable(definitions),
+            new GlobalCorsProperties(), new StandardEnvironment());
+
+    @Test
+    public void lookupUsesIndexAfterBuild() {
+        Route route = lookup("/svc3/users");
+        assertEquals("r3", route.getId());
+        assertEquals(true, handlerMapping.getStats().get("ready"));
+        assertEquals(ROUTES, handlerMapping.getStats().get("indexed"));
+        assertEquals("r7", lookup("/svc7/users").getId());
+        assertNull(handlerMapping.lookupRoute(exchange("/unknown")).block());
+    }
+
+    @Test
+    public void defaultHandlerMappingIsRemoved() {
+        DefaultListableBeanFactory registry = new DefaultListableBeanFactory();
+        GenericBeanDefinition definition = new GenericBeanDefinition();
+        definition.setFactoryBeanName(GatewayAutoConfiguration.class.getName());
+        definition.setFactoryMethodName(RoutePredicateHandlerMappingPostProcessor.HANDLER_MAPPING_BEAN_NAME);
+        registry.registerBeanDefinition(RoutePredicateHandlerMappingPostProcessor.HANDLER_MAPPING_BEAN_NAME, definition);
+        new RoutePredicateHandlerMappingPostProcessor().postProcessBeanDefinitionRegistry(registry);
+        assertFalse(registry.containsBeanDefinition(RoutePredicateHandlerMappingPostProcessor.HANDLER_MAPPING_BEAN_NAME));
+
+        // 自定义的同名定义保留
+        GenericBeanDefinition custom = new GenericBeanDefinition();
+        custom.setBeanClass(IndexedRoutePredicateHandlerMapping.class);
+        registry.registerBeanDefinition(RoutePredicateHandlerMappingPostProcessor.HANDLER_MAPPING_BEAN_NAME, custom);
+        new RoutePredicateHandlerMappingPostProcessor().postProcessBeanDefinitionRegistry(registry);
+        assertTrue(registry.containsBeanDefinition(RoutePredicateHandlerMappingPostProcessor.HANDLER_MAPPING_BEAN_NAME));
+    }
+
+    /**
+     * 本监听先于CachingRouteLocator收到刷新事件,期间的请求不能用旧路由构建索引
+     */
+    @Test
+    public void lookupBetweenRefreshListenersDoesNotKeepStaleIndex() {
+        assertEquals(uri(0), lookup("/svc3/users").getUri());
+
+        refreshRoutes(1);
+        RefreshRoutesEvent event = new RefreshRoutesEvent(this);
+        handlerMapping.onApplicationEvent(event);
+        // CachingRouteLocator尚未处理事件时的请求
+        assertEquals(uri(1), lookup("/svc3/users").getUri());
+        routeLocator.refresh();
+
+        assertEquals(true, handlerMapping.getStats().get("ready"));
+        for (int i = 0; i < ROUTES; i++) {
+            assertEquals(uri(1), lookup("/svc" + i + "/users").getUri());
+        }
+    }
+
+    @Test
+    public void refreshDuringConcurrentLookups() throws Exception {
+        int threads = 4;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger lookups = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    int i = offset;
+                    while (running.get()) {
+                        int n = i++ % ROUTES;
+                        int before = version;
+                        Route route = lookup("/svc" + n + "/users");
+                        int after = version;
+                        // 每个版本都包含全部路由,只允许匹配到请求期间存在过的版本
+                        assertEquals("r" + n, route.getId());
+                        int matched = Integer.parseInt(route.getUri().getHost().substring(1));
+                        assertTrue("stale route v" + matched + " outside [" + before + "," + after + "]", matched >= before - 1 && matched <= after);
+                        lookups.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        for (int v = 1; v <= 200; v++) {
+            refreshRoutes(v);
+            RefreshRoutesEvent event = new RefreshRoutesEvent(this);
+            handlerMapping.onApplicationEvent(event);
+            routeLocator.refresh();
+            Thread.sleep(1);
+        }
+        running.set(false);
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(lookups.get() > 0);
+
+        // 刷新结束后索引必须对应最后一个版本
+        lookup("/svc0/users");
+        assertEquals(true, handlerMapping.getStats().get("ready"));
+        for (int i = 0; i < ROUTES; i++) {
+            assertEquals(uri(200), lookup("/svc" + i + "/users").getUri());
+        }
+    }
+
+    private void refreshRoutes(int next) {
+        // 先更新版本号,请求结束后读到的版本号不小于匹配到的路由版本
+        version = next;
+        routes = buildRoutes(next);
+    }
+
+    private Route lookup(String path) {
+        Route route = handlerMapping.lookupRoute(exchange(path)).block();
+        assertNotNull(path, route);
+        return route;
+    }
+
+    private static MockServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path).build());
+    }
+
+    private static URI uri(int version) {
+        return URI.create("http://v" + version);
+    }
+
+    private static List<Route> buildRoutes(int version) {
+        List<Route> list = new ArrayList<>();
+        for (int i = 0; i < ROUTES; i++) {
+            String prefix = "/svc" + i + "/";
+            list.add(Route.async()
+                    .id("r" + i)
+                    .uri(uri(version))
+                    .asyncPredicate(exchange -> Mono.just(exchange.getRequest().getPath().value().startsWith(prefix)))
+                    .build());
+        }
+        return list;
+    }
+
+    private static List<RouteDefinition> buildDefinitions() {
+        List<RouteDefinition> list = new ArrayList<>();
+        for (int i = 0; i < ROUTES; i++) {
+            RouteDefinition definition = new RouteDefinition();
+            definition.setId("r" + i);
+            definition.setUri(URI.create("lb://svc" + i));
+            PredicateDefinition predicate = new PredicateDefinition();
+            predicate.setName("Path");
+            predicate.setArgs(Collections.singletonMap("pattern", "/svc" + i + "/**"));
+            definition.setPredicates(Collections.singletonList(predicate));
+            list.add(definition);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,68 @@
+package com.opencloud.gateway.spring.server.service;
+
+import com.opencloud.base.client.model.entity.BaseApp;
+import com.opencloud.common.model.ResultBody;
+import com.opencloud.gateway.spring.server.service.feign.BaseAppServiceClient;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author liuyadu
+ */
+public class AppCredentialCacheTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final BaseAppServiceClient client = mock(BaseAppServiceClient.class);
+
+    private final AppCredentialCache cache = new AppCredentialCache(client, 100, 600, 60, 10);
+
+    @Test
+    public void loadsOffCallerThreadAndCachesApp() {
+        AtomicReference<Thread> loader = new AtomicReference<>();
+        when(client.getApp("app")).thenAnswer(invocation -> {
+            loader.set(Thread.currentThread());
+            return ResultBody.ok().data(app("app"));
+        });
+        BaseApp app = cache.getApp("app").block(TIMEOUT);
+        assertEquals("secret", app.getSecretKey());
+        assertNotSame(Thread.currentThread(), loader.get());
+        assertSame(app, cache.getApp("app").block(TIMEOUT));
+        verify(client, times(1)).getApp("app");
+    }
+
+    @Test
+    public void unknownAppIdIsCachedAsNegative() {
+        when(client.getApp(anyString())).thenReturn(ResultBody.ok());
+        assertNull(cache.getApp("unknown").block(TIMEOUT));
+        assertNull(cache.getApp("unknown").block(TIMEOUT));
+        verify(client, times(1)).getApp("unknown");
+        assertEquals(1L, cache.getStats().get("loadCount"));
+    }
+
+    @Test
+    public void loadFailureIsNotCached() {
+        when(client.getApp("app")).thenThrow(new IllegalStateException("base-server down")).thenReturn(ResultBody.ok().data(app("app")));
+        try {
+            cache.getApp("app").block(TIMEOUT);
+            fail("expected load failure");
+        } catch (IllegalStateException e) {
+            assertEquals("base-server down", e.getMessage());
+        }
+        assertNotNull(cache.getApp("app").block(TIMEOUT));
+        assertEquals(1L, cache.getStats().get("loadExceptionCount"));
+    }
+
+    private static BaseApp app(String appId) {
+        BaseApp app = new BaseApp();
+        app.setAppId(appId);
+        app.setSecretKey("secret");
+        return app;
+    }
+}
@@ -2,9 +2,14 @@ package com.opencloud.gateway.zuul.server.actuator;
 
 import com.opencloud.common.event.RemoteRefreshRouteEvent;
 import com.opencloud.common.model.ResultBody;
+import com.opencloud.gateway.zuul.server.configuration.IndexedRateLimitProperties;
+import com.opencloud.gateway.zuul.server.locator.JdbcRouteLocator;
+import com.opencloud.gateway.zuul.server.service.AccessLogService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.endpoint.web.annotation.RestControllerEndpoint;
 import org.springframework.cloud.bus.endpoint.AbstractBusEndpoint;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
@@ -18,6 +23,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 )
 public class ApiEndpoint extends AbstractBusEndpoint {
 
+    @Autowired(required = false)
+    private AccessLogService accessLogService;
+
+    @Autowired(required = false)
+    private IndexedRateLimitProperties rateLimitProperties;
+
+    @Autowired(required = false)
+    private JdbcRouteLocator jdbcRouteLocator;
+
     public ApiEndpoint(ApplicationEventPublisher context, String id) {
         super(context, id);
     }
@@ -33,4 +47,25 @@ public class ApiEndpoint extends AbstractBusEndpoint {
         this.publish(new RemoteRefreshRouteEvent(this, this.getInstanceId(), destination));
         return ResultBody.ok();
     }
+
+    /**
+     * 网关运行统计
+     * /actuator/open/stats
+     *
+     * @return
+     */
+    @GetMapping("/stats")
+    public ResultBody stats() {
+        ResultBody resultBody = ResultBody.ok();
+        if (accessLogService != null) {
+            resultBody.put("accessLog", accessLogService.getStats());
+        }
+        if (jdbcRouteLocator != null) {
+            resultBody.put("route", jdbcRouteLocator.getStats());
+        }
+        if (rateLimitProperties != null) {
+            resultBody.put("rateLimitPolicy", rateLimitProperties.getPolicyIndex().getStats());
+        }
+        return resultBody;
+    }
 }
@@ -42,6 +42,47 @@ public class ApiProperties {
      */
     private Set<String> signIgnores;
 
+    /**
+     * 是否流式转发请求体,只有解析参数时才缓存;false时每个请求都读入内存
+     * 流式转发时访问日志只记录已缓存的请求体参数,其余JSON请求体不记录
+     */
+    private Boolean requestBodyStreaming = true;
+
+    /**
+     * 请求体内存缓存上限(字节),超出部分写入临时文件
+     */
+    private Integer requestBodyBufferSize = 64 * 1024;
+
+    /**
+     * 访问日志队列容量
+     */
+    private Integer accessLogQueueCapacity = 8192;
+
+    /**
+     * 访问日志每批最大数量
+     */
+    private Integer accessLogBatchSize = 100;
+
+    /**
+     * 访问日志未满一批时最长等待时间(毫秒)
+     */
+    private Long accessLogLingerMs = 200L;
+
+    /**
+     * 访问日志队列满时处理策略:DROP(丢弃) SAMPLE(采样) BLOCK(等待)
+     */
+    private String accessLogOverflowPolicy = "DROP";
+
+    /**
+     * 访问日志采样比例,SAMPLE策略下队列超过3/4后每N条保留1条
+     */
+    private Integer accessLogSampleRate = 10;
+
+    /**
+     * 访问日志BLOCK策略最长等待时间(毫秒)
+     */
+    private Long accessLogBlockTimeoutMs = 10L;
+
     public Boolean getCheckSign() {
         return checkSign;
     }
@@ -89,4 +130,68 @@ public class ApiProperties {
     public void setSignIgnores(Set<String> signIgnores) {
         this.signIgnores = signIgnores;
     }
+
+    public Boolean getRequestBodyStreaming() {
+        return requestBodyStreaming;
+    }
+
+    public void setRequestBodyStreaming(Boolean requestBodyStreaming) {
+        this.requestBodyStreaming = requestBodyStreaming;
+    }
+
+    public Integer getRequestBodyBufferSize() {
+        return requestBodyBufferSize;
+    }
+
+    public void setRequestBodyBufferSize(Integer requestBodyBufferSize) {
+        this.requestBodyBufferSize = requestBodyBufferSize;
+    }
+
+    public Integer getAccessLogQueueCapacity() {
+        return accessLogQueueCapacity;
+    }
+
+    public void setAccessLogQueueCapacity(Integer accessLogQueueCapacity) {
+        this.accessLogQueueCapacity = accessLogQueueCapacity;
+    }
+
+    public Integer getAccessLogBatchSize() {
+        return accessLogBatchSize;
+    }
+
+    public void setAccessLogBatchSize(Integer accessLogBatchSize) {
+        this.accessLogBatchSize = accessLogBatchSize;
+    }
+
+    public Long getAccessLogLingerMs() {
+        return accessLogLingerMs;
+    }
+
+    public void setAccessLogLingerMs(Long accessLogLingerMs) {
+        this.accessLogLingerMs = accessLogLingerMs;
+    }
+
+    public String getAccessLogOverflowPolicy() {
+        return accessLogOverflowPolicy;
+    }
+
+    public void setAccessLogOverflowPolicy(String accessLogOverflowPolicy) {
+        this.accessLogOverflowPolicy = accessLogOverflowPolicy;
+    }
+
+    public Integer getAccessLogSampleRate() {
+        return accessLogSampleRate;
+    }
+
+    public void setAccessLogSampleRate(Integer accessLogSampleRate) {
+        this.accessLogSampleRate = accessLogSampleRate;
+    }
+
+    public Long getAccessLogBlockTimeoutMs() {
+        return accessLogBlockTimeoutMs;
+    }
+
+    public void setAccessLogBlockTimeoutMs(Long accessLogBlockTimeoutMs) {
+        this.accessLogBlockTimeoutMs = accessLogBlockTimeoutMs;
+    }
 }
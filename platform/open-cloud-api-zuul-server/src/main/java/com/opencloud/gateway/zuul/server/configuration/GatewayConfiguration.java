@@ -18,6 +18,7 @@ import org.springframework.boot.actuate.autoconfigure.endpoint.condition.Conditi
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.cloud.bus.BusProperties;
@@ -26,6 +27,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.core.Ordered;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.cors.CorsConfiguration;
@@ -94,6 +96,21 @@ public class GatewayConfiguration {
         return zuulFilter;
     }
 
+    /**
+     * 限流配置,按路由和URL前缀索引限流策略
+     * 静态方法,避免与本配置类注入的限流配置循环依赖
+     *
+     * @return
+     */
+    @Bean
+    @Primary
+    @ConfigurationProperties(prefix = "zuul.ratelimit")
+    public static IndexedRateLimitProperties indexedRateLimitProperties() {
+        IndexedRateLimitProperties rateLimitProperties = new IndexedRateLimitProperties();
+        log.info("IndexedRateLimitProperties [{}]", rateLimitProperties);
+        return rateLimitProperties;
+    }
+
     /**
      * 资源加载器
      *
@@ -0,0 +1,75 @@
+package com.opencloud.gateway.zuul.server.configuration;
+
+import com.marcosbarbero.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.netflix.zuul.context.RequestContext;
+import com.opencloud.gateway.zuul.server.locator.RateLimitPolicyIndex;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 限流配置
+ * 限流过滤器按路由ID获取策略后逐条匹配请求地址,这里按当前请求从索引中只返回可能生效的策略,
+ * 最终是否生效仍由限流组件判断.设置策略时重建索引,整体替换.
+ *
+ * @author liuyadu
+ */
+public class IndexedRateLimitProperties extends RateLimitProperties {
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    /**
+     * 策略解析结果缓存数量
+     */
+    private long policyCacheSize = 10000;
+
+    /**
+     * 路由ID对应的路由前缀
+     */
+    private volatile Map<String, String> routePrefixes = Collections.emptyMap();
+
+    private volatile RateLimitPolicyIndex policyIndex = RateLimitPolicyIndex.EMPTY;
+
+    @Override
+    public void setPolicyList(Map<String, List<Policy>> policyList) {
+        super.setPolicyList(policyList);
+        this.policyIndex = RateLimitPolicyIndex.build(policyList, routePrefixes, policyCacheSize);
+    }
+
+    @Override
+    public List<Policy> getPolicies(String key) {
+        List<Policy> policies = super.getPolicies(key);
+        if (policies == null || policies.isEmpty()) {
+            return policies;
+        }
+        HttpServletRequest request = RequestContext.getCurrentContext().getRequest();
+        if (request == null) {
+            return policies;
+        }
+        return policyIndex.resolve(key, urlPathHelper.getPathWithinApplication(request), policies);
+    }
+
+    public RateLimitPolicyIndex getPolicyIndex() {
+        return policyIndex;
+    }
+
+    /**
+     * 路由前缀需在设置策略前更新
+     *
+     * @param routePrefixes
+     */
+    public void setRoutePrefixes(Map<String, String> routePrefixes) {
+        this.routePrefixes = routePrefixes == null ? Collections.emptyMap() : routePrefixes;
+    }
+
+    public long getPolicyCacheSize() {
+        return policyCacheSize;
+    }
+
+    public void setPolicyCacheSize(long policyCacheSize) {
+        this.policyCacheSize = policyCacheSize;
+    }
+}
@@ -79,7 +79,7 @@ public class ResourceServerConfiguration extends ResourceServerConfigurerAdapter
                 .and()
                 .csrf().disable();
         // 日志前置过滤器
-        http.addFilterBefore(new PreRequestFilter(), AbstractPreAuthenticatedProcessingFilter.class);
+        http.addFilterBefore(new PreRequestFilter(apiProperties), AbstractPreAuthenticatedProcessingFilter.class);
         // 签名验证过滤器
         http.addFilterAfter(new PreSignatureFilter(baseAppServiceClient, apiProperties,new JsonSignatureDeniedHandler(accessLogService)), AbstractPreAuthenticatedProcessingFilter.class);
         // 访问验证前置过滤器
@@ -3,9 +3,9 @@ package com.opencloud.gateway.zuul.server.filter;
 import com.opencloud.gateway.zuul.server.configuration.ApiProperties;
 import com.opencloud.gateway.zuul.server.locator.ResourceLocator;
 import com.opencloud.base.client.model.AuthorityResource;
-import com.opencloud.base.client.model.IpLimitApi;
 import com.opencloud.common.constants.CommonConstants;
 import com.opencloud.common.constants.ErrorCode;
+import com.opencloud.common.matcher.PathPatternTrie;
 import com.opencloud.common.security.OpenAuthority;
 import com.opencloud.common.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -14,9 +14,7 @@ import org.springframework.security.access.ConfigAttribute;
 import org.springframework.security.access.SecurityConfig;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.*;
@@ -34,12 +32,20 @@ public class AccessManager {
 
     private ApiProperties apiProperties;
 
-    private static final AntPathMatcher pathMatch = new AntPathMatcher();
-
     private Set<String> permitAll = new HashSet<>();
 
     private Set<String> authorityIgnores = new HashSet<>();
 
+    /**
+     * 始终放行路径索引
+     */
+    private final PathPatternTrie<String> permitAllIndex = new PathPatternTrie<>();
+
+    /**
+     * 忽略鉴权路径索引
+     */
+    private final PathPatternTrie<String> authorityIgnoresIndex = new PathPatternTrie<>();
+
 
     public AccessManager(ResourceLocator resourceLocator, ApiProperties apiProperties) {
         this.apiProperties = apiProperties;
@@ -59,6 +65,8 @@ public class AccessManager {
                 authorityIgnores.addAll(apiProperties.getAuthorityIgnores());
             }
         }
+        permitAll.forEach(path -> permitAllIndex.put(path, path));
+        authorityIgnores.forEach(path -> authorityIgnoresIndex.put(path, path));
     }
 
     /**
@@ -88,28 +96,11 @@ public class AccessManager {
      * @return
      */
     public boolean permitAll(String requestPath) {
-        Iterator<String> it = permitAll.iterator();
-        while (it.hasNext()) {
-            String path = it.next();
-            if (pathMatch.match(path, requestPath)) {
-                return true;
-            }
+        if (permitAllIndex.matches(requestPath)) {
+            return true;
         }
         // 动态权限列表
-        List<AuthorityResource> authorityList = resourceLocator.getAuthorityResources();
-        if (authorityList != null) {
-            Iterator<AuthorityResource> it2 = authorityList.iterator();
-            while (it2.hasNext()) {
-                AuthorityResource auth = it2.next();
-                Boolean isAuth = auth.getIsAuth() != null && auth.getIsAuth().equals(1) ? true : false;
-                String fullPath = auth.getPath();
-                // 无需认证,返回true
-                if (StringUtils.isNotBlank(fullPath) && pathMatch.match(fullPath, requestPath) && !isAuth) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return resourceLocator.getAuthorityIndex().isPermitAll(requestPath);
     }
 
     /**
@@ -119,19 +110,11 @@ public class AccessManager {
      * @return
      */
     public AuthorityResource getResource(String requestPath) {
-        // 动态权限列表
-        List<AuthorityResource> authorityList = resourceLocator.getAuthorityResources();
-        if (authorityList != null) {
-            Iterator<AuthorityResource> it2 = authorityList.iterator();
-            while (it2.hasNext()) {
-                AuthorityResource auth = it2.next();
-                String fullPath = auth.getPath();
-                if (!"/**".equals(fullPath) && !permitAll(requestPath) && StringUtils.isNotBlank(fullPath) && pathMatch.match(fullPath, requestPath)) {
-                    return auth;
-                }
-            }
+        if (permitAll(requestPath)) {
+            return null;
         }
-        return null;
+        // 动态权限列表
+        return resourceLocator.getAuthorityIndex().getResource(requestPath);
     }
 
     /**
@@ -141,14 +124,7 @@ public class AccessManager {
      * @return
      */
     public boolean authorityIgnores(String requestPath) {
-        Iterator<String> it = authorityIgnores.iterator();
-        while (it.hasNext()) {
-            String path = it.next();
-            if (pathMatch.match(path, requestPath)) {
-                return true;
-            }
-        }
-        return false;
+        return authorityIgnoresIndex.matches(requestPath);
     }
 
 
@@ -227,14 +203,10 @@ public class AccessManager {
      * @return
      */
     public Collection<ConfigAttribute> getAttributes(String requestPath) {
-        // 匹配动态权限
-        for (Iterator<String> iter = resourceLocator.getConfigAttributes().keySet().iterator(); iter.hasNext(); ) {
-            String url = iter.next();
-            // 防止匹配错误 忽略/**
-            if (!"/**".equals(url) && pathMatch.match(url, requestPath)) {
-                // 返回匹配到权限
-                return resourceLocator.getConfigAttributes().get(url);
-            }
+        // 匹配动态权限,忽略/**
+        Collection<ConfigAttribute> attributes = resourceLocator.getAuthorityIndex().getAttributes(requestPath);
+        if (attributes != null) {
+            return attributes;
         }
         return SecurityConfig.createList("AUTHORITIES_REQUIRED");
     }
@@ -249,18 +221,7 @@ public class AccessManager {
      * @return
      */
     public boolean matchIpOrOriginBlacklist(String requestPath, String ipAddress, String origin) {
-        List<IpLimitApi> blackList = resourceLocator.getIpBlacks();
-        if (blackList != null) {
-            for (IpLimitApi api : blackList) {
-                if (pathMatch.match(api.getPath(), requestPath) && api.getIpAddressSet() != null && !api.getIpAddressSet().isEmpty()) {
-                    if (matchIpOrOrigin(api.getIpAddressSet(), ipAddress, origin)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-
+        return resourceLocator.getIpBlackIndex().match(requestPath, ipAddress, origin)[1];
     }
 
     /**
@@ -272,44 +233,8 @@ public class AccessManager {
      * @return [hasWhiteList, allow]
      */
     public boolean[] matchIpOrOriginWhiteList(String requestPath, String ipAddress, String origin) {
-        boolean hasWhiteList = false;
-        boolean allow = false;
-        List<IpLimitApi> whiteList = resourceLocator.getIpWhites();
-        if (whiteList != null) {
-            for (IpLimitApi api : whiteList) {
-                if (pathMatch.match(api.getPath(), requestPath) && api.getIpAddressSet() != null && !api.getIpAddressSet().isEmpty()) {
-                    hasWhiteList = true;
-                    allow = matchIpOrOrigin(api.getIpAddressSet(), ipAddress, origin);
-                    break;
-                }
-            }
-        }
-        return new boolean[]{hasWhiteList, allow};
-    }
-
-    /**
-     * 匹配IP或域名
-     *
-     * @param values
-     * @param ipAddress
-     * @param origin
-     * @return
-     */
-    public boolean matchIpOrOrigin(Set<String> values, String ipAddress, String origin) {
-        IpAddressMatcher ipAddressMatcher = null;
-        for (String value : values) {
-            if (StringUtils.matchIp(value)) {
-                ipAddressMatcher = new IpAddressMatcher(value);
-                if (ipAddressMatcher.matches(ipAddress)) {
-                    return true;
-                }
-            } else {
-                if (StringUtils.matchDomain(value) && StringUtils.isNotBlank(origin) && origin.contains(value)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        Boolean[] result = resourceLocator.getIpWhiteIndex().match(requestPath, ipAddress, origin);
+        return new boolean[]{result[0], result[1]};
     }
 
 
@@ -1,7 +1,9 @@
 package com.opencloud.gateway.zuul.server.filter;
 
 import com.opencloud.common.interceptor.FeignRequestInterceptor;
+import com.opencloud.gateway.zuul.server.configuration.ApiProperties;
 import com.opencloud.gateway.zuul.server.filter.support.ModifyHttpServletRequestWrapper;
+import com.opencloud.gateway.zuul.server.filter.support.StreamingHttpServletRequestWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -15,21 +17,40 @@ import java.util.UUID;
 
 /**
  * 请求前缀过滤器,增加请求时间
+ * 默认流式转发请求体,签名验证等需要解析参数时才缓存,见StreamingHttpServletRequestWrapper
  *
  * @author liuyadu
  */
 @Slf4j
 public class PreRequestFilter extends OncePerRequestFilter {
 
+    private ApiProperties apiProperties;
+
+    public PreRequestFilter(ApiProperties apiProperties) {
+        this.apiProperties = apiProperties;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         request.setAttribute("requestTime", new Date());
-        // 修复 请求防止流读取一次丢失问题
-        ModifyHttpServletRequestWrapper requestWrapper = new ModifyHttpServletRequestWrapper(request);
         String sid =  UUID.randomUUID().toString();
+        response.setHeader(FeignRequestInterceptor.X_REQUEST_ID,sid);
+        if (apiProperties != null && !apiProperties.getRequestBodyStreaming()) {
+            // 修复 请求防止流读取一次丢失问题
+            ModifyHttpServletRequestWrapper requestWrapper = new ModifyHttpServletRequestWrapper(request);
+            // 添加自定义请求头
+            requestWrapper.putHeader(FeignRequestInterceptor.X_REQUEST_ID, sid);
+            filterChain.doFilter(requestWrapper, response);
+            return;
+        }
+        int bufferSize = apiProperties == null ? 64 * 1024 : apiProperties.getRequestBodyBufferSize();
+        StreamingHttpServletRequestWrapper requestWrapper = new StreamingHttpServletRequestWrapper(request, bufferSize);
         // 添加自定义请求头
         requestWrapper.putHeader(FeignRequestInterceptor.X_REQUEST_ID, sid);
-        response.setHeader(FeignRequestInterceptor.X_REQUEST_ID,sid);
-        filterChain.doFilter(requestWrapper, response);
+        try {
+            filterChain.doFilter(requestWrapper, response);
+        } finally {
+            requestWrapper.release();
+        }
     }
 }
@@ -1,6 +1,8 @@
 package com.opencloud.gateway.zuul.server.filter;
 
 import cn.hutool.core.collection.ConcurrentHashSet;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
 import com.opencloud.base.client.model.entity.BaseApp;
 import com.opencloud.common.constants.CommonConstants;
 import com.opencloud.common.exception.OpenSignatureException;
@@ -9,7 +11,10 @@ import com.opencloud.common.utils.SignatureUtils;
 import com.opencloud.common.utils.WebUtils;
 import com.opencloud.gateway.zuul.server.configuration.ApiProperties;
 import com.opencloud.gateway.zuul.server.exception.JsonSignatureDeniedHandler;
+import com.opencloud.gateway.zuul.server.filter.support.StreamingHttpServletRequestWrapper;
 import com.opencloud.gateway.zuul.server.service.feign.BaseAppServiceClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -18,6 +23,9 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -63,7 +71,7 @@ public class PreSignatureFilter extends OncePerRequestFilter {
         System.out.println(request.getHeaderNames());
         if (apiProperties.getCheckSign() && !notSign(requestPath)) {
             try {
-                Map params = WebUtils.getParameterMap(request);
+                Map params = getParameterMap(request);
                 // 验证请求参数
                 SignatureUtils.validateParams(params);
                 //开始验证签名
@@ -88,6 +96,30 @@ public class PreSignatureFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * 获取签名参数
+     * 与WebUtils.getParameterMap相同,只有JSON需要读取请求体,此时缓存请求体并直接从缓存解析,解析后仍可转发;
+     * 其他类型由容器解析参数,不缓存请求体.
+     *
+     * @param request
+     * @return
+     * @throws IOException
+     */
+    protected Map getParameterMap(HttpServletRequest request) throws IOException {
+        String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+        boolean json = MediaType.APPLICATION_JSON_VALUE.equals(contentType) || MediaType.APPLICATION_JSON_UTF8_VALUE.equals(contentType);
+        if (!json || !StreamingHttpServletRequestWrapper.cacheBody(request)) {
+            return WebUtils.getParameterMap(request);
+        }
+        try (InputStream in = request.getInputStream()) {
+            Map params = JSON.parseObject(in, StandardCharsets.UTF_8, Map.class);
+            return params == null ? new HashMap() : params;
+        } catch (JSONException e) {
+            // 与WebUtils一致,格式错误时按无参数处理
+            return new HashMap();
+        }
+    }
+
     protected boolean notSign(String requestPath) {
         if(apiProperties.getSignIgnores()==null){
             return false;
@@ -0,0 +1,307 @@
+package com.opencloud.gateway.zuul.server.filter.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * 流式请求包装
+ * 默认不读取请求体,转发时直接把原始输入流交给上游.
+ * 只有后续过滤器需要解析参数时(调用cacheBody)才缓存请求体,之后可重复读取:
+ * 不超过maxBufferSize的部分保存在内存中,超出时整个请求体写入临时文件,请求结束时删除.
+ * 临时文件同一时间只保持一个打开的输入流,重新获取输入流时关闭上一个,请求结束时随文件一起关闭.
+ * 表单、文件上传由容器解析参数,不缓存.
+ *
+ * @author liuyadu
+ */
+@Slf4j
+public class StreamingHttpServletRequestWrapper extends HttpServletRequestWrapper {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final int maxBufferSize;
+
+    private final Map<String, String> customHeaders = new HashMap<>();
+
+    /**
+     * 内存缓存
+     */
+    private byte[] body;
+
+    /**
+     * 超出内存上限时的临时文件
+     */
+    private File spillFile;
+
+    /**
+     * 当前打开的临时文件输入流
+     */
+    private InputStream spillStream;
+
+    /**
+     * 原始输入流已交给调用方,请求体无法再缓存
+     */
+    private boolean streamed;
+
+    public StreamingHttpServletRequestWrapper(HttpServletRequest request, int maxBufferSize) {
+        super(request);
+        this.maxBufferSize = Math.max(0, maxBufferSize);
+    }
+
+    /**
+     * 查找请求包装并缓存请求体
+     *
+     * @param request
+     * @return 请求体是否可重复读取
+     */
+    public static boolean cacheBody(ServletRequest request) {
+        ServletRequest current = request;
+        while (current instanceof ServletRequestWrapper) {
+            if (current instanceof StreamingHttpServletRequestWrapper) {
+                return ((StreamingHttpServletRequestWrapper) current).cacheBody();
+            }
+            current = ((ServletRequestWrapper) current).getRequest();
+        }
+        return false;
+    }
+
+    /**
+     * 查找请求包装,判断请求体是否未缓存就已流式转发
+     *
+     * @param request
+     * @return 没有流式请求包装时返回false
+     */
+    public static boolean isBodyStreamed(ServletRequest request) {
+        ServletRequest current = request;
+        while (current instanceof ServletRequestWrapper) {
+            if (current instanceof StreamingHttpServletRequestWrapper) {
+                return ((StreamingHttpServletRequestWrapper) current).isBodyStreamed();
+            }
+            current = ((ServletRequestWrapper) current).getRequest();
+        }
+        return false;
+    }
+
+    /**
+     * 请求体未缓存,读取参数时无法再解析请求体
+     * 表单、文件上传由容器解析,无请求体的请求不受影响
+     *
+     * @return
+     */
+    public boolean isBodyStreamed() {
+        if (isCached() || isContainerParsed()) {
+            return false;
+        }
+        return getContentLengthLong() > 0 || getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+    }
+
+    /**
+     * 缓存请求体
+     *
+     * @return 请求体是否可重复读取
+     */
+    public boolean cacheBody() {
+        if (isCached()) {
+            return true;
+        }
+        if (streamed || isContainerParsed()) {
+            return false;
+        }
+        try {
+            InputStream in = super.getInputStream();
+            ByteArrayOutputStream memory = new ByteArrayOutputStream(Math.min(maxBufferSize, Math.max(0, getContentLength())));
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                if (memory.size() + n > maxBufferSize) {
+                    spill(memory, buffer, n, in);
+                    return true;
+                }
+                memory.write(buffer, 0, n);
+            }
+            body = memory.toByteArray();
+            return true;
+        } catch (IOException e) {
+            log.error("cache request body error:{}", e.getMessage());
+            streamed = true;
+            release();
+            return false;
+        }
+    }
+
+    /**
+     * 写入临时文件
+     */
+    private void spill(ByteArrayOutputStream memory, byte[] buffer, int n, InputStream in) throws IOException {
+        File file = File.createTempFile("zuul-request-", ".body");
+        spillFile = file;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            memory.writeTo(out);
+            out.write(buffer, 0, n);
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        log.debug("request body spilled to {}, size:{}", file, file.length());
+    }
+
+    /**
+     * 表单、文件上传
+     *
+     * @return
+     */
+    private boolean isContainerParsed() {
+        String contentType = getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        String lower = contentType.toLowerCase(Locale.ENGLISH);
+        return lower.startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE) || lower.startsWith("multipart/");
+    }
+
+    public boolean isCached() {
+        return body != null || spillFile != null;
+    }
+
+    /**
+     * 关闭输入流并删除临时文件
+     */
+    public void release() {
+        closeSpillStream();
+        File file = spillFile;
+        spillFile = null;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                log.warn("delete request body file error:{}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (body != null) {
+            return new CachedServletInputStream(new ByteArrayInputStream(body));
+        }
+        if (spillFile != null) {
+            // 每次从头读取,上一个输入流不再使用
+            closeSpillStream();
+            spillStream = new BufferedInputStream(new FileInputStream(spillFile));
+            return new CachedServletInputStream(spillStream);
+        }
+        streamed = true;
+        return super.getInputStream();
+    }
+
+    private void closeSpillStream() {
+        InputStream in = spillStream;
+        spillStream = null;
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.warn("close request body file error:{}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (!isCached()) {
+            streamed = true;
+            return super.getReader();
+        }
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+
+    public void putHeader(String name, String value) {
+        this.customHeaders.put(name, value);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        String value = this.customHeaders.get(name);
+        if (value != null) {
+            return value;
+        }
+        return ((HttpServletRequest) getRequest()).getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        Set<String> set = new HashSet<>(customHeaders.keySet());
+        Enumeration<String> enumeration = ((HttpServletRequest) getRequest()).getHeaderNames();
+        while (enumeration.hasMoreElements()) {
+            String name = enumeration.nextElement();
+            set.add(name);
+        }
+        return Collections.enumeration(set);
+    }
+
+    /**
+     * 缓存请求体输入流
+     */
+    private static final class CachedServletInputStream extends ServletInputStream {
+        private final InputStream delegate;
+        private boolean finished;
+
+        private CachedServletInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            finished = b == -1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = delegate.read(b, off, len);
+            finished = n == -1;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return delegate.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+
+        }
+    }
+}
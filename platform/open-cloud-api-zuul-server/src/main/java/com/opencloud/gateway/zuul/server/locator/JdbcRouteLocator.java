@@ -17,10 +17,12 @@ import org.springframework.util.StringUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 自定义动态路由加载器
@@ -37,6 +39,20 @@ public class JdbcRouteLocator extends SimpleRouteLocator implements ApplicationL
     private List<GatewayRoute> routeList;
     private ApplicationEventPublisher publisher;
 
+    /**
+     * 当前生效的路由
+     */
+    private volatile Map<String, ZuulRoute> appliedRoutes;
+
+    /**
+     * 已加载待替换的路由,避免刷新时重复查询
+     */
+    private volatile Map<String, ZuulRoute> pendingRoutes;
+
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    private final AtomicLong skipCount = new AtomicLong();
+
     public JdbcRouteLocator(String servletPath, ZuulProperties properties, JdbcTemplate jdbcTemplate, ApplicationEventPublisher publisher) {
         super(servletPath, properties);
         this.properties = properties;
@@ -44,11 +60,56 @@ public class JdbcRouteLocator extends SimpleRouteLocator implements ApplicationL
         this.publisher = publisher;
     }
 
+    /**
+     * 刷新路由
+     * 路由表(内容和顺序)未变化时不替换路由、不发布刷新事件;
+     * 只有路由路径增减时才发布刷新事件重建请求映射,其他变化只替换路由,未变化的路由沿用原对象.
+     */
     @Override
-    public void doRefresh() {
+    public synchronized void doRefresh() {
+        Map<String, ZuulRoute> located = buildRoutes();
+        Map<String, ZuulRoute> applied = this.appliedRoutes;
+        if (applied != null && sameRoutes(applied, located)) {
+            skipCount.incrementAndGet();
+            log.debug("路由未变化,跳过刷新:{}", located.size());
+            return;
+        }
+        boolean pathChanged = applied == null || !applied.keySet().equals(located.keySet());
+        if (applied != null) {
+            int changed = 0;
+            for (Map.Entry<String, ZuulRoute> entry : located.entrySet()) {
+                ZuulRoute previous = applied.get(entry.getKey());
+                if (previous != null && previous.equals(entry.getValue())) {
+                    entry.setValue(previous);
+                } else {
+                    changed++;
+                }
+            }
+            log.info("路由已变化:新增或修改{}个,删除{}个", changed, applied.keySet().stream().filter(path -> !located.containsKey(path)).count());
+        }
+        this.pendingRoutes = located;
         super.doRefresh();
-        // 发布本地刷新事件, 更新相关本地缓存, 解决动态加载完,新路由映射无效的问题
-        publisher.publishEvent(new RoutesRefreshedEvent(this));
+        refreshCount.incrementAndGet();
+        if (pathChanged) {
+            // 发布本地刷新事件, 更新相关本地缓存, 解决动态加载完,新路由映射无效的问题
+            publisher.publishEvent(new RoutesRefreshedEvent(this));
+        }
+    }
+
+    /**
+     * 路由及顺序是否一致,顺序决定匹配优先级
+     */
+    private static boolean sameRoutes(Map<String, ZuulRoute> applied, Map<String, ZuulRoute> located) {
+        if (applied.size() != located.size()) {
+            return false;
+        }
+        Iterator<Map.Entry<String, ZuulRoute>> iterator = located.entrySet().iterator();
+        for (Map.Entry<String, ZuulRoute> entry : applied.entrySet()) {
+            if (!entry.equals(iterator.next())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -58,6 +119,21 @@ public class JdbcRouteLocator extends SimpleRouteLocator implements ApplicationL
      */
     @Override
     protected Map<String, ZuulProperties.ZuulRoute> locateRoutes() {
+        Map<String, ZuulRoute> values = this.pendingRoutes;
+        this.pendingRoutes = null;
+        if (values == null) {
+            values = buildRoutes();
+        }
+        this.appliedRoutes = values;
+        return values;
+    }
+
+    /**
+     * 合并配置文件和数据库中的路由
+     *
+     * @return
+     */
+    protected LinkedHashMap<String, ZuulProperties.ZuulRoute> buildRoutes() {
         LinkedHashMap<String, ZuulProperties.ZuulRoute> routesMap = Maps.newLinkedHashMap();
         routesMap.putAll(super.locateRoutes());
         //从db中加载路由信息
@@ -127,6 +203,20 @@ public class JdbcRouteLocator extends SimpleRouteLocator implements ApplicationL
     }
 
 
+    /**
+     * 刷新统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        Map<String, ZuulRoute> applied = this.appliedRoutes;
+        map.put("routes", applied == null ? 0 : applied.size());
+        map.put("refreshCount", refreshCount.get());
+        map.put("skipCount", skipCount.get());
+        return map;
+    }
+
     public List<GatewayRoute> getRouteList() {
         return routeList;
     }
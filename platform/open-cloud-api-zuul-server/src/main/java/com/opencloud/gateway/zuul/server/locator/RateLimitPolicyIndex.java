@@ -0,0 +1,182 @@
+package com.opencloud.gateway.zuul.server.locator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.marcosbarbero.cloud.autoconfigure.zuul.ratelimit.config.RateLimitType;
+import com.marcosbarbero.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+
+import java.util.*;
+
+/**
+ * 限流策略索引
+ * 每次加载限流策略时按路由ID和URL前缀构建一次,请求时沿路由内路径逐字符查找候选策略,
+ * 结果按(路由ID,路径)缓存,策略重新加载时整体替换索引和缓存.
+ * 与限流组件逐条扫描一致:URL类型按路由内路径前缀匹配,其他类型策略始终作为候选交给限流组件判断.
+ *
+ * @author liuyadu
+ */
+public class RateLimitPolicyIndex {
+
+    public static final RateLimitPolicyIndex EMPTY = new RateLimitPolicyIndex(Collections.emptyMap(), 0);
+
+    private final Map<String, RouteEntry> routes;
+
+    private final Cache<String, List<RateLimitProperties.Policy>> cache;
+
+    private RateLimitPolicyIndex(Map<String, RouteEntry> routes, long cacheSize) {
+        this.routes = routes;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, cacheSize))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 构建索引
+     *
+     * @param policyList    路由ID对应限流策略
+     * @param routePrefixes 路由ID对应路由前缀
+     * @param cacheSize     解析结果缓存数量
+     * @return
+     */
+    public static RateLimitPolicyIndex build(Map<String, List<RateLimitProperties.Policy>> policyList, Map<String, String> routePrefixes, long cacheSize) {
+        Map<String, RouteEntry> routes = new HashMap<>();
+        if (policyList != null) {
+            policyList.forEach((routeId, policies) -> {
+                if (routeId != null && policies != null) {
+                    String prefix = routePrefixes == null ? null : routePrefixes.get(routeId);
+                    // 路由前缀未知时不建索引,无法确定路由内路径
+                    routes.put(routeId, new RouteEntry(prefix, policies));
+                }
+            });
+        }
+        return new RateLimitPolicyIndex(routes, cacheSize);
+    }
+
+    /**
+     * 获取候选策略
+     *
+     * @param routeId     路由ID
+     * @param requestPath 请求路径
+     * @param policies    路由下全部策略
+     * @return 无法使用索引时返回policies
+     */
+    public List<RateLimitProperties.Policy> resolve(String routeId, String requestPath, List<RateLimitProperties.Policy> policies) {
+        RouteEntry entry = routeId == null ? null : routes.get(routeId);
+        // 策略已被其他途径替换、路由前缀未知或请求不在路由前缀下,交给限流组件逐条判断
+        if (entry == null || entry.policies != policies || entry.prefix == null || requestPath == null || !requestPath.startsWith(entry.prefix)) {
+            return policies;
+        }
+        String key = routeId.concat(" ").concat(requestPath);
+        List<RateLimitProperties.Policy> result = cache.getIfPresent(key);
+        if (result == null) {
+            result = entry.match(requestPath.substring(entry.prefix.length()));
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    /**
+     * 命中统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("routes", routes.size());
+        map.put("size", cache.size());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    /**
+     * 单个路由的策略索引
+     */
+    private static final class RouteEntry {
+        /**
+         * 路由前缀,未知时为null
+         */
+        private final String prefix;
+        private final List<RateLimitProperties.Policy> policies;
+        /**
+         * 始终作为候选的策略下标
+         */
+        private final int[] always;
+        /**
+         * URL前缀字符树
+         */
+        private final Node root = new Node();
+
+        private RouteEntry(String prefix, List<RateLimitProperties.Policy> policies) {
+            this.prefix = prefix;
+            this.policies = policies;
+            List<Integer> always = new ArrayList<>();
+            for (int i = 0; i < policies.size(); i++) {
+                String matcher = urlMatcher(policies.get(i));
+                if (matcher == null) {
+                    always.add(i);
+                    continue;
+                }
+                Node node = root;
+                for (int j = 0; j < matcher.length(); j++) {
+                    node = node.children.computeIfAbsent(matcher.charAt(j), c -> new Node());
+                }
+                node.indexes.add(i);
+            }
+            this.always = always.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * 多个类型同时满足才生效,取第一个URL类型建索引即可;没有URL类型时返回null
+         */
+        private static String urlMatcher(RateLimitProperties.Policy policy) {
+            if (policy.getType() == null) {
+                return null;
+            }
+            for (RateLimitProperties.Policy.MatchType matchType : policy.getType()) {
+                if (matchType != null && RateLimitType.URL.equals(matchType.getType()) && matchType.getMatcher() != null) {
+                    return matchType.getMatcher();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 按原顺序返回候选策略
+         */
+        private List<RateLimitProperties.Policy> match(String routePath) {
+            BitSet matched = new BitSet(policies.size());
+            for (int index : always) {
+                matched.set(index);
+            }
+            Node node = root;
+            node.indexes.forEach(matched::set);
+            for (int i = 0; i < routePath.length(); i++) {
+                node = node.children.get(routePath.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                node.indexes.forEach(matched::set);
+            }
+            List<RateLimitProperties.Policy> result = new ArrayList<>(matched.cardinality());
+            for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+                result.add(policies.get(i));
+            }
+            return Collections.unmodifiableList(result);
+        }
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<Integer> indexes = new ArrayList<>(1);
+    }
+}
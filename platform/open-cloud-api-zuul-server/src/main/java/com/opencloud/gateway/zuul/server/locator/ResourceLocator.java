@@ -8,6 +8,9 @@ import com.opencloud.base.client.model.AuthorityResource;
 import com.opencloud.base.client.model.IpLimitApi;
 import com.opencloud.base.client.model.RateLimitApi;
 import com.opencloud.common.event.RemoteRefreshRouteEvent;
+import com.opencloud.common.matcher.AuthorityIndex;
+import com.opencloud.common.matcher.IpLimitIndex;
+import com.opencloud.gateway.zuul.server.configuration.IndexedRateLimitProperties;
 import com.opencloud.gateway.zuul.server.service.feign.BaseAuthorityServiceClient;
 import com.opencloud.gateway.zuul.server.service.feign.GatewayServiceClient;
 import lombok.extern.slf4j.Slf4j;
@@ -55,26 +58,46 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
     /**
      * 权限列表
      */
-    private Map<String, Collection<ConfigAttribute>> configAttributes = new ConcurrentHashMap();
+    private volatile Map<String, Collection<ConfigAttribute>> configAttributes = new ConcurrentHashMap();
     /**
      * 权限列表
      */
-    private List<AuthorityResource> authorityResources;
+    private volatile List<AuthorityResource> authorityResources;
 
     /**
      * IP黑名单
      */
-    private List<IpLimitApi> ipBlacks;
+    private volatile List<IpLimitApi> ipBlacks;
 
     /**
      * Ip白名单
      */
-    private List<IpLimitApi> ipWhites;
+    private volatile List<IpLimitApi> ipWhites;
+
+    /**
+     * 权限路径索引,随权限列表整体替换
+     */
+    private volatile AuthorityIndex<AuthorityResource> authorityIndex = AuthorityIndex.empty();
+
+    /**
+     * IP黑名单索引
+     */
+    private volatile IpLimitIndex ipBlackIndex = IpLimitIndex.EMPTY;
+
+    /**
+     * IP白名单索引
+     */
+    private volatile IpLimitIndex ipWhiteIndex = IpLimitIndex.EMPTY;
 
     /**
      * 流量限制
      */
-    private List<RateLimitApi> rateLimitApis;
+    private volatile List<RateLimitApi> rateLimitApis;
+
+    /**
+     * 路由ID对应的路由前缀,每次刷新资源前重建
+     */
+    private volatile Map<String, String> routePrefixes = Collections.emptyMap();
 
     private RateLimitProperties rateLimitProperties;
     private JdbcRouteLocator zuulRoutesLocator;
@@ -99,28 +122,45 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
      * 刷新配置
      */
     public void refresh() {
+        refreshRoutePrefixes();
         loadAuthority();
         loadIpBlacks();
         loadIpWhites();
         loadRateLimit();
     }
 
+    /**
+     * 重建路由前缀索引,失败时沿用上一版本
+     * 同一路由ID以第一个路由为准
+     */
+    protected void refreshRoutePrefixes() {
+        try {
+            List<Route> routes = zuulRoutesLocator.getRoutes();
+            Map<String, String> prefixes = Maps.newHashMapWithExpectedSize(routes == null ? 0 : routes.size());
+            if (routes != null) {
+                for (Route route : routes) {
+                    if (route.getId() != null && route.getPrefix() != null) {
+                        prefixes.putIfAbsent(route.getId(), route.getPrefix());
+                    }
+                }
+            }
+            this.routePrefixes = prefixes;
+        } catch (Exception e) {
+            log.error("加载路由前缀错误:{}", e);
+        }
+    }
+
     /**
      * 获取路由后的完整地址
      *
      * @return
      */
     protected String getFullPath(String routeId, String path) {
-        List<Route> routes = zuulRoutesLocator.getRoutes();
-        if (routes != null && !routes.isEmpty()) {
-            for (Route route : routes) {
-                // 服务ID相同
-                if (route.getId().equals(routeId)) {
-                    return route.getPrefix().concat(path.startsWith("/") ? path : "/" + path);
-                }
-            }
+        String prefix = routeId == null ? null : routePrefixes.get(routeId);
+        if (prefix == null) {
+            return path;
         }
-        return path;
+        return prefix.concat(path.startsWith("/") ? path : "/" + path);
     }
 
     /**
@@ -151,10 +191,11 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
                     }
                     configAttributes.put(fullPath, array);
                 }
-                this.configAttributes.clear();
-                this.authorityResources.clear();
+                // 先编译索引,再整体替换
+                AuthorityIndex<AuthorityResource> index = buildAuthorityIndex(list, configAttributes);
                 this.configAttributes = configAttributes;
-                this.authorityResources = list;
+                this.authorityResources = new CopyOnWriteArrayList<>(list);
+                this.authorityIndex = index;
             }
             log.info("=============加载动态权限:{}==============", this.authorityResources.size());
         } catch (Exception e) {
@@ -172,8 +213,9 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
                 for (IpLimitApi item : list) {
                     item.setPath(getFullPath(item.getServiceId(), item.getPath()));
                 }
-                this.ipBlacks.clear();
-                this.ipBlacks.addAll(list);
+                IpLimitIndex index = buildIpLimitIndex(list);
+                this.ipBlacks = new CopyOnWriteArrayList<>(list);
+                this.ipBlackIndex = index;
             }
             log.info("=============加载IP黑名单:{}==============", this.ipBlacks.size());
         } catch (Exception e) {
@@ -191,8 +233,9 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
                 for (IpLimitApi item : list) {
                     item.setPath(getFullPath(item.getServiceId(), item.getPath()));
                 }
-                this.ipWhites.clear();
-                this.ipWhites.addAll(list);
+                IpLimitIndex index = buildIpLimitIndex(list);
+                this.ipWhites = new CopyOnWriteArrayList<>(list);
+                this.ipWhiteIndex = index;
             }
             log.info("=============加载IP白名单:{}==============", ipWhites.size());
         } catch (Exception e) {
@@ -218,6 +261,10 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
         LinkedHashMap<String, List<RateLimitProperties.Policy>> policysMap = Maps.newLinkedHashMap();
         //从db中加载限流信息
         policysMap.putAll(loadRateLimitPolicy());
+        if (rateLimitProperties instanceof IndexedRateLimitProperties) {
+            // 设置策略时按当前路由前缀重建索引
+            ((IndexedRateLimitProperties) rateLimitProperties).setRoutePrefixes(routePrefixes);
+        }
         rateLimitProperties.setPolicyList(policysMap);
     }
 
@@ -250,8 +297,7 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
                     policyList.add(policy);
                     policyMap.put(item.getServiceId(), policyList);
                 }
-                this.rateLimitApis.clear();
-                this.rateLimitApis.addAll(rateLimitApis);
+                this.rateLimitApis = new CopyOnWriteArrayList<>(list);
             }
             log.info("=============加载动态限流:{}==============", rateLimitProperties.getPolicyList().size());
         } catch (Exception e) {
@@ -280,12 +326,47 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
         }
     }
 
+    /**
+     * 编译权限路径索引,isAuth不为1的资源无需认证
+     *
+     * @param resources
+     * @param configAttributes
+     * @return
+     */
+    private static AuthorityIndex<AuthorityResource> buildAuthorityIndex(List<AuthorityResource> resources, Map<String, Collection<ConfigAttribute>> configAttributes) {
+        return AuthorityIndex.build(resources, AuthorityResource::getPath,
+                resource -> resource.getIsAuth() != null && resource.getIsAuth().intValue() == 1, configAttributes);
+    }
+
+    /**
+     * 编译IP黑白名单索引
+     *
+     * @param apis
+     * @return
+     */
+    private static IpLimitIndex buildIpLimitIndex(List<IpLimitApi> apis) {
+        return IpLimitIndex.build(apis, IpLimitApi::getPath, IpLimitApi::getIpAddressSet);
+    }
+
+    public AuthorityIndex<AuthorityResource> getAuthorityIndex() {
+        return authorityIndex;
+    }
+
+    public IpLimitIndex getIpBlackIndex() {
+        return ipBlackIndex;
+    }
+
+    public IpLimitIndex getIpWhiteIndex() {
+        return ipWhiteIndex;
+    }
+
     public List<AuthorityResource> getAuthorityResources() {
         return authorityResources;
     }
 
     public void setAuthorityResources(List<AuthorityResource> authorityResources) {
         this.authorityResources = authorityResources;
+        this.authorityIndex = buildAuthorityIndex(authorityResources, configAttributes);
     }
 
     public List<IpLimitApi> getIpBlacks() {
@@ -294,6 +375,7 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
 
     public void setIpBlacks(List<IpLimitApi> ipBlacks) {
         this.ipBlacks = ipBlacks;
+        this.ipBlackIndex = buildIpLimitIndex(ipBlacks);
     }
 
     public List<IpLimitApi> getIpWhites() {
@@ -302,6 +384,7 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
 
     public void setIpWhites(List<IpLimitApi> ipWhites) {
         this.ipWhites = ipWhites;
+        this.ipWhiteIndex = buildIpLimitIndex(ipWhites);
     }
 
     public List<RateLimitApi> getRateLimitApis() {
@@ -318,6 +401,7 @@ public class ResourceLocator implements ApplicationListener<RemoteRefreshRouteEv
 
     public void setConfigAttributes(Map<String, Collection<ConfigAttribute>> configAttributes) {
         this.configAttributes = configAttributes;
+        this.authorityIndex = buildAuthorityIndex(authorityResources, configAttributes);
     }
 
     /**
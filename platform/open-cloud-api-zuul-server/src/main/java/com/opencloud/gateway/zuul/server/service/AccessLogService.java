@@ -2,13 +2,19 @@ package com.opencloud.gateway.zuul.server.service;
 
 import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.google.common.collect.Maps;
+import com.opencloud.common.codec.AccessLogCodec;
 import com.opencloud.common.constants.QueueConstants;
+import com.opencloud.common.model.AccessLogRecord;
+import com.opencloud.common.queue.BatchPublisher;
 import com.opencloud.common.security.OpenHelper;
 import com.opencloud.common.security.OpenUserDetails;
 import com.opencloud.common.utils.WebUtils;
+import com.opencloud.gateway.zuul.server.configuration.ApiProperties;
+import com.opencloud.gateway.zuul.server.filter.support.StreamingHttpServletRequestWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.netflix.zuul.filters.support.FilterConstants;
@@ -16,36 +22,42 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.util.AntPathMatcher;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.*;
-import java.util.concurrent.*;
 
 /**
  * 访问日志处理类
  *
  * @author: liuyadu
  * @date: 2019/5/8 11:27
- * @description:
+ * @description: 访问日志先写入有界队列,由单独线程按数量或时间批量编码(AccessLogCodec)后发送到MQ,消息中间件变慢不影响请求处理
  */
 @Slf4j
 @Component
 public class AccessLogService {
-    private ExecutorService executorService;
 
     @Autowired
     private AmqpTemplate amqpTemplate;
 
+    @Autowired
+    private ApiProperties apiProperties;
+
     @Value("${spring.application.name}")
     private String defaultServiceId;
 
+    /**
+     * 请求体未记录时的参数标记
+     */
+    public static final String BODY_NOT_CAPTURED_KEY = "_body";
+
+    public static final String BODY_NOT_CAPTURED = "[streamed]";
+
     private final AntPathMatcher antPathMatcher = new AntPathMatcher();
 
-    public AccessLogService() {
-        Integer availableProcessors = Runtime.getRuntime().availableProcessors();
-        Integer numOfThreads = availableProcessors * 2;
-        executorService = new ThreadPoolExecutor(numOfThreads, numOfThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<>());
-    }
+    private BatchPublisher<PendingLog> publisher;
 
     @JsonIgnore
     private Set<String> ignores = new HashSet<>(Arrays.asList(new String[]{
@@ -71,50 +83,135 @@ public class AccessLogService {
         return false;
     }
 
+    /**
+     * 写入日志队列,由发送线程批量发送,不阻塞请求线程
+     *
+     * @param request
+     * @param response
+     * @param ex
+     */
     public void sendLog(HttpServletRequest request, HttpServletResponse response, Exception ex) {
-        int httpStatus = response.getStatus();
-        String requestPath = request.getRequestURI();
-        String method = request.getMethod();
-        Map headers = WebUtils.getHttpHeaders(request);
-        Map data = WebUtils.getParameterMap(request);
-        Object serviceId = request.getAttribute(FilterConstants.SERVICE_ID_KEY);
-        String ip = WebUtils.getRemoteAddress(request);
-        String userAgent = request.getHeader(HttpHeaders.USER_AGENT);
-        Object requestTime = request.getAttribute("requestTime");
-        String error = null;
-        if (ex != null) {
-            error = ex.getMessage();
-        }
-        if (ignore(requestPath)) {
-            return;
+        try {
+            String requestPath = request.getRequestURI();
+            if (ignore(requestPath)) {
+                return;
+            }
+            int httpStatus = response.getStatus();
+            String method = request.getMethod();
+            Map<String, String> headers = WebUtils.getHttpHeaders(request);
+            Map<String, String> data = getParams(request);
+            Object serviceId = request.getAttribute(FilterConstants.SERVICE_ID_KEY);
+            String ip = WebUtils.getRemoteAddress(request);
+            String userAgent = request.getHeader(HttpHeaders.USER_AGENT);
+            Object requestTime = request.getAttribute("requestTime");
+            String error = null;
+            if (ex != null) {
+                error = ex.getMessage();
+            }
+            AccessLogRecord record = new AccessLogRecord();
+            record.setRequestTime(requestTime instanceof Date ? (Date) requestTime : null);
+            record.setServiceId(serviceId == null ? defaultServiceId : serviceId.toString());
+            record.setHttpStatus(httpStatus);
+            record.setHeaders(headers);
+            record.setPath(requestPath);
+            record.setParams(data);
+            record.setIp(ip);
+            record.setMethod(method);
+            record.setUserAgent(userAgent);
+            record.setResponseTime(new Date());
+            record.setError(error);
+            // 用户信息在请求线程获取,发送线程转换为json
+            PendingLog pendingLog = new PendingLog(record, OpenHelper.getUser());
+            if (publisher != null) {
+                publisher.publish(pendingLog);
+            }
+        } catch (Exception e) {
+            log.error("access logs save error:{}", e);
         }
-        Map<String, Object> map = Maps.newHashMap();
-        map.put("requestTime", requestTime);
-        map.put("serviceId", serviceId == null ? defaultServiceId : serviceId);
-        map.put("httpStatus", httpStatus);
-        map.put("headers", JSONObject.toJSON(headers));
-        map.put("path", requestPath);
-        map.put("params", JSONObject.toJSON(data));
-        map.put("ip", ip);
-        map.put("method", method);
-        map.put("userAgent", userAgent);
-        map.put("responseTime", new Date());
-        map.put("error", error);
-        OpenUserDetails user = OpenHelper.getUser();
-        if (user != null) {
-            map.put("authentication", JSONObject.toJSONString(user));
+    }
+
+    /**
+     * 请求参数
+     * 流式转发(requestBodyStreaming)时请求体已直接交给上游,只有签名验证等已缓存的请求体才能解析;
+     * 未缓存时只记录查询参数,并用{@link #BODY_NOT_CAPTURED_KEY}标记请求体未记录,不为访问日志额外缓存请求体.
+     *
+     * @param request
+     * @return
+     */
+    private Map<String, String> getParams(HttpServletRequest request) {
+        if (!StreamingHttpServletRequestWrapper.isBodyStreamed(request)) {
+            return WebUtils.getParameterMap(request);
         }
-        executorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    amqpTemplate.convertAndSend(QueueConstants.QUEUE_ACCESS_LOGS, map);
-                } catch (Exception e) {
-                    log.error("access logs save error:{}", e);
-                }
+        // 未缓存请求体时容器只解析查询参数,不读取输入流
+        Map<String, String> data = new HashMap<>();
+        request.getParameterMap().forEach((name, values) -> data.put(name, values == null ? "" : String.join(",", values)));
+        data.put(BODY_NOT_CAPTURED_KEY, BODY_NOT_CAPTURED);
+        return data;
+    }
+
+    /**
+     * 批量编码发送,运行在发送线程
+     *
+     * @param batch
+     */
+    private void send(List<PendingLog> batch) {
+        List<AccessLogRecord> records = new ArrayList<>(batch.size());
+        for (PendingLog pendingLog : batch) {
+            if (pendingLog.user != null) {
+                pendingLog.record.setAuthentication(JSONObject.toJSONString(pendingLog.user));
             }
-        });
+            records.add(pendingLog.record);
+        }
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(AccessLogCodec.CONTENT_TYPE);
+        amqpTemplate.send(QueueConstants.QUEUE_ACCESS_LOGS, new Message(AccessLogCodec.encode(records), properties));
+    }
 
+    @PostConstruct
+    public void start() {
+        BatchPublisher.OverflowPolicy overflowPolicy = BatchPublisher.OverflowPolicy.DROP;
+        try {
+            overflowPolicy = BatchPublisher.OverflowPolicy.valueOf(apiProperties.getAccessLogOverflowPolicy().toUpperCase());
+        } catch (Exception e) {
+            log.warn("unknown accessLogOverflowPolicy [{}], use DROP", apiProperties.getAccessLogOverflowPolicy());
+        }
+        publisher = new BatchPublisher<>("access-log-publisher",
+                apiProperties.getAccessLogQueueCapacity(),
+                apiProperties.getAccessLogBatchSize(),
+                apiProperties.getAccessLogLingerMs(),
+                overflowPolicy,
+                apiProperties.getAccessLogSampleRate(),
+                apiProperties.getAccessLogBlockTimeoutMs(),
+                this::send);
+        publisher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
 
+    /**
+     * 日志队列统计
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        return publisher == null ? Collections.emptyMap() : publisher.getStats();
+    }
+
+    /**
+     * 待发送日志,用户信息在发送线程中转换为json
+     */
+    private static final class PendingLog {
+        private final AccessLogRecord record;
+        private final OpenUserDetails user;
+
+        private PendingLog(AccessLogRecord record, OpenUserDetails user) {
+            this.record = record;
+            this.user = user;
+        }
     }
 }
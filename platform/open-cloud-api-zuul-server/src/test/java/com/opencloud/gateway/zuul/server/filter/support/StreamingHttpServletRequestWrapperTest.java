@@ -0,0 +1,94 @@
+package com.opencloud.gateway.zuul.server.filter.support;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ServletInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author liuyadu
+ */
+public class StreamingHttpServletRequestWrapperTest {
+
+    @Test
+    public void smallBodyIsCachedInMemory() throws IOException {
+        byte[] body = "{\"appId\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+        StreamingHttpServletRequestWrapper wrapper = new StreamingHttpServletRequestWrapper(request("application/json", body), 1024);
+        assertTrue(wrapper.cacheBody());
+        assertArrayEquals(body, StreamUtils.copyToByteArray(wrapper.getInputStream()));
+        assertArrayEquals(body, StreamUtils.copyToByteArray(wrapper.getInputStream()));
+        wrapper.release();
+    }
+
+    @Test
+    public void spilledBodyKeepsOneOpenStream() throws IOException {
+        byte[] body = new byte[10 * 1024];
+        Arrays.fill(body, (byte) 'a');
+        StreamingHttpServletRequestWrapper wrapper = new StreamingHttpServletRequestWrapper(request("application/json", body), 1024);
+        assertTrue(wrapper.cacheBody());
+
+        InputStream first = wrapper.getInputStream();
+        assertEquals('a', first.read());
+        // 重新获取时关闭上一个输入流
+        InputStream second = wrapper.getInputStream();
+        assertClosed(first);
+        assertArrayEquals(body, StreamUtils.copyToByteArray(second));
+        assertArrayEquals(body, StreamUtils.copyToByteArray(wrapper.getInputStream()));
+
+        // 请求结束时随临时文件一起关闭
+        InputStream last = wrapper.getInputStream();
+        wrapper.release();
+        assertClosed(last);
+        assertFalse(wrapper.isCached());
+    }
+
+    @Test
+    public void formBodyIsLeftToContainer() throws IOException {
+        byte[] body = "a=1&b=2".getBytes(StandardCharsets.UTF_8);
+        StreamingHttpServletRequestWrapper wrapper = new StreamingHttpServletRequestWrapper(request("application/x-www-form-urlencoded", body), 1024);
+        assertFalse(wrapper.cacheBody());
+        assertFalse(wrapper.isCached());
+    }
+
+    @Test
+    public void uncachedJsonBodyIsReportedAsStreamed() throws IOException {
+        StreamingHttpServletRequestWrapper wrapper = new StreamingHttpServletRequestWrapper(request("application/json", "{}".getBytes(StandardCharsets.UTF_8)), 1024);
+        assertTrue(StreamingHttpServletRequestWrapper.isBodyStreamed(wrapper));
+        assertTrue(wrapper.cacheBody());
+        assertFalse(StreamingHttpServletRequestWrapper.isBodyStreamed(wrapper));
+        assertFalse(new StreamingHttpServletRequestWrapper(request("application/x-www-form-urlencoded", "a=1".getBytes(StandardCharsets.UTF_8)), 1024).isBodyStreamed());
+        assertFalse(new StreamingHttpServletRequestWrapper(new MockHttpServletRequest("GET", "/test"), 1024).isBodyStreamed());
+    }
+
+    @Test
+    public void cachedStreamAcceptsReadListener() throws IOException {
+        StreamingHttpServletRequestWrapper wrapper = new StreamingHttpServletRequestWrapper(request("application/json", "{}".getBytes(StandardCharsets.UTF_8)), 1024);
+        assertTrue(wrapper.cacheBody());
+        ServletInputStream in = wrapper.getInputStream();
+        in.setReadListener(null);
+        assertTrue(in.isReady());
+    }
+
+    private static MockHttpServletRequest request(String contentType, byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+        request.setContentType(contentType);
+        request.setContent(body);
+        return request;
+    }
+
+    private static void assertClosed(InputStream in) {
+        try {
+            in.read();
+            fail("expected closed stream");
+        } catch (IOException e) {
+            // 已关闭
+        }
+    }
+}
@@ -90,5 +90,15 @@ public class GatewayAccessLogs implements Serializable {
      */
     private String error;
 
+    /**
+     * 响应大小(字节)
+     */
+    private Long responseSize;
+
+    /**
+     * 响应内容采样
+     */
+    private String responseBody;
+
     private static final long serialVersionUID = 1L;
 }
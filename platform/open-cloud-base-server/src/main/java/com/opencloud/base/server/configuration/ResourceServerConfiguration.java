@@ -3,6 +3,7 @@ package com.opencloud.base.server.configuration;
 import com.opencloud.common.exception.OpenAccessDeniedHandler;
 import com.opencloud.common.exception.OpenAuthenticationEntryPoint;
 import com.opencloud.common.security.OpenHelper;
+import com.opencloud.common.security.OpenRedisTokenStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
@@ -38,7 +39,7 @@ public class ResourceServerConfiguration extends ResourceServerConfigurerAdapter
 
     @Bean
     public RedisTokenStore redisTokenStore() {
-        return new RedisTokenStore(redisConnectionFactory);
+        return new OpenRedisTokenStore(redisConnectionFactory);
     }
 
 
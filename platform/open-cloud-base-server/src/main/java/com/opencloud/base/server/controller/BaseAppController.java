@@ -256,6 +256,7 @@ public class BaseAppController implements IBaseAppServiceClient {
             @RequestParam("appId") String appId
     ) {
         String result = baseAppService.restSecret(appId);
+        openRestTemplate.refreshGateway();
         return ResultBody.ok().data(result);
     }
 
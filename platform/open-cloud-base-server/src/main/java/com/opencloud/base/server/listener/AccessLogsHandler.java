@@ -1,9 +1,12 @@
 package com.opencloud.base.server.listener;
 
+import com.alibaba.fastjson.JSONObject;
 import com.opencloud.base.client.model.entity.GatewayAccessLogs;
 import com.opencloud.base.server.mapper.GatewayLogsMapper;
 import com.opencloud.base.server.service.IpRegionService;
+import com.opencloud.common.codec.AccessLogCodec;
 import com.opencloud.common.constants.QueueConstants;
+import com.opencloud.common.model.AccessLogRecord;
 import com.opencloud.common.utils.BeanConvertUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -11,6 +14,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.handler.annotation.Payload;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,24 +38,74 @@ public class AccessLogsHandler {
 
     /**
      * 接收访问日志
+     * 二进制批量消息(AccessLogCodec),兼容旧版单条(Map)和批量(Collection)json消息
      *
      * @param access
      */
     @RabbitListener(queues = QueueConstants.QUEUE_ACCESS_LOGS)
-    public void accessLogsQueue(@Payload Map access) {
+    public void accessLogsQueue(@Payload Object access) {
+        if (access instanceof byte[]) {
+            List<AccessLogRecord> records;
+            try {
+                records = AccessLogCodec.decode((byte[]) access);
+            } catch (Exception e) {
+                log.error("access logs decode error:{}", e.getMessage());
+                return;
+            }
+            for (AccessLogRecord record : records) {
+                saveLogs(toLogs(record));
+            }
+        } else if (access instanceof Map) {
+            saveLogs((Map) access);
+        } else if (access instanceof Collection) {
+            for (Object item : (Collection) access) {
+                if (item instanceof Map) {
+                    saveLogs((Map) item);
+                }
+            }
+        }
+    }
+
+    private void saveLogs(Map access) {
+        try {
+            saveLogs(BeanConvertUtils.mapToObject(access, GatewayAccessLogs.class));
+        } catch (Exception e) {
+            log.error("error:", e);
+        }
+    }
+
+    private void saveLogs(GatewayAccessLogs logs) {
         try {
-            if (access != null) {
-                GatewayAccessLogs logs = BeanConvertUtils.mapToObject(access, GatewayAccessLogs.class);
-                if (logs != null) {
-                    if (logs.getIp() != null) {
-                        logs.setRegion(ipRegionService.getRegion(logs.getIp()));
-                    }
+            if (logs != null) {
+                if (logs.getIp() != null) {
+                    logs.setRegion(ipRegionService.getRegion(logs.getIp()));
+                }
+                if (logs.getResponseTime() != null && logs.getRequestTime() != null) {
                     logs.setUseTime(logs.getResponseTime().getTime() - logs.getRequestTime().getTime());
-                    gatewayLogsMapper.insert(logs);
                 }
+                gatewayLogsMapper.insert(logs);
             }
         } catch (Exception e) {
             log.error("error:", e);
         }
     }
+
+    private GatewayAccessLogs toLogs(AccessLogRecord record) {
+        GatewayAccessLogs logs = new GatewayAccessLogs();
+        logs.setRequestTime(record.getRequestTime());
+        logs.setResponseTime(record.getResponseTime());
+        logs.setPath(record.getPath());
+        logs.setMethod(record.getMethod());
+        logs.setIp(record.getIp());
+        logs.setHttpStatus(record.getHttpStatus() == null ? null : String.valueOf(record.getHttpStatus()));
+        logs.setServiceId(record.getServiceId());
+        logs.setUserAgent(record.getUserAgent());
+        logs.setHeaders(record.getHeaders() == null ? null : JSONObject.toJSONString(record.getHeaders()));
+        logs.setParams(record.getParams() == null ? null : JSONObject.toJSONString(record.getParams()));
+        logs.setAuthentication(record.getAuthentication());
+        logs.setError(record.getError());
+        logs.setResponseSize(record.getResponseSize());
+        logs.setResponseBody(record.getResponseBody());
+        return logs;
+    }
 }
@@ -2,12 +2,22 @@ package com.opencloud.base.server.mapper;
 
 import com.opencloud.base.client.model.entity.BaseAuthorityAction;
 import com.opencloud.common.mybatis.base.mapper.SuperMapper;
+import org.apache.ibatis.annotations.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * @author liuyadu
  */
 @Repository
 public interface BaseAuthorityActionMapper extends SuperMapper<BaseAuthorityAction> {
 
+    /**
+     * 批量添加授权
+     *
+     * @param list
+     * @return
+     */
+    int insertBatch(@Param("list") List<BaseAuthorityAction> list);
 }
@@ -21,4 +21,12 @@ public interface BaseAuthorityAppMapper extends BaseMapper<BaseAuthorityApp> {
      * @return
      */
     List<OpenAuthority> selectAuthorityByApp(@Param("appId") String appId);
+
+    /**
+     * 批量添加授权
+     *
+     * @param list
+     * @return
+     */
+    int insertBatch(@Param("list") List<BaseAuthorityApp> list);
 }
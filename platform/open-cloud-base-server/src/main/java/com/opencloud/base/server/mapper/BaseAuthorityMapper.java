@@ -7,6 +7,7 @@ import com.opencloud.base.client.model.AuthorityMenu;
 import com.opencloud.base.client.model.entity.BaseAuthority;
 import com.opencloud.common.mybatis.base.mapper.SuperMapper;
 import com.opencloud.common.security.OpenAuthority;
+import org.apache.ibatis.annotations.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -57,5 +58,21 @@ public interface BaseAuthorityMapper extends SuperMapper<BaseAuthority> {
      */
     List<AuthorityApi> selectAuthorityApi(Map map);
 
+    /**
+     * 一次查询用户已授权权限:有效角色授权和用户特殊授权,未去重
+     *
+     * @param userId
+     * @return
+     */
+    List<OpenAuthority> selectAuthorityByUser(@Param("userId") Long userId);
+
+    /**
+     * 一次查询用户已授权菜单及菜单下已授权操作,按优先级排序
+     *
+     * @param userId
+     * @param serviceId
+     * @return
+     */
+    List<AuthorityMenu> selectAuthorityMenuByUser(@Param("userId") Long userId, @Param("serviceId") String serviceId);
 
 }
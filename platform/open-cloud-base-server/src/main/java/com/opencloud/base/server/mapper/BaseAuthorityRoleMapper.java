@@ -30,4 +30,12 @@ public interface BaseAuthorityRoleMapper extends SuperMapper<BaseAuthorityRole>
      * @return
      */
     List<AuthorityMenu> selectAuthorityMenuByRole(@Param("roleId") Long roleId, @Param("serviceId") String serviceId);
+
+    /**
+     * 批量添加授权
+     *
+     * @param list
+     * @return
+     */
+    int insertBatch(@Param("list") List<BaseAuthorityRole> list);
 }
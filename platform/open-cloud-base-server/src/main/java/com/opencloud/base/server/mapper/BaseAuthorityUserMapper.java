@@ -30,4 +30,12 @@ public interface BaseAuthorityUserMapper extends SuperMapper<BaseAuthorityUser>
      * @return
      */
     List<AuthorityMenu> selectAuthorityMenuByUser(@Param("userId") Long userId, @Param("serviceId") String serviceId);
+
+    /**
+     * 批量添加授权
+     *
+     * @param list
+     * @return
+     */
+    int insertBatch(@Param("list") List<BaseAuthorityUser> list);
 }
@@ -1,6 +1,7 @@
 package com.opencloud.base.server.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.opencloud.base.client.constants.ResourceType;
@@ -26,6 +27,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.Function;
 
 
 /**
@@ -63,6 +65,11 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
     @Autowired
     private RedisTokenStore redisTokenStore;
 
+    /**
+     * 批量写入、删除每批数量
+     */
+    private static final int BATCH_SIZE = 500;
+
     @Value("${spring.application.name}")
     private String DEFAULT_SERVICE_ID;
 
@@ -290,24 +297,36 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
         if (roleId == null) {
             return;
         }
-        // 清空角色已有授权
+        Set<Long> targetIds = parseAuthorityIds(authorityIds);
+        // 角色已有授权
         QueryWrapper<BaseAuthorityRole> roleQueryWrapper = new QueryWrapper();
         roleQueryWrapper.lambda().eq(BaseAuthorityRole::getRoleId, roleId);
-        baseAuthorityRoleMapper.delete(roleQueryWrapper);
-        BaseAuthorityRole authority = null;
-        if (authorityIds != null && authorityIds.length > 0) {
-            for (String id : authorityIds) {
-                authority = new BaseAuthorityRole();
-                authority.setAuthorityId(Long.parseLong(id));
-                authority.setRoleId(roleId);
-                authority.setExpireTime(expireTime);
-                authority.setCreateTime(new Date());
-                authority.setUpdateTime(authority.getCreateTime());
-                // 批量添加授权
-                baseAuthorityRoleMapper.insert(authority);
-            }
-
+        List<BaseAuthorityRole> grantedList = baseAuthorityRoleMapper.selectList(roleQueryWrapper);
+        Set<Long> removeIds = diffGrants(grantedList, BaseAuthorityRole::getAuthorityId, BaseAuthorityRole::getExpireTime, targetIds, expireTime);
+        // 移除取消的授权
+        for (List<Long> ids : Iterables.partition(removeIds, BATCH_SIZE)) {
+            QueryWrapper<BaseAuthorityRole> removeQueryWrapper = new QueryWrapper();
+            removeQueryWrapper.lambda()
+                    .eq(BaseAuthorityRole::getRoleId, roleId)
+                    .in(BaseAuthorityRole::getAuthorityId, ids);
+            baseAuthorityRoleMapper.delete(removeQueryWrapper);
+        }
+        if (targetIds.isEmpty()) {
+            return;
         }
+        Date now = new Date();
+        List<BaseAuthorityRole> list = Lists.newArrayListWithCapacity(targetIds.size());
+        for (Long id : targetIds) {
+            BaseAuthorityRole authority = new BaseAuthorityRole();
+            authority.setAuthorityId(id);
+            authority.setRoleId(roleId);
+            authority.setExpireTime(expireTime);
+            authority.setCreateTime(now);
+            authority.setUpdateTime(now);
+            list.add(authority);
+        }
+        // 批量添加授权
+        Lists.partition(list, BATCH_SIZE).forEach(baseAuthorityRoleMapper::insertBatch);
     }
 
     /**
@@ -330,31 +349,42 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
         if (CommonConstants.ROOT.equals(user.getUserName())) {
             throw new OpenAlertException("默认用户无需授权!");
         }
+        Set<Long> targetIds = parseAuthorityIds(authorityIds);
         // 获取用户角色列表
         List<Long> roleIds = baseRoleService.getUserRoleIds(userId);
-        // 清空用户已有授权
-        // 清空角色已有授权
+        if (roleIds != null && roleIds.size() > 0 && !targetIds.isEmpty()) {
+            // 防止重复授权,一次查询角色已授权的权限
+            targetIds.removeAll(findGrantedByRoleIds(targetIds, roleIds));
+        }
+        // 用户已有授权
         QueryWrapper<BaseAuthorityUser> userQueryWrapper = new QueryWrapper();
         userQueryWrapper.lambda().eq(BaseAuthorityUser::getUserId, userId);
-        baseAuthorityUserMapper.delete(userQueryWrapper);
-        BaseAuthorityUser authority = null;
-        if (authorityIds != null && authorityIds.length > 0) {
-            for (String id : authorityIds) {
-                if (roleIds != null && roleIds.size() > 0) {
-                    // 防止重复授权
-                    if (isGrantedByRoleIds(id, roleIds.toArray(new Long[roleIds.size()]))) {
-                        continue;
-                    }
-                }
-                authority = new BaseAuthorityUser();
-                authority.setAuthorityId(Long.parseLong(id));
-                authority.setUserId(userId);
-                authority.setExpireTime(expireTime);
-                authority.setCreateTime(new Date());
-                authority.setUpdateTime(authority.getCreateTime());
-                baseAuthorityUserMapper.insert(authority);
-            }
+        List<BaseAuthorityUser> grantedList = baseAuthorityUserMapper.selectList(userQueryWrapper);
+        Set<Long> removeIds = diffGrants(grantedList, BaseAuthorityUser::getAuthorityId, BaseAuthorityUser::getExpireTime, targetIds, expireTime);
+        // 移除取消的授权
+        for (List<Long> ids : Iterables.partition(removeIds, BATCH_SIZE)) {
+            QueryWrapper<BaseAuthorityUser> removeQueryWrapper = new QueryWrapper();
+            removeQueryWrapper.lambda()
+                    .eq(BaseAuthorityUser::getUserId, userId)
+                    .in(BaseAuthorityUser::getAuthorityId, ids);
+            baseAuthorityUserMapper.delete(removeQueryWrapper);
+        }
+        if (targetIds.isEmpty()) {
+            return;
         }
+        Date now = new Date();
+        List<BaseAuthorityUser> list = Lists.newArrayListWithCapacity(targetIds.size());
+        for (Long id : targetIds) {
+            BaseAuthorityUser authority = new BaseAuthorityUser();
+            authority.setAuthorityId(id);
+            authority.setUserId(userId);
+            authority.setExpireTime(expireTime);
+            authority.setCreateTime(now);
+            authority.setUpdateTime(now);
+            list.add(authority);
+        }
+        // 批量添加授权
+        Lists.partition(list, BATCH_SIZE).forEach(baseAuthorityUserMapper::insertBatch);
     }
 
     /**
@@ -375,22 +405,34 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
         if (baseApp == null) {
             return;
         }
-        // 清空应用已有授权
+        Set<Long> targetIds = parseAuthorityIds(authorityIds);
+        // 应用已有授权
         QueryWrapper<BaseAuthorityApp> appQueryWrapper = new QueryWrapper();
         appQueryWrapper.lambda().eq(BaseAuthorityApp::getAppId, appId);
-        baseAuthorityAppMapper.delete(appQueryWrapper);
-        BaseAuthorityApp authority = null;
-        if (authorityIds != null && authorityIds.length > 0) {
-            for (String id : authorityIds) {
-                authority = new BaseAuthorityApp();
-                authority.setAuthorityId(Long.parseLong(id));
+        List<BaseAuthorityApp> grantedList = baseAuthorityAppMapper.selectList(appQueryWrapper);
+        Set<Long> removeIds = diffGrants(grantedList, BaseAuthorityApp::getAuthorityId, BaseAuthorityApp::getExpireTime, targetIds, expireTime);
+        // 移除取消的授权
+        for (List<Long> ids : Iterables.partition(removeIds, BATCH_SIZE)) {
+            QueryWrapper<BaseAuthorityApp> removeQueryWrapper = new QueryWrapper();
+            removeQueryWrapper.lambda()
+                    .eq(BaseAuthorityApp::getAppId, appId)
+                    .in(BaseAuthorityApp::getAuthorityId, ids);
+            baseAuthorityAppMapper.delete(removeQueryWrapper);
+        }
+        if (!targetIds.isEmpty()) {
+            Date now = new Date();
+            List<BaseAuthorityApp> list = Lists.newArrayListWithCapacity(targetIds.size());
+            for (Long id : targetIds) {
+                BaseAuthorityApp authority = new BaseAuthorityApp();
+                authority.setAuthorityId(id);
                 authority.setAppId(appId);
                 authority.setExpireTime(expireTime);
-                authority.setCreateTime(new Date());
-                authority.setUpdateTime(authority.getCreateTime());
-                baseAuthorityAppMapper.insert(authority);
-
+                authority.setCreateTime(now);
+                authority.setUpdateTime(now);
+                list.add(authority);
             }
+            // 批量添加授权
+            Lists.partition(list, BATCH_SIZE).forEach(baseAuthorityAppMapper::insertBatch);
         }
         // 获取应用最新的权限列表
         List<OpenAuthority> authorities = findAuthorityByApp(appId);
@@ -438,19 +480,33 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
         if (actionId == null) {
             return;
         }
-        // 移除操作已绑定接口
-        removeAuthorityAction(actionId);
-        if (authorityIds != null && authorityIds.length > 0) {
-            for (String id : authorityIds) {
-                Long authorityId = Long.parseLong(id);
-                BaseAuthorityAction authority = new BaseAuthorityAction();
-                authority.setActionId(actionId);
-                authority.setAuthorityId(authorityId);
-                authority.setCreateTime(new Date());
-                authority.setUpdateTime(authority.getCreateTime());
-                baseAuthorityActionMapper.insert(authority);
-            }
+        Set<Long> targetIds = parseAuthorityIds(authorityIds);
+        // 操作已绑定接口
+        List<BaseAuthorityAction> grantedList = findAuthorityAction(actionId);
+        Set<Long> removeIds = diffGrants(grantedList, BaseAuthorityAction::getAuthorityId, item -> null, targetIds, null);
+        // 移除取消的接口
+        for (List<Long> ids : Iterables.partition(removeIds, BATCH_SIZE)) {
+            QueryWrapper<BaseAuthorityAction> removeQueryWrapper = new QueryWrapper();
+            removeQueryWrapper.lambda()
+                    .eq(BaseAuthorityAction::getActionId, actionId)
+                    .in(BaseAuthorityAction::getAuthorityId, ids);
+            baseAuthorityActionMapper.delete(removeQueryWrapper);
+        }
+        if (targetIds.isEmpty()) {
+            return;
         }
+        Date now = new Date();
+        List<BaseAuthorityAction> list = Lists.newArrayListWithCapacity(targetIds.size());
+        for (Long id : targetIds) {
+            BaseAuthorityAction authority = new BaseAuthorityAction();
+            authority.setActionId(actionId);
+            authority.setAuthorityId(id);
+            authority.setCreateTime(now);
+            authority.setUpdateTime(now);
+            list.add(authority);
+        }
+        // 批量添加授权
+        Lists.partition(list, BATCH_SIZE).forEach(baseAuthorityActionMapper::insertBatch);
     }
 
     /**
@@ -507,27 +563,13 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
             // 超级管理员返回所有
             return findAuthorityByType("1");
         }
-        List<OpenAuthority> authorities = Lists.newArrayList();
-        List<BaseRole> rolesList = baseRoleService.getUserRoles(userId);
-        if (rolesList != null) {
-            for (BaseRole role : rolesList) {
-                // 加入角色已授权
-                List<OpenAuthority> roleGrantedAuthority = findAuthorityByRole(role.getRoleId());
-                if (roleGrantedAuthority != null && roleGrantedAuthority.size() > 0) {
-                    authorities.addAll(roleGrantedAuthority);
-                }
-            }
-        }
-        // 加入用户特殊授权
-        List<OpenAuthority> userGrantedAuthority = baseAuthorityUserMapper.selectAuthorityByUser(userId);
-        if (userGrantedAuthority != null && userGrantedAuthority.size() > 0) {
-            authorities.addAll(userGrantedAuthority);
+        // 角色授权和用户特殊授权一次查询
+        List<OpenAuthority> list = baseAuthorityMapper.selectAuthorityByUser(userId);
+        if (list == null || list.isEmpty()) {
+            return Lists.newArrayList();
         }
-        // 权限去重
-        HashSet h = new HashSet(authorities);
-        authorities.clear();
-        authorities.addAll(h);
-        return authorities;
+        // 权限去重,角色授权优先
+        return Lists.newArrayList(new LinkedHashSet<>(list));
     }
 
     /**
@@ -548,30 +590,9 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
             // 超级管理员返回所有
             return findAuthorityMenu(null);
         }
-        // 用户权限列表
-        List<AuthorityMenu> authorities = Lists.newArrayList();
-        List<BaseRole> rolesList = baseRoleService.getUserRoles(userId);
-        if (rolesList != null) {
-            for (BaseRole role : rolesList) {
-                // 加入角色已授权
-                List<AuthorityMenu> roleGrantedAuthority = baseAuthorityRoleMapper.selectAuthorityMenuByRole(role.getRoleId(), serviceId);
-                if (roleGrantedAuthority != null && roleGrantedAuthority.size() > 0) {
-                    authorities.addAll(roleGrantedAuthority);
-                }
-            }
-        }
-        // 加入用户特殊授权
-        List<AuthorityMenu> userGrantedAuthority = baseAuthorityUserMapper.selectAuthorityMenuByUser(userId, serviceId);
-        if (userGrantedAuthority != null && userGrantedAuthority.size() > 0) {
-            authorities.addAll(userGrantedAuthority);
-        }
-        // 权限去重
-        HashSet h = new HashSet(authorities);
-        authorities.clear();
-        authorities.addAll(h);
-        //根据优先级从小到大排序
-        authorities.sort((AuthorityMenu h1, AuthorityMenu h2) -> h1.getPriority().compareTo(h2.getPriority()));
-        return authorities;
+        // 角色授权和用户特殊授权一次查询,菜单按授权去重、按优先级排序,操作合并到所属菜单
+        List<AuthorityMenu> authorities = baseAuthorityMapper.selectAuthorityMenuByUser(userId, serviceId);
+        return authorities == null ? Lists.newArrayList() : authorities;
     }
 
     /**
@@ -594,6 +615,81 @@ public class BaseAuthorityServiceImpl extends BaseServiceImpl<BaseAuthorityMappe
         return count > 0;
     }
 
+    /**
+     * 查询已被角色授权的权限
+     *
+     * @param authorityIds
+     * @param roleIds
+     * @return
+     */
+    private Set<Long> findGrantedByRoleIds(Collection<Long> authorityIds, Collection<Long> roleIds) {
+        QueryWrapper<BaseAuthorityRole> roleQueryWrapper = new QueryWrapper();
+        roleQueryWrapper.select("DISTINCT authority_id")
+                .in("role_id", roleIds)
+                .in("authority_id", authorityIds);
+        Set<Long> granted = new HashSet<>();
+        for (Object id : baseAuthorityRoleMapper.selectObjs(roleQueryWrapper)) {
+            if (id != null) {
+                granted.add(Long.valueOf(id.toString()));
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * 解析权限ID并去重
+     *
+     * @param authorityIds
+     * @return
+     */
+    private static Set<Long> parseAuthorityIds(String... authorityIds) {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (authorityIds != null) {
+            for (String id : authorityIds) {
+                ids.add(Long.parseLong(id));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 对比已有授权和新授权
+     * 新授权中已存在且过期时间相同的保持不变,从targetIds中移除;
+     * 返回需要删除的权限ID:已取消、过期时间变化或存在重复记录的,后两种会重新添加.
+     *
+     * @param grantedList 已有授权
+     * @param authorityId 权限ID
+     * @param expireTime  过期时间
+     * @param targetIds   新授权,执行后只保留需要添加的
+     * @param newExpire   新过期时间
+     * @return
+     */
+    private static <T> Set<Long> diffGrants(List<T> grantedList, Function<T, Long> authorityId, Function<T, Date> expireTime, Set<Long> targetIds, Date newExpire) {
+        Set<Long> removeIds = new LinkedHashSet<>();
+        Set<Long> keepIds = new HashSet<>();
+        if (grantedList != null) {
+            for (T granted : grantedList) {
+                Long id = authorityId.apply(granted);
+                if (!targetIds.contains(id) || !sameSecond(expireTime.apply(granted), newExpire) || !keepIds.add(id)) {
+                    removeIds.add(id);
+                }
+            }
+        }
+        keepIds.removeAll(removeIds);
+        targetIds.removeAll(keepIds);
+        return removeIds;
+    }
+
+    /**
+     * 数据库时间精确到秒
+     */
+    private static boolean sameSecond(Date a, Date b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getTime() / 1000 == b.getTime() / 1000;
+    }
+
     /**
      * 清理无效数据
      *
@@ -0,0 +1,220 @@
+package com.opencloud.base.server.benchmark;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.opencloud.base.client.model.AuthorityMenu;
+import com.opencloud.base.client.model.entity.*;
+import com.opencloud.base.server.BaseApplication;
+import com.opencloud.base.server.mapper.*;
+import com.opencloud.base.server.service.BaseAuthorityService;
+import com.opencloud.base.server.service.BaseRoleService;
+import com.opencloud.common.security.OpenAuthority;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户权限查询:逐个角色查询与一次联表查询对比
+ * 使用已配置的数据库,启动时为一个新用户写入roleCount个角色及授权,结束时删除.
+ * 每个角色授予authoritiesPerRole个已有权限,相邻角色的授权有一半重叠,另有少量用户特殊授权.
+ * 运行: 在IDE中执行main方法,或 mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.opencloud.base.server.benchmark.UserAuthorityQueryBenchmark
+ *
+ * @author liuyadu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserAuthorityQueryBenchmark {
+
+    private static final String ROLE_CODE_PREFIX = "benchmark_";
+
+    /**
+     * 用户角色数量
+     */
+    @Param({"1", "10", "50"})
+    public int roleCount;
+
+    /**
+     * 每个角色的授权数量
+     */
+    @Param({"20"})
+    public int authoritiesPerRole;
+
+    private ConfigurableApplicationContext context;
+
+    private BaseAuthorityService baseAuthorityService;
+
+    private BaseRoleService baseRoleService;
+
+    private BaseAuthorityMapper baseAuthorityMapper;
+
+    private BaseAuthorityRoleMapper baseAuthorityRoleMapper;
+
+    private BaseAuthorityUserMapper baseAuthorityUserMapper;
+
+    private BaseRoleMapper baseRoleMapper;
+
+    private BaseRoleUserMapper baseRoleUserMapper;
+
+    private Long userId;
+
+    private final List<Long> roleIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(BaseApplication.class).web(WebApplicationType.NONE).run();
+        baseAuthorityService = context.getBean(BaseAuthorityService.class);
+        baseRoleService = context.getBean(BaseRoleService.class);
+        baseAuthorityMapper = context.getBean(BaseAuthorityMapper.class);
+        baseAuthorityRoleMapper = context.getBean(BaseAuthorityRoleMapper.class);
+        baseAuthorityUserMapper = context.getBean(BaseAuthorityUserMapper.class);
+        baseRoleMapper = context.getBean(BaseRoleMapper.class);
+        baseRoleUserMapper = context.getBean(BaseRoleUserMapper.class);
+        seed();
+        // 两种方式结果一致才有比较意义
+        if (!authorities(perRoleAuthorities()).equals(authorities(joinedAuthorities()))
+                || !menuAuthorityIds(perRoleMenus()).equals(menuAuthorityIds(joinedMenus()))) {
+            throw new IllegalStateException("per-role and joined queries differ for user " + userId);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        try {
+            if (userId != null) {
+                baseAuthorityUserMapper.delete(new QueryWrapper<BaseAuthorityUser>().lambda().eq(BaseAuthorityUser::getUserId, userId));
+                baseRoleUserMapper.delete(new QueryWrapper<BaseRoleUser>().lambda().eq(BaseRoleUser::getUserId, userId));
+            }
+            if (!roleIds.isEmpty()) {
+                baseAuthorityRoleMapper.delete(new QueryWrapper<BaseAuthorityRole>().lambda().in(BaseAuthorityRole::getRoleId, roleIds));
+                baseRoleMapper.deleteBatchIds(roleIds);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * 原方式:查询用户角色后逐个角色查询权限
+     */
+    @Benchmark
+    public List<OpenAuthority> perRoleAuthorities() {
+        List<OpenAuthority> authorities = new ArrayList<>();
+        for (BaseRole role : baseRoleService.getUserRoles(userId)) {
+            authorities.addAll(baseAuthorityRoleMapper.selectAuthorityByRole(role.getRoleId()));
+        }
+        authorities.addAll(baseAuthorityUserMapper.selectAuthorityByUser(userId));
+        return new ArrayList<>(new HashSet<>(authorities));
+    }
+
+    @Benchmark
+    public List<OpenAuthority> joinedAuthorities() {
+        return baseAuthorityService.findAuthorityByUser(userId, false);
+    }
+
+    /**
+     * 原方式:逐个角色查询菜单,内存中去重排序
+     */
+    @Benchmark
+    public List<AuthorityMenu> perRoleMenus() {
+        List<AuthorityMenu> authorities = new ArrayList<>();
+        for (BaseRole role : baseRoleService.getUserRoles(userId)) {
+            authorities.addAll(baseAuthorityRoleMapper.selectAuthorityMenuByRole(role.getRoleId(), null));
+        }
+        authorities.addAll(baseAuthorityUserMapper.selectAuthorityMenuByUser(userId, null));
+        List<AuthorityMenu> list = new ArrayList<>(new HashSet<>(authorities));
+        list.sort(Comparator.comparing(AuthorityMenu::getPriority));
+        return list;
+    }
+
+    @Benchmark
+    public List<AuthorityMenu> joinedMenus() {
+        return baseAuthorityService.findAuthorityMenuByUser(userId, false);
+    }
+
+    /**
+     * 写入测试用户、角色及授权
+     */
+    private void seed() {
+        List<BaseAuthority> available = baseAuthorityMapper.selectList(new QueryWrapper<BaseAuthority>().lambda().eq(BaseAuthority::getStatus, 1));
+        if (available.isEmpty()) {
+            throw new IllegalStateException("base_authority is empty, initialize the schema first");
+        }
+        Date now = new Date();
+        userId = IdWorker.getId();
+        for (int i = 0; i < roleCount; i++) {
+            BaseRole role = new BaseRole();
+            role.setRoleCode(ROLE_CODE_PREFIX + userId + "_" + i);
+            role.setRoleName(ROLE_CODE_PREFIX + i);
+            role.setStatus(1);
+            role.setIsPersist(0);
+            role.setCreateTime(now);
+            role.setUpdateTime(now);
+            baseRoleMapper.insert(role);
+            roleIds.add(role.getRoleId());
+
+            BaseRoleUser roleUser = new BaseRoleUser();
+            roleUser.setUserId(userId);
+            roleUser.setRoleId(role.getRoleId());
+            roleUser.setCreateTime(now);
+            roleUser.setUpdateTime(now);
+            baseRoleUserMapper.insert(roleUser);
+
+            // 相邻角色授权重叠一半
+            int offset = i * Math.max(1, authoritiesPerRole / 2);
+            for (BaseAuthority authority : slice(available, offset, authoritiesPerRole)) {
+                BaseAuthorityRole authorityRole = new BaseAuthorityRole();
+                authorityRole.setRoleId(role.getRoleId());
+                authorityRole.setAuthorityId(authority.getAuthorityId());
+                authorityRole.setCreateTime(now);
+                authorityRole.setUpdateTime(now);
+                baseAuthorityRoleMapper.insert(authorityRole);
+            }
+        }
+        for (BaseAuthority authority : slice(available, available.size() / 2, Math.min(5, authoritiesPerRole))) {
+            BaseAuthorityUser authorityUser = new BaseAuthorityUser();
+            authorityUser.setUserId(userId);
+            authorityUser.setAuthorityId(authority.getAuthorityId());
+            authorityUser.setCreateTime(now);
+            authorityUser.setUpdateTime(now);
+            baseAuthorityUserMapper.insert(authorityUser);
+        }
+    }
+
+    /**
+     * 从offset开始循环取count个不重复的权限
+     */
+    private static List<BaseAuthority> slice(List<BaseAuthority> list, int offset, int count) {
+        Set<BaseAuthority> result = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(count, list.size()); i++) {
+            result.add(list.get((offset + i) % list.size()));
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static Set<String> authorities(List<OpenAuthority> list) {
+        Set<String> result = new HashSet<>();
+        list.forEach(authority -> result.add(authority.getAuthority()));
+        return result;
+    }
+
+    private static Set<Long> menuAuthorityIds(List<AuthorityMenu> list) {
+        Set<Long> result = new HashSet<>();
+        list.forEach(menu -> result.add(menu.getAuthorityId()));
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UserAuthorityQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
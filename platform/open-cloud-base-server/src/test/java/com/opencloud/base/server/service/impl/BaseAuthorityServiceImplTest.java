@@ -1,17 +1,36 @@
 package com.opencloud.base.server.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.opencloud.base.client.model.AuthorityMenu;
+import com.opencloud.base.client.model.entity.BaseRole;
+import com.opencloud.base.client.model.entity.BaseRoleUser;
+import com.opencloud.base.server.mapper.BaseAuthorityRoleMapper;
+import com.opencloud.base.server.mapper.BaseAuthorityUserMapper;
+import com.opencloud.base.server.mapper.BaseRoleUserMapper;
 import com.opencloud.base.server.service.BaseAuthorityService;
+import com.opencloud.base.server.service.BaseRoleService;
+import com.opencloud.common.security.OpenAuthority;
 import com.opencloud.common.test.BaseTest;
+import org.junit.Assume;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.Collections;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
 public class BaseAuthorityServiceImplTest extends BaseTest {
     @Autowired
     private BaseAuthorityService baseAuthorityService;
+    @Autowired
+    private BaseRoleService baseRoleService;
+    @Autowired
+    private BaseRoleUserMapper baseRoleUserMapper;
+    @Autowired
+    private BaseAuthorityRoleMapper baseAuthorityRoleMapper;
+    @Autowired
+    private BaseAuthorityUserMapper baseAuthorityUserMapper;
 
     @Test
     public void clearInvalidApi() {
@@ -25,4 +44,52 @@ public class BaseAuthorityServiceImplTest extends BaseTest {
         }
 
     }
+
+    /**
+     * 用户权限查询:一次联表查询与逐个角色查询的结果需一致
+     */
+    @Test
+    public void findAuthorityByUserMatchesPerRole() {
+        List<Long> userIds = baseRoleUserMapper.selectObjs(new QueryWrapper<BaseRoleUser>().select("DISTINCT user_id").last("LIMIT 50"))
+                .stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList());
+        Assume.assumeFalse(userIds.isEmpty());
+        for (Long userId : userIds) {
+            assertEquals(authorities(findAuthorityByUserPerRole(userId)), authorities(baseAuthorityService.findAuthorityByUser(userId, false)));
+            assertEquals(menuAuthorityIds(findAuthorityMenuByUserPerRole(userId)), menuAuthorityIds(baseAuthorityService.findAuthorityMenuByUser(userId, false)));
+        }
+    }
+
+    /**
+     * 原逐个角色查询权限
+     */
+    private List<OpenAuthority> findAuthorityByUserPerRole(Long userId) {
+        List<OpenAuthority> authorities = new ArrayList<>();
+        for (BaseRole role : baseRoleService.getUserRoles(userId)) {
+            authorities.addAll(baseAuthorityRoleMapper.selectAuthorityByRole(role.getRoleId()));
+        }
+        authorities.addAll(baseAuthorityUserMapper.selectAuthorityByUser(userId));
+        return new ArrayList<>(new HashSet<>(authorities));
+    }
+
+    /**
+     * 原逐个角色查询菜单
+     */
+    private List<AuthorityMenu> findAuthorityMenuByUserPerRole(Long userId) {
+        List<AuthorityMenu> authorities = new ArrayList<>();
+        for (BaseRole role : baseRoleService.getUserRoles(userId)) {
+            authorities.addAll(baseAuthorityRoleMapper.selectAuthorityMenuByRole(role.getRoleId(), null));
+        }
+        authorities.addAll(baseAuthorityUserMapper.selectAuthorityMenuByUser(userId, null));
+        List<AuthorityMenu> list = new ArrayList<>(new HashSet<>(authorities));
+        list.sort(Comparator.comparing(AuthorityMenu::getPriority));
+        return list;
+    }
+
+    private static Set<String> authorities(List<OpenAuthority> list) {
+        return list.stream().map(OpenAuthority::getAuthority).collect(Collectors.toSet());
+    }
+
+    private static Set<Long> menuAuthorityIds(List<AuthorityMenu> list) {
+        return list.stream().map(AuthorityMenu::getAuthorityId).collect(Collectors.toSet());
+    }
 }
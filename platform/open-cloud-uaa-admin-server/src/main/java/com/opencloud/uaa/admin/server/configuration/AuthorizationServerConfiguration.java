@@ -3,6 +3,7 @@ package com.opencloud.uaa.admin.server.configuration;
 import com.opencloud.common.exception.OpenOAuth2WebResponseExceptionTranslator;
 import com.opencloud.common.security.OpenHelper;
 import com.opencloud.common.security.OpenTokenEnhancer;
+import com.opencloud.common.security.OpenRedisTokenStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
@@ -24,7 +25,6 @@ import org.springframework.security.oauth2.provider.code.JdbcAuthorizationCodeSe
 import org.springframework.security.oauth2.provider.token.DefaultTokenServices;
 import org.springframework.security.oauth2.provider.token.TokenEnhancer;
 import org.springframework.security.oauth2.provider.token.TokenStore;
-import org.springframework.security.oauth2.provider.token.store.redis.RedisTokenStore;
 
 import javax.sql.DataSource;
 
@@ -58,7 +58,7 @@ public class AuthorizationServerConfiguration extends AuthorizationServerConfigu
      */
     @Bean
     public TokenStore tokenStore() {
-        return new RedisTokenStore(redisConnectionFactory);
+        return new OpenRedisTokenStore(redisConnectionFactory);
     }
 
 
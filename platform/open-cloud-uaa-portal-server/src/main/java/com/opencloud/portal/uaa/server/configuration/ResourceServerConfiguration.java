@@ -2,6 +2,7 @@ package com.opencloud.portal.uaa.server.configuration;
 
 import com.opencloud.common.exception.OpenAccessDeniedHandler;
 import com.opencloud.common.exception.OpenAuthenticationEntryPoint;
+import com.opencloud.common.security.OpenRedisTokenStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
@@ -40,7 +41,7 @@ public class ResourceServerConfiguration extends ResourceServerConfigurerAdapter
     private RedisConnectionFactory redisConnectionFactory;
     @Bean
     public RedisTokenStore redisTokenStore() {
-        return new RedisTokenStore(redisConnectionFactory);
+        return new OpenRedisTokenStore(redisConnectionFactory);
     }
 
     private BearerTokenExtractor tokenExtractor = new BearerTokenExtractor();